@@ -0,0 +1,120 @@
+package library.Dao;
+
+import library.model.Book;
+import library.service.BulkLoader;
+import library.service.ConnectionConfig;
+import library.service.ExistDatabaseConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmldb.api.base.Collection;
+import org.xmldb.api.modules.CollectionManagementService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Measures DAO queries end to end: query execution, result transfer and mapping.
+ * <p>
+ * A dedicated collection is filled with synthetic books before the measurements and removed afterwards.
+ * Unless the {@code exist.mode} system property is set, the benchmark starts an embedded database in a temporary
+ * directory, so it runs without an eXist-db server.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoQueryBenchmark {
+
+    private static final String PARENT_COLLECTION = "/db/benchmarks";
+    private static final String COLLECTION = PARENT_COLLECTION + "/Novelas";
+
+    @Param({"1000", "10000"})
+    public int books;
+
+    private ExistDatabaseConnection dbConnection;
+    private LibraryDao dao;
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if (System.getProperty("exist.mode") == null) {
+            dataDir = Files.createTempDirectory("exist-benchmark");
+            ExistDatabaseConnection.configure(ConnectionConfig.embedded(dataDir, null));
+        }
+        dbConnection = ExistDatabaseConnection.getInstance();
+        removeCollection();
+
+        Stream<Book> items = IntStream.range(0, books)
+                .mapToObj(i -> new Book("Title " + i, "Author " + (i % 100), 1500 + i % 525));
+        new BulkLoader(dbConnection, 1000, 4).load(COLLECTION, "biblioteca", items, null);
+
+        dao = new LibraryDaoIMP(dbConnection);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        removeCollection();
+        dbConnection.close();
+        if (dataDir != null) deleteDirectory(dataDir);
+    }
+
+    @Benchmark
+    public List<Book> getAllBooks() {
+        return dao.getAllBooks(COLLECTION);
+    }
+
+    @Benchmark
+    public List<Book> getBooksUnder1950() {
+        return dao.getBooksUnder1950(COLLECTION);
+    }
+
+    @Benchmark
+    public long streamAllBooks() {
+        try (Stream<Book> stream = dao.streamAllBooks(COLLECTION)) {
+            return stream.count();
+        }
+    }
+
+    @Benchmark
+    public Page<Book> getFirstPage() {
+        return dao.getAllBooks(COLLECTION, 50, null);
+    }
+
+    private void removeCollection() throws Exception {
+        try (Collection parent = dbConnection.getOrCreateCollection(PARENT_COLLECTION)) {
+            CollectionManagementService service =
+                    (CollectionManagementService) parent.getService("CollectionManagementService", "1.0");
+            if (parent.getChildCollection("Novelas") != null) {
+                service.removeCollection("Novelas");
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
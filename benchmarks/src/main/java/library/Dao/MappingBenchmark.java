@@ -0,0 +1,124 @@
+package library.Dao;
+
+import library.model.Book;
+import library.model.DatabaseModel;
+import library.model.Essay;
+import library.model.Poem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the mapping of a single query result into a model object.
+ * <p>
+ * Payloads are synthetic {@code <book>}, {@code <poem>} and {@code <essay>} elements with an unmapped body of
+ * different sizes, which simulates documents with large texts. The regex benchmark reproduces the original
+ * reflection and regex mapping as a baseline.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"book", "poem", "essay"})
+    public String model;
+
+    @Param({"0", "1024", "65536"})
+    public int bodySize;
+
+    private Class<? extends DatabaseModel> modelClass;
+    private byte[] payload;
+    private String content;
+
+    private ModelMapper<DatabaseModel> mapper;
+    private ModelContentHandler<DatabaseModel> handler;
+    private SAXParser parser;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        switch (model) {
+            case "book" -> modelClass = Book.class;
+            case "poem" -> modelClass = Poem.class;
+            default -> modelClass = Essay.class;
+        }
+        content = createPayload(model, bodySize);
+        payload = content.getBytes(StandardCharsets.UTF_8);
+
+        mapper = (ModelMapper<DatabaseModel>) ModelMapperRegistry.getMapper(modelClass);
+        handler = new ModelContentHandler<>(mapper);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        parser = factory.newSAXParser();
+    }
+
+    /**
+     * Current mapping path: one SAX pass over the content and the cached binding plan.
+     */
+    @Benchmark
+    public Object saxMapping() throws Exception {
+        handler.reset();
+        parser.parse(new ByteArrayInputStream(payload), handler);
+        return mapper.create(handler.getValues());
+    }
+
+    /**
+     * Original mapping path: reflection lookups and one regex compiled per field and row.
+     */
+    @Benchmark
+    public Object regexMapping() throws Exception {
+        Object item = modelClass.getDeclaredConstructor().newInstance();
+        for (Field field : modelClass.getDeclaredFields()) {
+            field.setAccessible(true);
+            Matcher matcher = Pattern.compile("<" + field.getName() + ">(.*?)</" + field.getName() + ">")
+                    .matcher(content);
+            if (matcher.find()) {
+                if (field.getType().equals(String.class)) {
+                    field.set(item, matcher.group(1));
+                } else if (field.getType().equals(int.class)) {
+                    field.set(item, Integer.parseInt(matcher.group(1)));
+                }
+            }
+            field.setAccessible(false);
+        }
+        return item;
+    }
+
+    /**
+     * Creates a synthetic result element with an unmapped body of the specified size.
+     *
+     * @param model The element name of the model.
+     * @param bodySize The number of characters of the body.
+     * @return The XML content of the result.
+     */
+    static String createPayload(String model, int bodySize) {
+        StringBuilder xml = new StringBuilder("<").append(model).append('>');
+        xml.append("<title>La Rebelión de las Masas &amp; otros</title>");
+        xml.append("<body>").append("x".repeat(bodySize)).append("</body>");
+        xml.append("<author>José Ortega y Gasset</author>");
+        if (model.equals("book")) xml.append("<publishYear>1930</publishYear>");
+        if (model.equals("essay")) xml.append("<year>1930</year>");
+        return xml.append("</").append(model).append('>').toString();
+    }
+}
@@ -0,0 +1,91 @@
+package util;
+
+import library.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Measures the generation of XML files from 1k to 10M objects.
+ * Objects are produced lazily, so the largest sizes also check that memory does not grow with the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class XMLFileCreatorBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int objects;
+
+    private Path outputFile;
+
+    @Setup
+    public void setup() throws Exception {
+        outputFile = Files.createTempFile("books", ".xml");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(outputFile);
+    }
+
+    /**
+     * Serialization cost only: the XML is discarded.
+     */
+    @Benchmark
+    public void writeToNullStream() throws Exception {
+        try (Stream<Book> books = books(objects)) {
+            XMLFileCreator.writeXml(books.iterator(), OutputStream.nullOutputStream(), "biblioteca");
+        }
+    }
+
+    /**
+     * Serialization and buffered file output.
+     */
+    @Benchmark
+    public void writeToFile() throws Exception {
+        try (Stream<Book> books = books(objects)) {
+            XMLFileCreator.writeXml(books, outputFile, "biblioteca", false);
+        }
+    }
+
+    /**
+     * Serialization and gzip-compressed file output.
+     */
+    @Benchmark
+    public void writeToGzipFile() throws Exception {
+        try (Stream<Book> books = books(objects)) {
+            XMLFileCreator.writeXml(books, outputFile, "biblioteca", true);
+        }
+    }
+
+    /**
+     * Creates a lazy stream of synthetic books.
+     *
+     * @param count The number of books.
+     * @return The stream of books.
+     */
+    static Stream<Book> books(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Book("Title " + i, "Author " + (i % 1000), 1500 + i % 525));
+    }
+}
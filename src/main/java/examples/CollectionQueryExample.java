@@ -2,12 +2,17 @@ package examples;
 
 import library.Dao.LibraryDao;
 import library.Dao.LibraryDaoIMP;
+import library.Dao.Partitioning;
+import library.Dao.QueryManager;
+import library.Dao.QueryRequest;
+import library.Dao.QueryResults;
 import library.model.Book;
 import library.model.Essay;
 import library.model.Poem;
 import library.service.ExistDatabaseConnection;
 import org.xmldb.api.base.XMLDBException;
 
+import java.time.Duration;
 import java.util.List;
 
 public class CollectionQueryExample {
@@ -29,6 +34,14 @@ public class CollectionQueryExample {
         queryBooksAndPoems(dao);
         queryEssays(dao);
 
+        // Runs the queries of the three collections at the same time.
+        queryAllCollections(new QueryManager(dbConnection));
+
+        // Runs the queries of a composite view in a single request.
+        queryBatch(new QueryManager(dbConnection));
+
+        // Scans the books collection in partitions queried at the same time.
+        queryPartitioned(new QueryManager(dbConnection));
 
         // Closes the database connection.
         try{
@@ -61,6 +74,48 @@ public class CollectionQueryExample {
         printCollection(poemQueryResult, "Poems: ");
     }
 
+    /**
+     * Queries the books, poems and essays concurrently, so the total time is the time of the slowest query.
+     * @param queryManager QueryManager instance
+     */
+    private static void queryAllCollections(QueryManager queryManager) {
+        QueryRequest<Book> books = new QueryRequest<>(BASE_COLLECTION + "Novelas", "//book", Book.class);
+        QueryRequest<Poem> poems = new QueryRequest<>(BASE_COLLECTION + "Poemas", "//poem", Poem.class);
+        QueryRequest<Essay> essays = new QueryRequest<>(BASE_COLLECTION + "Ensayos", "//essay", Essay.class);
+
+        QueryResults results = queryManager.queryAll(List.of(books, poems, essays), Duration.ofSeconds(10));
+
+        printCollection(results.get(books), "Books (concurrent): ");
+        printCollection(results.get(poems), "Poems (concurrent): ");
+        printCollection(results.get(essays), "Essays (concurrent): ");
+    }
+
+    /**
+     * Queries the books and poems of a composite view in a single round trip to the database.
+     * @param queryManager QueryManager instance
+     */
+    private static void queryBatch(QueryManager queryManager) {
+        QueryRequest<Book> books = new QueryRequest<>(BASE_COLLECTION + "Novelas", "//book", Book.class);
+        QueryRequest<Book> booksUnder1950 =
+                new QueryRequest<>(BASE_COLLECTION + "Novelas", "//book[publishYear < 1950]", Book.class);
+        QueryRequest<Poem> poems = new QueryRequest<>(BASE_COLLECTION + "Poemas", "//poem", Poem.class);
+
+        QueryResults results = queryManager.queryBatch(List.of(books, booksUnder1950, poems));
+        printCollection(results.get(books), "Books (batch): ");
+        printCollection(results.get(booksUnder1950), "Books before 1950 (batch): ");
+        printCollection(results.get(poems), "Poems (batch): ");
+    }
+
+    /**
+     * Queries the resources of the books collection in four partitions, two at a time, keeping the order.
+     * @param queryManager QueryManager instance
+     */
+    private static void queryPartitioned(QueryManager queryManager) {
+        List<Book> books = queryManager.queryPartitioned(BASE_COLLECTION + "Novelas",
+                "for $book in //book return $book", null, Book.class, new Partitioning(4, 2, true));
+        printCollection(books, "Books (partitioned): ");
+    }
+
     /**
      * Calls the toString() method of the class.
      * @param list the list to print.
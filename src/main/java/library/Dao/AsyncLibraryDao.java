@@ -0,0 +1,22 @@
+package library.Dao;
+
+import library.model.Book;
+import library.model.Essay;
+import library.model.Poem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncLibraryDao {
+    CompletableFuture<List<Book>> getBooksUnder1950(String collectionName);
+    CompletableFuture<List<Book>> getBooksBefore(String collectionName, int year);
+    CompletableFuture<List<Book>> getBooksByAuthor(String collectionName, String author);
+    CompletableFuture<Page<Book>> getBooksUnder1950(String collectionName, int pageSize, String cursor);
+    CompletableFuture<List<Book>> getAllBooks(String collectionName);
+    CompletableFuture<Page<Book>> getAllBooks(String collectionName, int pageSize, String cursor);
+    CompletableFuture<List<Poem>> getAllPoems(String collectionName);
+    CompletableFuture<Page<Poem>> getAllPoems(String collectionName, int pageSize, String cursor);
+    CompletableFuture<List<Essay>> getEssaysUnderAge0(String collectionName);
+    CompletableFuture<List<Essay>> getEssaysBefore(String collectionName, int year);
+    CompletableFuture<Page<Essay>> getEssaysUnderAge0(String collectionName, int pageSize, String cursor);
+}
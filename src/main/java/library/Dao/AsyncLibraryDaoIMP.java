@@ -0,0 +1,232 @@
+package library.Dao;
+
+import library.model.Book;
+import library.model.Essay;
+import library.model.Poem;
+import library.service.ExistDatabaseConnection;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous implementation of the {@link AsyncLibraryDao} interface.
+ * <p>
+ * Every query runs on the configured {@link Executor} and returns a {@link CompletableFuture}, so callers can compose
+ * database calls without blocking a thread per query. Unlike {@link LibraryDaoIMP}, failures are not turned into
+ * empty lists: the returned future completes exceptionally with the original error.
+ * </p>
+ *
+ * <p>
+ * The number of queries in flight is bounded. When the limit is reached, new queries are queued and started in
+ * submission order as running queries finish, so submitting never blocks the calling thread, and stages chained with
+ * {@code thenCompose} or {@code thenComposeAsync} cannot wait for a slot held by the stage that submits them. A
+ * query frees its slot, starting the next queued query, before its future is completed.
+ * </p>
+ */
+public class AsyncLibraryDaoIMP implements AsyncLibraryDao {
+    private final QueryManager queryManager;
+    private final Executor executor;
+    private final int maxInFlight;
+    // Queries waiting for a slot, and the number of slots taken; both guarded by the queue.
+    private final Queue<PendingQuery<?>> pending = new ArrayDeque<>();
+    private int running;
+
+    /**
+     * Creates an asynchronous DAO that runs its queries on the shared executor,
+     * {@link QueryExecutors#sharedQueryExecutor()}.
+     *
+     * @param dbConnection The connection to the eXist-db database.
+     * @param maxInFlight The maximum number of queries running at the same time.
+     */
+    public AsyncLibraryDaoIMP(ExistDatabaseConnection dbConnection, int maxInFlight) {
+        this(dbConnection, QueryExecutors.sharedQueryExecutor(), maxInFlight);
+    }
+
+    /**
+     * Creates an asynchronous DAO that runs its queries on the specified executor, which belongs to the caller.
+     *
+     * @param dbConnection The connection to the eXist-db database.
+     * @param executor The executor that runs the queries.
+     * @param maxInFlight The maximum number of queries running at the same time.
+     */
+    public AsyncLibraryDaoIMP(ExistDatabaseConnection dbConnection, Executor executor, int maxInFlight) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("The in-flight limit must be positive");
+        this.queryManager = new QueryManager(dbConnection);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> getBooksUnder1950(String collectionName) {
+        return getBooksBefore(collectionName, 1950);
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> getBooksBefore(String collectionName, int year) {
+        return submit(() -> queryManager.fetchProjected(collectionName, LibraryQueries.BOOKS_BEFORE,
+                Map.of("year", year), Book.class));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> getBooksByAuthor(String collectionName, String author) {
+        return submit(() -> queryManager.fetchProjected(collectionName, LibraryQueries.BOOKS_BY_AUTHOR,
+                Map.of("author", author), Book.class));
+    }
+
+    @Override
+    public CompletableFuture<Page<Book>> getBooksUnder1950(String collectionName, int pageSize, String cursor) {
+        return submit(() -> queryManager.fetchPage(collectionName, LibraryQueries.BOOKS_UNDER_1950_ORDERED,
+                Book.class, pageSize, cursor));
+    }
+
+    @Override
+    public CompletableFuture<List<Book>> getAllBooks(String collectionName) {
+        return submit(() -> queryManager.fetchProjected(collectionName, LibraryQueries.ALL_BOOKS, null, Book.class));
+    }
+
+    @Override
+    public CompletableFuture<Page<Book>> getAllBooks(String collectionName, int pageSize, String cursor) {
+        return submit(() -> queryManager.fetchPage(collectionName, LibraryQueries.ALL_BOOKS_ORDERED,
+                Book.class, pageSize, cursor));
+    }
+
+    @Override
+    public CompletableFuture<List<Poem>> getAllPoems(String collectionName) {
+        return submit(() -> queryManager.fetchProjected(collectionName, LibraryQueries.ALL_POEMS, null, Poem.class));
+    }
+
+    @Override
+    public CompletableFuture<Page<Poem>> getAllPoems(String collectionName, int pageSize, String cursor) {
+        return submit(() -> queryManager.fetchPage(collectionName, LibraryQueries.ALL_POEMS_ORDERED,
+                Poem.class, pageSize, cursor));
+    }
+
+    @Override
+    public CompletableFuture<List<Essay>> getEssaysUnderAge0(String collectionName) {
+        return getEssaysBefore(collectionName, 0);
+    }
+
+    @Override
+    public CompletableFuture<List<Essay>> getEssaysBefore(String collectionName, int year) {
+        return submit(() -> queryManager.fetchProjected(collectionName, LibraryQueries.ESSAYS_BEFORE,
+                Map.of("year", year), Essay.class));
+    }
+
+    @Override
+    public CompletableFuture<Page<Essay>> getEssaysUnderAge0(String collectionName, int pageSize, String cursor) {
+        return submit(() -> queryManager.fetchPage(collectionName, LibraryQueries.ESSAYS_UNDER_AGE_0_ORDERED,
+                Essay.class, pageSize, cursor));
+    }
+
+    /**
+     * Retrieves the number of queries that can still be started without being queued.
+     *
+     * @return The free in-flight slots.
+     */
+    public int getAvailableSlots() {
+        synchronized (pending) {
+            return maxInFlight - running;
+        }
+    }
+
+    /**
+     * Retrieves the number of queries waiting for an in-flight slot.
+     *
+     * @return The queued queries.
+     */
+    public int getQueuedQueries() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Runs a query on the executor if an in-flight slot is free, or queues it until a running query finishes.
+     * The calling thread never waits.
+     *
+     * @param query The query to run.
+     * @param <R> The type of the query result.
+     * @return A future completed with the query result, or exceptionally with the error of the query.
+     */
+    private <R> CompletableFuture<R> submit(Callable<R> query) {
+        PendingQuery<R> task = new PendingQuery<>(query);
+        synchronized (pending) {
+            if (running == maxInFlight) {
+                pending.add(task);
+                return task.future;
+            }
+            running++;
+        }
+        start(task);
+        return task.future;
+    }
+
+    /**
+     * Hands a query that holds a slot to the executor. If the executor rejects it, the query fails and its slot is
+     * passed on.
+     *
+     * @param task The query to start.
+     */
+    private void start(PendingQuery<?> task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            finished();
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Frees the slot of a finished query, starting the next queued query with it.
+     */
+    private void finished() {
+        PendingQuery<?> next;
+        synchronized (pending) {
+            next = pending.poll();
+            if (next == null) running--;
+        }
+        if (next != null) start(next);
+    }
+
+    /**
+     * A submitted query and the future of its result.
+     * <p>
+     * The slot is freed before the future is completed, because completing it runs the dependent stages on this
+     * thread, and a stage that submits another query should find the slot free.
+     * </p>
+     *
+     * @param <R> The type of the query result.
+     */
+    private class PendingQuery<R> implements Runnable {
+        private final Callable<R> query;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        PendingQuery(Callable<R> query) {
+            this.query = query;
+        }
+
+        @Override
+        public void run() {
+            R result = null;
+            Throwable error = null;
+            try {
+                result = query.call();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                finished();
+            }
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package library.Dao;
+
+/**
+ * Number of items written by an author, computed on the server by an aggregation query.
+ *
+ * @param author The author.
+ * @param count The number of items of the author.
+ */
+public record AuthorCount(String author, long count) {
+}
@@ -0,0 +1,476 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+import org.exist.xmldb.ExtendedResource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decodes the serialized bytes of a query result into a {@link DatabaseModel}, without building a {@code String} of
+ * the whole content.
+ * <p>
+ * The resource writes its UTF-8 content into a per-thread buffer that is reused by every result, and the fields are
+ * read directly from it with the same rules as {@link ModelContentHandler}: attributes of the root element and its
+ * direct child elements are matched against the fields of the {@link ModelMapper}, the value of an element is its
+ * whole text content and the element wins over an attribute. Text fields are decoded into a {@code String} once;
+ * {@code int} fields are read from their ASCII digits and passed to {@link ModelMapper#create(String[], int[])}.
+ * </p>
+ *
+ * <p>
+ * The parser only supports the well-formed XML written by the server serializer: the predefined entities and
+ * character references are decoded, but other entities cannot appear, and a DOCTYPE is skipped without reading its
+ * declarations. An instance can be reused for several resources, but it is not thread-safe.
+ * </p>
+ *
+ * @param <T> The type of the mapped model.
+ */
+final class ByteContentDecoder<T extends DatabaseModel> {
+
+    private static final Logger logger = Logger.getLogger(ByteContentDecoder.class.getName());
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // States of the text collected for the current field.
+    private static final int NO_TEXT = 0;
+    private static final int RANGE = 1;
+    private static final int COPIED = 2;
+
+    private final ModelMapper<T> mapper;
+    private final byte[][] fieldNames;
+    private final boolean[] intFields;
+    private final String[] values;
+    private final int[] intValues;
+    private final boolean[] fromElement;
+
+    private byte[] content;
+    private ByteSink text;
+    private int depth;
+    private int currentField;
+    private int textState;
+    private int rangeStart;
+    private int rangeEnd;
+
+    /**
+     * Creates a decoder for the fields of the specified mapper.
+     *
+     * @param mapper The binding plan of the target class.
+     */
+    ByteContentDecoder(ModelMapper<T> mapper) {
+        this.mapper = mapper;
+        int count = mapper.getFieldCount();
+        this.fieldNames = new byte[count][];
+        this.intFields = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            fieldNames[i] = mapper.getFieldName(i).getBytes(StandardCharsets.UTF_8);
+            intFields[i] = mapper.isIntField(i);
+        }
+        this.values = new String[count];
+        this.intValues = new int[count];
+        this.fromElement = new boolean[count];
+    }
+
+    /**
+     * Maps the content of a resource, which is written into the buffer of the current thread.
+     *
+     * @param resource The resource to map.
+     * @return An object of type {@code T} populated with the fields of the content.
+     * @throws Exception If the content cannot be read or parsed, or the object cannot be created.
+     */
+    T decode(ExtendedResource resource) throws Exception {
+        ByteSink sink = SCRATCH.get().content;
+        sink.reset();
+        resource.getContentIntoAStream(sink);
+        return decode(sink.array(), sink.size());
+    }
+
+    /**
+     * Maps serialized XML content.
+     *
+     * @param content The UTF-8 bytes of the content.
+     * @param length The number of bytes of the content.
+     * @return An object of type {@code T} populated with the fields of the content.
+     * @throws Exception If the content cannot be parsed or the object cannot be created.
+     */
+    T decode(byte[] content, int length) throws Exception {
+        Arrays.fill(values, null);
+        Arrays.fill(intValues, 0);
+        Arrays.fill(fromElement, false);
+        this.content = content;
+        this.text = SCRATCH.get().text;
+        depth = 0;
+        currentField = -1;
+        try {
+            parse(length);
+        } finally {
+            this.content = null;
+        }
+        return mapper.create(values, intValues);
+    }
+
+    /**
+     * Parses the content, storing the values of the fields.
+     *
+     * @param end The number of bytes of the content.
+     * @throws SAXException If the content is not well-formed.
+     */
+    private void parse(int end) throws SAXException {
+        byte[] b = content;
+        int pos = 0;
+        while (pos < end) {
+            int tag = indexOf(b, pos, end, (byte) '<');
+            if (tag < 0) tag = end;
+            if (currentField >= 0 && tag > pos) appendText(b, pos, tag, true);
+            if (tag == end) break;
+
+            byte next = tag + 1 < end ? b[tag + 1] : 0;
+            if (next == '/') {
+                if (depth == 2 && currentField >= 0) endField();
+                depth--;
+                pos = skipPast(b, tag + 2, end, ">");
+            } else if (next == '?') {
+                pos = skipPast(b, tag + 2, end, "?>");
+            } else if (startsWith(b, tag, end, "<!--")) {
+                pos = skipPast(b, tag + 4, end, "-->");
+            } else if (startsWith(b, tag, end, "<![CDATA[")) {
+                int close = indexOf(b, tag + 9, end, "]]>");
+                if (close < 0) throw malformed(tag);
+                if (currentField >= 0) appendText(b, tag + 9, close, false);
+                pos = close + 3;
+            } else if (next == '!') {
+                pos = skipPast(b, tag + 2, end, ">");
+            } else {
+                pos = startElement(b, tag + 1, end);
+            }
+        }
+    }
+
+    /**
+     * Parses a start tag.
+     *
+     * @param b The content.
+     * @param pos The position of the element name.
+     * @param end The number of bytes of the content.
+     * @return The position after the tag.
+     * @throws SAXException If the tag is not well-formed.
+     */
+    private int startElement(byte[] b, int pos, int end) throws SAXException {
+        int nameStart = pos;
+        while (pos < end && !isWhitespace(b[pos]) && b[pos] != '/' && b[pos] != '>') pos++;
+        int field = ++depth == 2 ? fieldIndex(b, nameStart, pos) : -1;
+
+        while (true) {
+            while (pos < end && isWhitespace(b[pos])) pos++;
+            if (pos >= end) throw malformed(nameStart);
+            if (b[pos] == '>' || b[pos] == '/') break;
+
+            int attributeStart = pos;
+            while (pos < end && b[pos] != '=' && !isWhitespace(b[pos])) pos++;
+            int attributeEnd = pos;
+            while (pos < end && b[pos] != '\'' && b[pos] != '"') pos++;
+            if (pos >= end) throw malformed(attributeStart);
+            int valueEnd = indexOf(b, pos + 1, end, b[pos]);
+            if (valueEnd < 0) throw malformed(pos);
+            if (depth == 1) readAttribute(b, attributeStart, attributeEnd, pos + 1, valueEnd);
+            pos = valueEnd + 1;
+        }
+
+        // Only the first occurrence of a field is mapped.
+        if (field >= 0 && !fromElement[field]) {
+            currentField = field;
+            textState = NO_TEXT;
+        }
+        if (b[pos] == '/') {
+            if (depth == 2 && currentField >= 0) endField();
+            depth--;
+            pos++;
+            if (pos >= end || b[pos] != '>') throw malformed(pos);
+        }
+        return pos + 1;
+    }
+
+    /**
+     * Stores an attribute of the root element if it matches a field of the model.
+     *
+     * @param b The content.
+     * @param nameStart The position of the attribute name.
+     * @param nameEnd The position after the attribute name.
+     * @param valueStart The position of the attribute value, after the quote.
+     * @param valueEnd The position of the closing quote.
+     * @throws SAXException If the value contains an invalid reference.
+     */
+    private void readAttribute(byte[] b, int nameStart, int nameEnd, int valueStart, int valueEnd)
+            throws SAXException {
+        // Namespace declarations are not reported as attributes.
+        if (startsWith(b, nameStart, nameEnd, "xmlns")
+                && (nameEnd - nameStart == 5 || b[nameStart + 5] == ':')) return;
+        int index = fieldIndex(b, nameStart, nameEnd);
+        if (index < 0) return;
+
+        text.reset();
+        decodeInto(b, valueStart, valueEnd, true, true);
+        setValue(index, text.array(), 0, text.size());
+    }
+
+    /**
+     * Adds a chunk of text to the value of the current field. A chunk without references or carriage returns is only
+     * recorded as a range of the content, so the usual single chunk of a field is never copied.
+     *
+     * @param b The content.
+     * @param from The start of the chunk.
+     * @param to The end of the chunk.
+     * @param references Whether the chunk may contain references, i.e. it is not a CDATA section.
+     * @throws SAXException If the chunk contains an invalid reference.
+     */
+    private void appendText(byte[] b, int from, int to, boolean references) throws SAXException {
+        boolean plain = indexOf(b, from, to, (byte) '\r') < 0 && (!references || indexOf(b, from, to, (byte) '&') < 0);
+        if (plain && textState == NO_TEXT) {
+            textState = RANGE;
+            rangeStart = from;
+            rangeEnd = to;
+            return;
+        }
+        if (textState != COPIED) {
+            text.reset();
+            if (textState == RANGE) text.write(b, rangeStart, rangeEnd - rangeStart);
+            textState = COPIED;
+        }
+        if (plain) {
+            text.write(b, from, to - from);
+        } else {
+            decodeInto(b, from, to, references, false);
+        }
+    }
+
+    /**
+     * Stores the text collected for the current field.
+     */
+    private void endField() {
+        int field = currentField;
+        currentField = -1;
+        fromElement[field] = true;
+        if (textState == COPIED) {
+            setValue(field, text.array(), 0, text.size());
+        } else if (textState == RANGE) {
+            setValue(field, content, rangeStart, rangeEnd - rangeStart);
+        } else {
+            setValue(field, content, 0, 0);
+        }
+    }
+
+    /**
+     * Stores the value of a field, decoding {@code int} fields from their digits.
+     *
+     * @param index The index of the field.
+     * @param b The bytes of the value.
+     * @param offset The start of the value.
+     * @param length The length of the value.
+     */
+    private void setValue(int index, byte[] b, int offset, int length) {
+        if (intFields[index]) {
+            intValues[index] = parseInt(b, offset, length, index);
+        } else {
+            values[index] = new String(b, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Decodes an {@code int} value from its ASCII digits, ignoring surrounding whitespace like the reflective mapping.
+     * Values with other characters or too many digits are parsed from a {@code String} instead, so the accepted
+     * values are the same as {@link Integer#parseInt(String)}.
+     *
+     * @param b The bytes of the value.
+     * @param offset The start of the value.
+     * @param length The length of the value.
+     * @param index The index of the field, for the log message.
+     * @return The value, or {@code 0} if it is invalid.
+     */
+    private int parseInt(byte[] b, int offset, int length, int index) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && (b[start] & 0xff) <= ' ') start++;
+        while (end > start && (b[end - 1] & 0xff) <= ' ') end--;
+
+        boolean negative = start < end && b[start] == '-';
+        int digits = start < end && (b[start] == '-' || b[start] == '+') ? start + 1 : start;
+        // Nine digits always fit in an int.
+        if (digits < end && end - digits <= 9) {
+            int value = 0;
+            int i = digits;
+            while (i < end && b[i] >= '0' && b[i] <= '9') {
+                value = value * 10 + (b[i++] - '0');
+            }
+            if (i == end) return negative ? -value : value;
+        }
+
+        String value = new String(b, offset, length, StandardCharsets.UTF_8);
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.SEVERE, "Error setting field value: " + mapper.getFieldName(index), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Decodes a chunk of text into the scratch buffer, replacing references and normalizing line ends like an XML
+     * parser. In attribute values, whitespace characters are also replaced by spaces.
+     *
+     * @param b The content.
+     * @param from The start of the chunk.
+     * @param to The end of the chunk.
+     * @param references Whether the chunk may contain references.
+     * @param attribute Whether the chunk is an attribute value.
+     * @throws SAXException If the chunk contains an invalid reference.
+     */
+    private void decodeInto(byte[] b, int from, int to, boolean references, boolean attribute) throws SAXException {
+        int i = from;
+        while (i < to) {
+            byte c = b[i];
+            if (c == '&' && references) {
+                int semicolon = indexOf(b, i + 1, to, (byte) ';');
+                if (semicolon < 0) throw malformed(i);
+                writeReference(b, i + 1, semicolon);
+                i = semicolon + 1;
+                continue;
+            }
+            if (c == '\r') {
+                if (i + 1 < to && b[i + 1] == '\n') i++;
+                c = '\n';
+            }
+            text.write(attribute && (c == '\n' || c == '\t') ? ' ' : c);
+            i++;
+        }
+    }
+
+    /**
+     * Writes the character of a reference to the scratch buffer.
+     *
+     * @param b The content.
+     * @param from The position after the ampersand.
+     * @param to The position of the semicolon.
+     * @throws SAXException If the reference is not predefined or not a valid character reference.
+     */
+    private void writeReference(byte[] b, int from, int to) throws SAXException {
+        if (startsWith(b, from, to, "#")) {
+            boolean hex = to - from > 1 && b[from + 1] == 'x';
+            int codePoint = 0;
+            for (int i = from + (hex ? 2 : 1); i < to; i++) {
+                int digit = Character.digit(b[i], hex ? 16 : 10);
+                if (digit < 0 || codePoint > Character.MAX_CODE_POINT) throw malformed(from);
+                codePoint = codePoint * (hex ? 16 : 10) + digit;
+            }
+            if (!Character.isValidCodePoint(codePoint)) throw malformed(from);
+            writeCodePoint(codePoint);
+        } else if (to - from == 2 && startsWith(b, from, to, "lt")) {
+            text.write('<');
+        } else if (to - from == 2 && startsWith(b, from, to, "gt")) {
+            text.write('>');
+        } else if (to - from == 3 && startsWith(b, from, to, "amp")) {
+            text.write('&');
+        } else if (to - from == 4 && startsWith(b, from, to, "quot")) {
+            text.write('"');
+        } else if (to - from == 4 && startsWith(b, from, to, "apos")) {
+            text.write('\'');
+        } else {
+            throw malformed(from);
+        }
+    }
+
+    private void writeCodePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            text.write(codePoint);
+        } else if (codePoint < 0x800) {
+            text.write(0xc0 | codePoint >> 6);
+            text.write(0x80 | codePoint & 0x3f);
+        } else if (codePoint < 0x10000) {
+            text.write(0xe0 | codePoint >> 12);
+            text.write(0x80 | codePoint >> 6 & 0x3f);
+            text.write(0x80 | codePoint & 0x3f);
+        } else {
+            text.write(0xf0 | codePoint >> 18);
+            text.write(0x80 | codePoint >> 12 & 0x3f);
+            text.write(0x80 | codePoint >> 6 & 0x3f);
+            text.write(0x80 | codePoint & 0x3f);
+        }
+    }
+
+    /**
+     * Finds the field whose name matches a qualified name, ignoring its prefix.
+     *
+     * @param b The content.
+     * @param from The start of the name.
+     * @param to The end of the name.
+     * @return The index of the field, or {@code -1} if no field matches.
+     */
+    private int fieldIndex(byte[] b, int from, int to) {
+        int colon = indexOf(b, from, to, (byte) ':');
+        if (colon >= 0) from = colon + 1;
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (Arrays.equals(b, from, to, fieldNames[i], 0, fieldNames[i].length)) return i;
+        }
+        return -1;
+    }
+
+    private int skipPast(byte[] b, int from, int end, String delimiter) throws SAXException {
+        int found = indexOf(b, from, end, delimiter);
+        if (found < 0) throw malformed(from);
+        return found + delimiter.length();
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, String value) {
+        for (int i = from; i <= to - value.length(); i++) {
+            if (startsWith(b, i, to, value)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] b, int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (b[from + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static SAXException malformed(int position) {
+        return new SAXException("Malformed XML content at byte " + position);
+    }
+
+    /**
+     * Growable byte buffer whose array can be read without copying it.
+     */
+    private static final class ByteSink extends ByteArrayOutputStream {
+        ByteSink(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Buffers reused by the decoders of a thread: the content of the current resource and the decoded text of a
+     * value that could not be read in place.
+     */
+    private static final class Scratch {
+        final ByteSink content = new ByteSink(8192);
+        final ByteSink text = new ByteSink(256);
+    }
+}
@@ -0,0 +1,32 @@
+package library.Dao;
+
+/**
+ * Key of a cached query result. The name of the collection is normalized, so {@code /db/x/} and {@code /db/x}
+ * refer to the same collection.
+ *
+ * @param collectionName The name of the queried collection.
+ * @param query The query text, including any pagination arguments.
+ * @param modelClass The class the results are mapped to.
+ */
+public record CacheKey(String collectionName, String query, Class<?> modelClass) {
+
+    /**
+     * Creates a key, removing the trailing slash of the collection name.
+     */
+    public CacheKey {
+        collectionName = normalize(collectionName);
+    }
+
+    /**
+     * Normalizes the name of a collection as it is kept in the keys.
+     *
+     * @param collectionName The name of a collection, with or without a trailing slash.
+     * @return The name without its trailing slash, unless it is the root {@code /}.
+     */
+    static String normalize(String collectionName) {
+        if (collectionName == null || collectionName.length() <= 1 || !collectionName.endsWith("/")) {
+            return collectionName;
+        }
+        return collectionName.substring(0, collectionName.length() - 1);
+    }
+}
@@ -0,0 +1,86 @@
+package library.Dao;
+
+/**
+ * Immutable snapshot of the statistics of a {@link QueryCache}.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long invalidations;
+    private final int size;
+    private final long weight;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param hits Number of lookups served from the cache.
+     * @param misses Number of lookups that had to run the query.
+     * @param evictions Number of entries removed to respect the size limits.
+     * @param expirations Number of entries removed because their TTL elapsed.
+     * @param invalidations Number of entries removed explicitly.
+     * @param size Number of entries currently cached.
+     * @param weight Approximate size in bytes of the cached results.
+     */
+    CacheStats(long hits, long misses, long evictions, long expirations, long invalidations, int size, long weight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.weight = weight;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Retrieves the ratio of lookups served from the cache.
+     *
+     * @return The hit ratio between 0 and 1, or 0 if there were no lookups.
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                ", invalidations=" + invalidations +
+                ", size=" + size +
+                ", weight=" + weight +
+                '}';
+    }
+}
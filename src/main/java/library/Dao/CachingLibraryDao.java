@@ -0,0 +1,396 @@
+package library.Dao;
+
+import library.model.Book;
+import library.model.DatabaseModel;
+import library.model.Essay;
+import library.model.Poem;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of a {@link LibraryDao} that caches the query results in a {@link QueryCache}.
+ * <p>
+ * Results are keyed on the collection, the query and the model class, so repeated calls return the cached list
+ * until it expires. The write methods invalidate the cached results of the modified collection, even if they fail,
+ * since a failed batch may have been partly applied. After modifying a collection by other means, callers should
+ * call {@link #invalidate(String)} so the following queries read the new data. A result whose query was running
+ * when its collection was invalidated is returned to its caller but not cached, since it may predate the write.
+ * Streams and column stores are not cached because they are meant for results that do not fit in memory. Change
+ * sets are not cached either, since they depend on the token of each caller; when a synchronization finds changes in
+ * a collection, its cached results are invalidated.
+ * </p>
+ *
+ * <p>
+ * Empty results are not cached, since {@link QueryManager} also returns an empty list when a query fails.
+ * Returned lists are unmodifiable because cached results are shared between callers.
+ * </p>
+ */
+public class CachingLibraryDao implements LibraryDao {
+    // Approximate size in bytes of an aggregated row, such as an AuthorCount with a short author name.
+    private static final long ROW_WEIGHT = 96;
+
+    private final LibraryDao delegate;
+    private final QueryCache cache;
+
+    /**
+     * Creates a caching decorator.
+     *
+     * @param delegate The DAO that runs the queries on a cache miss.
+     * @param cache The cache where the results are stored.
+     */
+    public CachingLibraryDao(LibraryDao delegate, QueryCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<Book> getBooksUnder1950(String collectionName) {
+        return cachedList(collectionName, LibraryQueries.BOOKS_UNDER_1950, Book.class,
+                () -> delegate.getBooksUnder1950(collectionName));
+    }
+
+    @Override
+    public List<Book> getBooksBefore(String collectionName, int year) {
+        return cachedList(collectionName, LibraryQueries.BOOKS_BEFORE + "#year=" + year, Book.class,
+                () -> delegate.getBooksBefore(collectionName, year));
+    }
+
+    @Override
+    public List<Book> getBooksByAuthor(String collectionName, String author) {
+        return cachedList(collectionName, LibraryQueries.BOOKS_BY_AUTHOR + "#author=" + author, Book.class,
+                () -> delegate.getBooksByAuthor(collectionName, author));
+    }
+
+    @Override
+    public Page<Book> getBooksUnder1950(String collectionName, int pageSize, String cursor) {
+        return cachedPage(collectionName, LibraryQueries.BOOKS_UNDER_1950_ORDERED, Book.class, pageSize, cursor,
+                () -> delegate.getBooksUnder1950(collectionName, pageSize, cursor));
+    }
+
+    @Override
+    public List<Book> getAllBooks(String collectionName) {
+        return cachedList(collectionName, LibraryQueries.ALL_BOOKS, Book.class,
+                () -> delegate.getAllBooks(collectionName));
+    }
+
+    @Override
+    public Page<Book> getAllBooks(String collectionName, int pageSize, String cursor) {
+        return cachedPage(collectionName, LibraryQueries.ALL_BOOKS_ORDERED, Book.class, pageSize, cursor,
+                () -> delegate.getAllBooks(collectionName, pageSize, cursor));
+    }
+
+    @Override
+    public Stream<Book> streamAllBooks(String collectionName) {
+        return delegate.streamAllBooks(collectionName);
+    }
+
+    @Override
+    public ColumnStore<Book> getBookColumns(String collectionName) {
+        return delegate.getBookColumns(collectionName);
+    }
+
+    @Override
+    public ColumnStore<Essay> getEssayColumns(String collectionName) {
+        return delegate.getEssayColumns(collectionName);
+    }
+
+    @Override
+    public List<Poem> getAllPoems(String collectionName) {
+        return cachedList(collectionName, LibraryQueries.ALL_POEMS, Poem.class,
+                () -> delegate.getAllPoems(collectionName));
+    }
+
+    @Override
+    public Page<Poem> getAllPoems(String collectionName, int pageSize, String cursor) {
+        return cachedPage(collectionName, LibraryQueries.ALL_POEMS_ORDERED, Poem.class, pageSize, cursor,
+                () -> delegate.getAllPoems(collectionName, pageSize, cursor));
+    }
+
+    @Override
+    public List<Essay> getEssaysUnderAge0(String collectionName) {
+        return cachedList(collectionName, LibraryQueries.ESSAYS_UNDER_AGE_0, Essay.class,
+                () -> delegate.getEssaysUnderAge0(collectionName));
+    }
+
+    @Override
+    public List<Essay> getEssaysBefore(String collectionName, int year) {
+        return cachedList(collectionName, LibraryQueries.ESSAYS_BEFORE + "#year=" + year, Essay.class,
+                () -> delegate.getEssaysBefore(collectionName, year));
+    }
+
+    @Override
+    public Page<Essay> getEssaysUnderAge0(String collectionName, int pageSize, String cursor) {
+        return cachedPage(collectionName, LibraryQueries.ESSAYS_UNDER_AGE_0_ORDERED, Essay.class, pageSize, cursor,
+                () -> delegate.getEssaysUnderAge0(collectionName, pageSize, cursor));
+    }
+
+    @Override
+    public long countBooks(String collectionName) {
+        return cachedValue(collectionName, LibraryQueries.COUNT_BOOKS, Book.class,
+                () -> delegate.countBooks(collectionName), count -> count > 0);
+    }
+
+    @Override
+    public long countPoems(String collectionName) {
+        return cachedValue(collectionName, LibraryQueries.COUNT_POEMS, Poem.class,
+                () -> delegate.countPoems(collectionName), count -> count > 0);
+    }
+
+    @Override
+    public long countEssays(String collectionName) {
+        return cachedValue(collectionName, LibraryQueries.COUNT_ESSAYS, Essay.class,
+                () -> delegate.countEssays(collectionName), count -> count > 0);
+    }
+
+    @Override
+    public List<AuthorCount> countBooksByAuthor(String collectionName) {
+        return cachedValue(collectionName, LibraryQueries.BOOKS_PER_AUTHOR, Book.class,
+                () -> Collections.unmodifiableList(delegate.countBooksByAuthor(collectionName)),
+                counts -> !counts.isEmpty());
+    }
+
+    @Override
+    public List<YearCount> getBookYearHistogram(String collectionName, int bucketSize) {
+        return cachedValue(collectionName, LibraryQueries.BOOK_YEAR_HISTOGRAM + "#bucket=" + bucketSize, Book.class,
+                () -> Collections.unmodifiableList(delegate.getBookYearHistogram(collectionName, bucketSize)),
+                histogram -> !histogram.isEmpty());
+    }
+
+    @Override
+    public YearRange getBookYearRange(String collectionName) {
+        return cachedValue(collectionName, LibraryQueries.BOOK_YEAR_RANGE, Book.class,
+                () -> delegate.getBookYearRange(collectionName), range -> range.count() > 0);
+    }
+
+    @Override
+    public Page<SearchHit<Book>> searchBooks(String collectionName, String text, int pageSize, String cursor) {
+        return cachedSearch(collectionName, LibraryQueries.SEARCH_BOOKS, Book.class, text, pageSize, cursor,
+                () -> delegate.searchBooks(collectionName, text, pageSize, cursor));
+    }
+
+    @Override
+    public Page<SearchHit<Poem>> searchPoems(String collectionName, String text, int pageSize, String cursor) {
+        return cachedSearch(collectionName, LibraryQueries.SEARCH_POEMS, Poem.class, text, pageSize, cursor,
+                () -> delegate.searchPoems(collectionName, text, pageSize, cursor));
+    }
+
+    @Override
+    public Page<SearchHit<Essay>> searchEssays(String collectionName, String text, int pageSize, String cursor) {
+        return cachedSearch(collectionName, LibraryQueries.SEARCH_ESSAYS, Essay.class, text, pageSize, cursor,
+                () -> delegate.searchEssays(collectionName, text, pageSize, cursor));
+    }
+
+    @Override
+    public ChangeSet<Book> getBookChanges(String collectionName, SyncToken since) {
+        return invalidateOnChange(collectionName, delegate.getBookChanges(collectionName, since));
+    }
+
+    @Override
+    public ChangeSet<Poem> getPoemChanges(String collectionName, SyncToken since) {
+        return invalidateOnChange(collectionName, delegate.getPoemChanges(collectionName, since));
+    }
+
+    @Override
+    public ChangeSet<Essay> getEssayChanges(String collectionName, SyncToken since) {
+        return invalidateOnChange(collectionName, delegate.getEssayChanges(collectionName, since));
+    }
+
+    @Override
+    public long insertBooks(String collectionName, String resourceName, List<Book> books) {
+        try {
+            return delegate.insertBooks(collectionName, resourceName, books);
+        } finally {
+            cache.invalidate(collectionName);
+        }
+    }
+
+    @Override
+    public long updateBook(String collectionName, String title, Book book) {
+        try {
+            return delegate.updateBook(collectionName, title, book);
+        } finally {
+            cache.invalidate(collectionName);
+        }
+    }
+
+    @Override
+    public long deleteWhere(String collectionName, Class<? extends DatabaseModel> clazz, String field,
+                            Comparison comparison, Object value) {
+        try {
+            return delegate.deleteWhere(collectionName, clazz, field, comparison, value);
+        } finally {
+            cache.invalidate(collectionName);
+        }
+    }
+
+    @Override
+    public long update(String collectionName, UpdateBatch batch) {
+        try {
+            return delegate.update(collectionName, batch);
+        } finally {
+            cache.invalidate(collectionName);
+        }
+    }
+
+    /**
+     * Removes the cached results of a collection. Should be called after the collection is modified.
+     *
+     * @param collectionName The name of the modified collection.
+     */
+    public void invalidate(String collectionName) {
+        cache.invalidate(collectionName);
+    }
+
+    /**
+     * Removes every cached result.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Retrieves the hit, miss and eviction statistics of the cache.
+     *
+     * @return A snapshot of the cache statistics.
+     */
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Invalidates the cached results of a collection if a synchronization found changes in it.
+     *
+     * @param collectionName The name of the synchronized collection.
+     * @param changes The changes found.
+     * @param <T> The type of the items.
+     * @return The same changes.
+     */
+    private <T> ChangeSet<T> invalidateOnChange(String collectionName, ChangeSet<T> changes) {
+        if (!changes.isEmpty()) cache.invalidate(collectionName);
+        return changes;
+    }
+
+    /**
+     * Retrieves a list result from the cache, running the query on a miss.
+     *
+     * @param collectionName The name of the queried collection.
+     * @param query The query behind the DAO method.
+     * @param clazz The class the results are mapped to.
+     * @param loader Runs the query on the delegate.
+     * @param <T> The type of the results.
+     * @return The cached or loaded results.
+     */
+    private <T extends DatabaseModel> List<T> cachedList(String collectionName, String query, Class<T> clazz,
+                                                         Supplier<List<T>> loader) {
+        CacheKey key = new CacheKey(collectionName, query, clazz);
+        List<T> items = cache.get(key);
+        if (items == null) {
+            long generation = cache.generation(collectionName);
+            items = Collections.unmodifiableList(loader.get());
+            if (!items.isEmpty()) cache.put(key, items, QueryCache.estimateWeight(items, clazz), generation);
+        }
+        return items;
+    }
+
+    /**
+     * Retrieves a page of search hits from the cache, running the search on a miss.
+     * The search text, the page size and the cursor are part of the cache key.
+     *
+     * @param collectionName The name of the searched collection.
+     * @param query The query behind the DAO method.
+     * @param clazz The class the hits are mapped to.
+     * @param text The full-text query.
+     * @param pageSize The size of the page.
+     * @param cursor The cursor of the page.
+     * @param loader Runs the search on the delegate.
+     * @param <T> The type of the hits.
+     * @return The cached or loaded page.
+     */
+    private <T extends DatabaseModel> Page<SearchHit<T>> cachedSearch(String collectionName, String query,
+                                                                     Class<T> clazz, String text, int pageSize,
+                                                                     String cursor,
+                                                                     Supplier<Page<SearchHit<T>>> loader) {
+        CacheKey key = new CacheKey(collectionName,
+                query + "#text=" + text + "&page=" + pageSize + "&cursor=" + cursor, clazz);
+        Page<SearchHit<T>> page = cache.get(key);
+        if (page == null) {
+            long generation = cache.generation(collectionName);
+            page = unmodifiable(loader.get());
+            if (!page.getItems().isEmpty()) {
+                List<T> items = page.getItems().stream().map(SearchHit::item).toList();
+                cache.put(key, page, QueryCache.estimateWeight(items, clazz) + page.getItems().size() * 16L,
+                        generation);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Retrieves an aggregated value from the cache, running the query on a miss.
+     * Aggregations are small, so their weight is estimated from the number of rows.
+     *
+     * @param collectionName The name of the queried collection.
+     * @param query The query behind the DAO method, including its arguments.
+     * @param clazz The class of the aggregated items.
+     * @param loader Runs the query on the delegate.
+     * @param cacheable Tells whether a loaded value may be cached; empty values may come from a failed query.
+     * @param <V> The type of the value.
+     * @return The cached or loaded value.
+     */
+    private <V> V cachedValue(String collectionName, String query, Class<?> clazz, Supplier<V> loader,
+                              Predicate<V> cacheable) {
+        CacheKey key = new CacheKey(collectionName, query, clazz);
+        V value = cache.get(key);
+        if (value == null) {
+            long generation = cache.generation(collectionName);
+            value = loader.get();
+            if (cacheable.test(value)) {
+                cache.put(key, value, value instanceof List<?> rows ? rows.size() * ROW_WEIGHT : ROW_WEIGHT,
+                        generation);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves a page from the cache, running the query on a miss.
+     * The page size and the cursor are part of the cache key.
+     *
+     * @param collectionName The name of the queried collection.
+     * @param query The query behind the DAO method.
+     * @param clazz The class the results are mapped to.
+     * @param pageSize The size of the page.
+     * @param cursor The cursor of the page.
+     * @param loader Runs the query on the delegate.
+     * @param <T> The type of the results.
+     * @return The cached or loaded page.
+     */
+    private <T extends DatabaseModel> Page<T> cachedPage(String collectionName, String query, Class<T> clazz,
+                                                         int pageSize, String cursor, Supplier<Page<T>> loader) {
+        CacheKey key = new CacheKey(collectionName, query + "#page=" + pageSize + "&cursor=" + cursor, clazz);
+        Page<T> page = cache.get(key);
+        if (page == null) {
+            long generation = cache.generation(collectionName);
+            page = unmodifiable(loader.get());
+            if (!page.getItems().isEmpty()) {
+                cache.put(key, page, QueryCache.estimateWeight(page.getItems(), clazz), generation);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Wraps the items of a page in an unmodifiable list, so callers sharing a cached page cannot change it.
+     *
+     * @param page The page returned by the delegate.
+     * @param <T> The type of the items.
+     * @return A page with the same items and cursor.
+     */
+    private static <T> Page<T> unmodifiable(Page<T> page) {
+        return new Page<>(Collections.unmodifiableList(page.getItems()), page.getNextCursor());
+    }
+}
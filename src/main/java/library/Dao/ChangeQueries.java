@@ -0,0 +1,42 @@
+package library.Dao;
+
+/**
+ * XQuery statements of the incremental synchronization of {@link QueryManager#fetchChanges}.
+ * <p>
+ * The XML resources of a collection are listed with their last-modified times by the {@code xmldb} module, so
+ * finding the changes only transfers one small tuple per resource. The items of the changed resources are then read
+ * in a single projection query whose tuples start with the position of their resource in the requested list. Binary
+ * resources have no items and are not listed.
+ * </p>
+ */
+final class ChangeQueries {
+
+    private static final String RESOURCE_INDEX = "$resource-index";
+
+    static final String RESOURCE_TIMESTAMPS =
+            "declare variable $collection external; "
+                    + "for $name in xmldb:get-child-resources($collection) "
+                    + "where not(util:is-binary-doc($collection || '/' || $name)) "
+                    + "let $modified := xmldb:last-modified($collection, $name) "
+                    + "return serialize([$name, string(xs:integer(($modified - xs:dateTime('1970-01-01T00:00:00Z')) "
+                    + "div xs:dayTimeDuration('PT0.001S')))], map { 'method': 'json' })";
+
+    private ChangeQueries() {
+    }
+
+    /**
+     * Builds the query that reads the items of several resources. It declares the external variables
+     * {@code $collection}, the path of the collection, and {@code $resources}, the names of the resources separated
+     * by slashes.
+     *
+     * @param itemQuery The query that selects the items of a document, e.g. {@code //book}.
+     * @param mapper The binding plan of the target class.
+     * @return The query, whose tuples start with the position of their resource, counting from 1.
+     */
+    static String resourceItems(String itemQuery, ModelMapper<?> mapper) {
+        return "declare variable $collection external; declare variable $resources external; "
+                + "for $resource-name at " + RESOURCE_INDEX + " in tokenize($resources, '/') "
+                + "return doc($collection || '/' || $resource-name) ! ("
+                + QueryProjection.projectTagged(itemQuery, mapper, "string(" + RESOURCE_INDEX + ")") + ")";
+    }
+}
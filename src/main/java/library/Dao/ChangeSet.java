@@ -0,0 +1,93 @@
+package library.Dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes of a collection since a {@link SyncToken}, computed by {@link QueryManager#fetchChanges}.
+ * <p>
+ * Changes are reported per resource, since a resource is the unit that eXist-db timestamps: the items of an added
+ * or modified resource replace every item previously read from it, and the items of a removed resource should be
+ * discarded. The token of the change set must be passed to the next synchronization.
+ * </p>
+ *
+ * @param <T> The type of the items.
+ */
+public class ChangeSet<T> {
+    private final Map<String, List<T>> added;
+    private final Map<String, List<T>> modified;
+    private final Set<String> removed;
+    private final SyncToken token;
+
+    /**
+     * Creates a change set.
+     *
+     * @param added The items of the new resources, keyed by resource name.
+     * @param modified The current items of the modified resources, keyed by resource name.
+     * @param removed The names of the removed resources.
+     * @param token The watermark to use in the next synchronization.
+     */
+    ChangeSet(Map<String, List<T>> added, Map<String, List<T>> modified, Set<String> removed, SyncToken token) {
+        this.added = Collections.unmodifiableMap(added);
+        this.modified = Collections.unmodifiableMap(modified);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.token = token;
+    }
+
+    /**
+     * Retrieves the items of the resources added since the previous synchronization.
+     *
+     * @return The items keyed by resource name.
+     */
+    public Map<String, List<T>> getAdded() {
+        return added;
+    }
+
+    /**
+     * Retrieves the items of the resources modified since the previous synchronization.
+     *
+     * @return The current items keyed by resource name.
+     */
+    public Map<String, List<T>> getModified() {
+        return modified;
+    }
+
+    /**
+     * Retrieves the resources removed since the previous synchronization.
+     *
+     * @return The names of the removed resources.
+     */
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Retrieves the watermark of this synchronization.
+     *
+     * @return The token to pass to the next synchronization.
+     */
+    public SyncToken getToken() {
+        return token;
+    }
+
+    /**
+     * Checks if the collection changed since the previous synchronization.
+     *
+     * @return {@code true} if no resource was added, modified or removed.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeSet{" +
+                "added=" + added.keySet() +
+                ", modified=" + modified.keySet() +
+                ", removed=" + removed +
+                ", token=" + token +
+                '}';
+    }
+}
@@ -0,0 +1,486 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+import library.model.ModelCodecs;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Columnar store of query results, kept outside the Java heap, for analytical scans over large collections.
+ * <p>
+ * Instead of one object per result, every field of the model class is a column in a direct buffer: {@code int}
+ * fields, such as {@code publishYear}, are stored as they are, and {@code String} fields, such as {@code author}, are
+ * dictionary-encoded, so each distinct value is stored once and the column only holds its code. Stores are filled by
+ * {@link QueryManager#fetchColumns}.
+ * </p>
+ *
+ * <p>
+ * The rows are filtered, sorted and counted through {@link Selection}s, which only hold row numbers; filters on a
+ * text column evaluate the condition once per distinct value. Objects of the model class are only created when a
+ * row is read, e.g. through the list view of {@link Selection#asList()}. A store is not thread-safe.
+ * </p>
+ *
+ * <p>
+ * Direct buffers are limited by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size, and not
+ * by {@code -Xmx}; {@link #getOffHeapBytes()} reports what a store reserves. The buffers replaced while the store
+ * grows are freed at once, and {@link #close()} frees the rest, so stores should be closed once they have been
+ * read instead of waiting for a garbage collection to release their memory.
+ * </p>
+ *
+ * @param <T> The model type of the rows.
+ */
+public final class ColumnStore<T extends DatabaseModel> implements AutoCloseable {
+
+    private final ModelMapper<T> mapper;
+    private final IntColumn[] columns;
+    // Dictionary of each text column, null for int columns.
+    private final StringDictionary[] dictionaries;
+    private int size;
+    private boolean closed;
+
+    /**
+     * Creates an empty store for the fields of the specified mapper.
+     *
+     * @param mapper The binding plan of the model class.
+     */
+    ColumnStore(ModelMapper<T> mapper) {
+        this.mapper = mapper;
+        this.columns = new IntColumn[mapper.getFieldCount()];
+        this.dictionaries = new StringDictionary[mapper.getFieldCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new IntColumn(1024);
+            if (!mapper.isIntField(i)) dictionaries[i] = new StringDictionary();
+        }
+    }
+
+    /**
+     * Appends a row. {@code int} values are parsed like the mapping of the model class.
+     *
+     * @param values The raw values of the row, indexed like the fields of the mapper.
+     */
+    void add(String[] values) {
+        checkOpen();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].add(dictionaries[i] != null
+                    ? dictionaries[i].encode(values[i])
+                    : ModelCodecs.parseInt(values[i], mapper.getFieldName(i)));
+        }
+        size++;
+    }
+
+    /**
+     * Retrieves the model class of the rows.
+     *
+     * @return The class whose fields are the columns.
+     */
+    public Class<T> getType() {
+        return mapper.getType();
+    }
+
+    /**
+     * Retrieves the number of rows.
+     *
+     * @return The number of rows in the store.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of distinct values of a text column.
+     *
+     * @param fieldName The name of a {@code String} field.
+     * @return The number of distinct values, not counting {@code null}.
+     * @throws IllegalArgumentException If the field is not a {@code String} field of the model class.
+     */
+    public int getDistinctCount(String fieldName) {
+        return dictionary(fieldName).size();
+    }
+
+    /**
+     * Retrieves the memory reserved by the columns and dictionaries outside the heap.
+     *
+     * @return The capacity of the buffers, in bytes.
+     */
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (int i = 0; i < columns.length; i++) {
+            bytes += columns[i].getOffHeapBytes();
+            if (dictionaries[i] != null) bytes += dictionaries[i].getOffHeapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads the value of a text field.
+     *
+     * @param row The row number.
+     * @param fieldName The name of a {@code String} field.
+     * @return The value, may be {@code null}.
+     * @throws IllegalArgumentException If the field is not a {@code String} field of the model class.
+     * @throws IllegalStateException If the store is closed.
+     */
+    public String getString(int row, String fieldName) {
+        checkOpen();
+        int column = column(fieldName);
+        return dictionary(column, fieldName).decode(columns[column].get(checkRow(row)));
+    }
+
+    /**
+     * Reads the value of an {@code int} field.
+     *
+     * @param row The row number.
+     * @param fieldName The name of an {@code int} field.
+     * @return The value.
+     * @throws IllegalArgumentException If the field is not an {@code int} field of the model class.
+     * @throws IllegalStateException If the store is closed.
+     */
+    public int getInt(int row, String fieldName) {
+        checkOpen();
+        return columns[intColumn(fieldName)].get(checkRow(row));
+    }
+
+    /**
+     * Creates an object of the model class with the values of a row.
+     *
+     * @param row The row number.
+     * @return A new object of type {@code T}.
+     * @throws IllegalStateException If the store is closed or the object cannot be created.
+     */
+    public T get(int row) {
+        checkOpen();
+        checkRow(row);
+        String[] values = new String[columns.length];
+        int[] intValues = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            int value = columns[i].get(row);
+            if (dictionaries[i] != null) {
+                values[i] = dictionaries[i].decode(value);
+            } else {
+                intValues[i] = value;
+            }
+        }
+        try {
+            return mapper.create(values, intValues);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot create " + mapper.getType().getName(), e);
+        }
+    }
+
+    /**
+     * Selects every row, in insertion order.
+     *
+     * @return A selection of all the rows.
+     * @throws IllegalStateException If the store is closed.
+     */
+    public Selection rows() {
+        checkOpen();
+        int[] rows = new int[size];
+        Arrays.setAll(rows, i -> i);
+        return new Selection(rows);
+    }
+
+    /**
+     * Frees the off-heap memory of the columns and dictionaries. The store and its selections cannot be read
+     * afterwards. Closing a closed store has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        size = 0;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].free();
+            if (dictionaries[i] != null) dictionaries[i].free();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("The column store is closed");
+    }
+
+    private int column(String fieldName) {
+        int column = mapper.indexOf(fieldName);
+        if (column < 0) {
+            throw new IllegalArgumentException("Unknown field of " + mapper.getType().getName() + ": " + fieldName);
+        }
+        return column;
+    }
+
+    private int intColumn(String fieldName) {
+        int column = column(fieldName);
+        if (dictionaries[column] != null) throw new IllegalArgumentException("Not an int field: " + fieldName);
+        return column;
+    }
+
+    private StringDictionary dictionary(String fieldName) {
+        return dictionary(column(fieldName), fieldName);
+    }
+
+    private StringDictionary dictionary(int column, String fieldName) {
+        if (dictionaries[column] == null) throw new IllegalArgumentException("Not a String field: " + fieldName);
+        return dictionaries[column];
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        return row;
+    }
+
+    /**
+     * Ordered subset of the rows of a {@link ColumnStore}.
+     * <p>
+     * A selection only holds row numbers, so filtering and sorting never copy the columns. Every operation returns
+     * a new selection and leaves this one unchanged. Once the store is closed, the operations that read its values
+     * throw an {@link IllegalStateException}.
+     * </p>
+     */
+    public final class Selection {
+        private final int[] rows;
+
+        private Selection(int[] rows) {
+            this.rows = rows;
+        }
+
+        /**
+         * Retrieves the number of selected rows.
+         *
+         * @return The size of the selection.
+         */
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * Retrieves the row number at a position of the selection, to read its values with
+         * {@link ColumnStore#getString(int, String)} or {@link ColumnStore#getInt(int, String)}.
+         *
+         * @param index The position in the selection.
+         * @return The row number in the store.
+         */
+        public int getRow(int index) {
+            return rows[index];
+        }
+
+        /**
+         * Keeps the rows whose {@code int} field matches a condition.
+         *
+         * @param fieldName The name of an {@code int} field.
+         * @param condition The condition on the value.
+         * @return The matching rows, in the same order.
+         * @throws IllegalArgumentException If the field is not an {@code int} field of the model class.
+         */
+        public Selection whereInt(String fieldName, IntPredicate condition) {
+            IntColumn column = columns[intColumn(fieldName)];
+            return filter(row -> condition.test(column.get(row)));
+        }
+
+        /**
+         * Keeps the rows whose text field matches a condition. The condition is evaluated once per distinct value,
+         * and rows whose value is {@code null} never match.
+         *
+         * @param fieldName The name of a {@code String} field.
+         * @param condition The condition on the value.
+         * @return The matching rows, in the same order.
+         * @throws IllegalArgumentException If the field is not a {@code String} field of the model class.
+         */
+        public Selection whereString(String fieldName, Predicate<String> condition) {
+            checkOpen();
+            int column = column(fieldName);
+            StringDictionary dictionary = dictionary(column, fieldName);
+            boolean[] matches = new boolean[dictionary.size()];
+            for (int code = 0; code < matches.length; code++) {
+                matches[code] = condition.test(dictionary.decode(code));
+            }
+            return filter(row -> {
+                int code = columns[column].get(row);
+                return code >= 0 && matches[code];
+            });
+        }
+
+        /**
+         * Keeps the rows whose text field is equal to a value, comparing the dictionary codes.
+         *
+         * @param fieldName The name of a {@code String} field.
+         * @param value The value, or {@code null} to select the rows without value.
+         * @return The matching rows, in the same order.
+         * @throws IllegalArgumentException If the field is not a {@code String} field of the model class.
+         */
+        public Selection whereEquals(String fieldName, String value) {
+            checkOpen();
+            int column = column(fieldName);
+            int code = dictionary(column, fieldName).find(value);
+            if (code == StringDictionary.ABSENT) return new Selection(new int[0]);
+            return filter(row -> columns[column].get(row) == code);
+        }
+
+        /**
+         * Sorts the rows by a field. Text fields are sorted by the Unicode code points of their values, with
+         * {@code null} values first in ascending order. The sort is stable.
+         *
+         * @param fieldName The name of the field.
+         * @param descending {@code true} to sort in descending order.
+         * @return The rows in the new order.
+         * @throws IllegalArgumentException If the field is not a field of the model class.
+         */
+        public Selection sortBy(String fieldName, boolean descending) {
+            checkOpen();
+            int column = column(fieldName);
+            int[] ranks = dictionaries[column] != null ? ranks(dictionaries[column]) : null;
+
+            // Each key holds the sort value in its high bits and the position in its low bits, so sorting the keys
+            // sorts the rows without boxing them, and equal values keep their order.
+            long[] keys = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                int value = columns[column].get(rows[i]);
+                if (ranks != null) value = value >= 0 ? ranks[value] : -1;
+                long sortValue = descending ? ~value : value;
+                keys[i] = sortValue << 32 | i;
+            }
+            Arrays.sort(keys);
+
+            int[] sorted = new int[rows.length];
+            for (int i = 0; i < keys.length; i++) {
+                sorted[i] = rows[(int) keys[i]];
+            }
+            return new Selection(sorted);
+        }
+
+        /**
+         * Keeps the first rows of the selection.
+         *
+         * @param count The maximum number of rows.
+         * @return The first rows.
+         * @throws IllegalArgumentException If the count is negative.
+         */
+        public Selection limit(int count) {
+            if (count < 0) throw new IllegalArgumentException("Negative limit: " + count);
+            return count >= rows.length ? this : new Selection(Arrays.copyOf(rows, count));
+        }
+
+        /**
+         * Groups the rows by a text field and counts them.
+         *
+         * @param fieldName The name of a {@code String} field.
+         * @return The number of rows of each value, ordered by the code points of the values; rows without value are
+         *         counted under the {@code null} key, which comes first.
+         * @throws IllegalArgumentException If the field is not a {@code String} field of the model class.
+         */
+        public Map<String, Long> countByString(String fieldName) {
+            checkOpen();
+            int column = column(fieldName);
+            StringDictionary dictionary = dictionary(column, fieldName);
+            long[] counts = new long[dictionary.size()];
+            long nulls = 0;
+            for (int row : rows) {
+                int code = columns[column].get(row);
+                if (code >= 0) {
+                    counts[code]++;
+                } else {
+                    nulls++;
+                }
+            }
+
+            Map<String, Long> groups = new LinkedHashMap<>();
+            if (nulls > 0) groups.put(null, nulls);
+            for (int code : dictionary.sortedCodes()) {
+                if (counts[code] > 0) groups.put(dictionary.decode(code), counts[code]);
+            }
+            return groups;
+        }
+
+        /**
+         * Groups the rows by an {@code int} field and counts them.
+         *
+         * @param fieldName The name of an {@code int} field.
+         * @return The number of rows of each value, in ascending order of value.
+         * @throws IllegalArgumentException If the field is not an {@code int} field of the model class.
+         */
+        public Map<Integer, Long> countByInt(String fieldName) {
+            checkOpen();
+            IntColumn column = columns[intColumn(fieldName)];
+            int[] values = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                values[i] = column.get(rows[i]);
+            }
+            Arrays.sort(values);
+
+            Map<Integer, Long> groups = new LinkedHashMap<>();
+            for (int start = 0, end; start < values.length; start = end) {
+                end = start + 1;
+                while (end < values.length && values[end] == values[start]) end++;
+                groups.put(values[start], (long) (end - start));
+            }
+            return groups;
+        }
+
+        /**
+         * Creates an object of the model class for a row of the selection.
+         *
+         * @param index The position in the selection.
+         * @return A new object with the values of the row.
+         */
+        public T get(int index) {
+            return ColumnStore.this.get(rows[index]);
+        }
+
+        /**
+         * Passes an object of the model class for every row of the selection, in order. Each object is created when
+         * it is passed, so only the current row is on the heap unless the action keeps it.
+         *
+         * @param action The action to perform on each row.
+         */
+        public void forEach(Consumer<? super T> action) {
+            for (int row : rows) {
+                action.accept(ColumnStore.this.get(row));
+            }
+        }
+
+        /**
+         * Retrieves a read-only list view of the selection. The objects of the model class are created when they are
+         * read and are not kept by the list.
+         *
+         * @return The view of the selected rows.
+         */
+        public List<T> asList() {
+            return new AbstractList<>() {
+                @Override
+                public T get(int index) {
+                    return Selection.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return rows.length;
+                }
+            };
+        }
+
+        private Selection filter(IntPredicate condition) {
+            checkOpen();
+            int[] matching = new int[rows.length];
+            int count = 0;
+            for (int row : rows) {
+                if (condition.test(row)) matching[count++] = row;
+            }
+            return new Selection(count == rows.length ? rows : Arrays.copyOf(matching, count));
+        }
+
+        // Position of each code in the order of the values.
+        private int[] ranks(StringDictionary dictionary) {
+            int[] sortedCodes = dictionary.sortedCodes();
+            int[] ranks = new int[sortedCodes.length];
+            for (int rank = 0; rank < sortedCodes.length; rank++) {
+                ranks[sortedCodes[rank]] = rank;
+            }
+            return ranks;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package library.Dao;
+
+/**
+ * Comparison operators of the typed conditions of {@link LibraryDao#deleteWhere}, which compare a field of each item
+ * with a value.
+ */
+public enum Comparison {
+    /** The field is equal to the value. */
+    EQ("="),
+    /** The field is not equal to the value. */
+    NE("!="),
+    /** The field is less than the value. */
+    LT("<"),
+    /** The field is less than or equal to the value. */
+    LE("<="),
+    /** The field is greater than the value. */
+    GT(">"),
+    /** The field is greater than or equal to the value. */
+    GE(">=");
+
+    private final String operator;
+
+    Comparison(String operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * Retrieves the XPath general comparison of the operator.
+     *
+     * @return The operator, e.g. {@code <} for {@link #LT}.
+     */
+    String getOperator() {
+        return operator;
+    }
+}
@@ -0,0 +1,57 @@
+package library.Dao;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Releases the native memory of direct buffers without waiting for them to be garbage collected.
+ * <p>
+ * The JDK only frees a direct buffer when its cleaner runs after a collection, so a store that keeps doubling its
+ * buffers could reach {@code -XX:MaxDirectMemorySize} while the discarded ones are still waiting. The memory is
+ * freed through {@code sun.misc.Unsafe.invokeCleaner}, from the {@code jdk.unsupported} module; if it is not
+ * available, buffers are left to the garbage collector.
+ * </p>
+ */
+final class DirectBuffers {
+
+    private static final Logger logger = Logger.getLogger(DirectBuffers.class.getName());
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.WARNING, "Direct buffers will only be released by the garbage collector", e);
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private DirectBuffers() {
+    }
+
+    /**
+     * Frees the memory of a direct buffer. The buffer, and every view of it, must not be used afterwards.
+     *
+     * @param buffer The buffer returned by {@link ByteBuffer#allocateDirect(int)}, not a view or a slice of it.
+     */
+    static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || !buffer.isDirect()) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            logger.log(Level.WARNING, "Cannot free a direct buffer", e);
+        }
+    }
+}
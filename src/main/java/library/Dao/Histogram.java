@@ -0,0 +1,133 @@
+package library.Dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of non-negative values, such as latencies in nanoseconds or result sizes.
+ * <p>
+ * Like HdrHistogram, values are counted in log-linear buckets: every power of two is split into 16 buckets, so the
+ * reported percentiles are within about 6% of the real values while the histogram has a bounded size. The buckets
+ * of a power of two are allocated when the first value falls in it, so a histogram only takes the memory of the
+ * range of values it has seen instead of the 8 KB of every bucket. Recording a value only increments a few counters,
+ * without locks, and only allocates the first time a power of two is reached.
+ * </p>
+ */
+public class Histogram {
+
+    // Number of buckets per power of two, as a power of two.
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    // Buckets of each power of two, allocated on first use.
+    private final AtomicReferenceArray<AtomicLongArray> counts = new AtomicReferenceArray<>(BUCKETS / SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        int bucket = bucketOf(value);
+        bucketsOf(bucket / SUB_BUCKETS).incrementAndGet(bucket % SUB_BUCKETS);
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Creates a snapshot of the recorded values. Values recorded while the snapshot is taken may be missing from it.
+     *
+     * @return The count, mean, percentiles and maximum of the recorded values.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            AtomicLongArray power = counts.get(i / SUB_BUCKETS);
+            if (power == null) {
+                i += SUB_BUCKETS - 1;
+                continue;
+            }
+            buckets[i] = power.get(i % SUB_BUCKETS);
+            total += buckets[i];
+        }
+
+        long maxValue = max.get();
+        double mean = total == 0 ? 0 : (double) sum.sum() / count.sum();
+        return new HistogramSnapshot(total, mean,
+                percentile(buckets, total, 0.50, maxValue),
+                percentile(buckets, total, 0.90, maxValue),
+                percentile(buckets, total, 0.99, maxValue),
+                percentile(buckets, total, 0.999, maxValue),
+                maxValue);
+    }
+
+    /**
+     * Retrieves the buckets of a power of two, allocating them if no value has been recorded in it yet.
+     *
+     * @param power The index of the power of two.
+     * @return The counters of its buckets.
+     */
+    private AtomicLongArray bucketsOf(int power) {
+        AtomicLongArray buckets = counts.get(power);
+        if (buckets == null) {
+            counts.compareAndSet(power, null, new AtomicLongArray(SUB_BUCKETS));
+            buckets = counts.get(power);
+        }
+        return buckets;
+    }
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value The non-negative value.
+     * @return The index of the bucket.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Retrieves the highest value counted in a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The upper bound of the bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Computes a percentile from the bucket counts.
+     *
+     * @param buckets The bucket counts.
+     * @param total The sum of the bucket counts.
+     * @param quantile The quantile, between 0 and 1.
+     * @param maxValue The maximum recorded value, which bounds the result.
+     * @return The upper bound of the bucket that contains the percentile, or 0 if there are no values.
+     */
+    private static long percentile(long[] buckets, long total, double quantile, long maxValue) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return Math.min(highestValueOf(i), maxValue);
+        }
+        return maxValue;
+    }
+}
@@ -0,0 +1,76 @@
+package library.Dao;
+
+/**
+ * Immutable snapshot of a {@link Histogram}.
+ */
+public class HistogramSnapshot {
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param count Number of recorded values.
+     * @param mean Mean of the recorded values.
+     * @param p50 Median of the recorded values.
+     * @param p90 90th percentile of the recorded values.
+     * @param p99 99th percentile of the recorded values.
+     * @param p999 99.9th percentile of the recorded values.
+     * @param max Maximum recorded value.
+     */
+    HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{" +
+                "count=" + count +
+                ", mean=" + mean +
+                ", p50=" + p50 +
+                ", p90=" + p90 +
+                ", p99=" + p99 +
+                ", p999=" + p999 +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package library.Dao;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Growable column of {@code int} values stored outside the Java heap, in a direct buffer.
+ * <p>
+ * The buffer doubles its capacity when it is full, copying the values into a new direct buffer and freeing the
+ * previous one at once. The last buffer is freed by {@link #free()}, or when the column is garbage collected.
+ * Not thread-safe.
+ * </p>
+ */
+final class IntColumn {
+
+    // Largest capacity whose size in bytes can be allocated by a direct buffer.
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / Integer.BYTES;
+
+    // Buffer that owns the memory, and its int view.
+    private ByteBuffer memory;
+    private IntBuffer values;
+    private int size;
+
+    /**
+     * Creates an empty column.
+     *
+     * @param capacity The initial number of values that fit in the column.
+     */
+    IntColumn(int capacity) {
+        allocate(Math.max(capacity, 16));
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value The value to append.
+     * @throws IllegalStateException If the column cannot grow anymore.
+     */
+    void add(int value) {
+        if (size == values.capacity()) grow();
+        values.put(size++, value);
+    }
+
+    /**
+     * Retrieves a value.
+     *
+     * @param index The position of the value.
+     * @return The value.
+     */
+    int get(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * Retrieves the number of values.
+     *
+     * @return The number of values appended to the column.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the memory reserved by the column outside the heap.
+     *
+     * @return The capacity of the buffer, in bytes.
+     */
+    long getOffHeapBytes() {
+        return (long) values.capacity() * Integer.BYTES;
+    }
+
+    /**
+     * Frees the memory of the column. The column is empty afterwards, and reading any index throws an
+     * {@link IndexOutOfBoundsException}.
+     */
+    void free() {
+        DirectBuffers.free(memory);
+        memory = ByteBuffer.allocate(0);
+        values = memory.asIntBuffer();
+        size = 0;
+    }
+
+    private void grow() {
+        if (values.capacity() == MAX_CAPACITY) throw new IllegalStateException("The column is full");
+        ByteBuffer previousMemory = memory;
+        IntBuffer previous = values;
+        allocate((int) Math.min((long) values.capacity() * 2, MAX_CAPACITY));
+        values.put(0, previous, 0, size);
+        DirectBuffers.free(previousMemory);
+    }
+
+    private void allocate(int capacity) {
+        memory = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+        values = memory.asIntBuffer();
+    }
+}
@@ -0,0 +1,205 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+import org.exist.xmldb.LocalXMLResource;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xmldb.api.base.XMLDBException;
+import org.xmldb.api.modules.XMLResource;
+
+import java.util.Arrays;
+
+/**
+ * Decodes the JSON tuples returned by a {@link QueryProjection} into the raw field values of a {@link DatabaseModel}.
+ * It also decodes the rows returned by aggregation queries, see {@link QueryManager#fetchTuples}.
+ * <p>
+ * A tuple is a flat JSON array whose members are strings or {@code null}, indexed like the fields of the
+ * {@link ModelMapper}. The parser only supports that shape, so it decodes a tuple in one pass without building any
+ * intermediate objects.
+ * </p>
+ *
+ * <p>
+ * A tuple is an atomic string, not an XML document, so how it is read depends on the resource, see
+ * {@link #decode(XMLResource)}. An instance can be reused for several resources, but it is not thread-safe.
+ * </p>
+ *
+ * @param <T> The type of the mapped model.
+ */
+class JsonTupleDecoder<T extends DatabaseModel> extends DefaultHandler {
+
+    private final String[] values;
+    private final StringBuilder tuple = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+    private String json;
+    private int position;
+
+    /**
+     * Creates a decoder for the fields of the specified mapper.
+     *
+     * @param mapper The binding plan of the target class.
+     */
+    JsonTupleDecoder(ModelMapper<T> mapper) {
+        this(mapper.getFieldCount());
+    }
+
+    /**
+     * Creates a decoder for tuples of up to the specified number of members.
+     *
+     * @param width The maximum number of members of a tuple.
+     */
+    JsonTupleDecoder(int width) {
+        this.values = new String[width];
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        tuple.append(ch, start, length);
+    }
+
+    /**
+     * Reads and decodes the tuple of a result resource.
+     * <p>
+     * The text content of an embedded resource escapes non-BMP characters as character references, so its tuple is
+     * received as the text of a SAX stream, like {@link ModelContentHandler}. A remote resource parses its content as
+     * an XML document when it is read with SAX, which fails for a string, so its tuple is read with
+     * {@link XMLResource#getContent()}.
+     * </p>
+     *
+     * @param resource The resource whose content is the tuple.
+     * @return The field values, indexed like the mapper fields. The array is reused by the next call.
+     * @throws XMLDBException If the content cannot be retrieved.
+     * @throws IllegalArgumentException If the content is not a valid tuple.
+     */
+    String[] decode(XMLResource resource) throws XMLDBException {
+        if (!(resource instanceof LocalXMLResource)) return decode((String) resource.getContent());
+        tuple.setLength(0);
+        resource.getContentAsSAX(this);
+        return decode(tuple.toString());
+    }
+
+    /**
+     * Decodes a tuple.
+     *
+     * @param tuple The JSON array.
+     * @return The field values, indexed like the mapper fields; missing values are {@code null}. The array is reused
+     *         by the next call.
+     * @throws IllegalArgumentException If the tuple is not a JSON array of strings and nulls, or has too many members.
+     */
+    String[] decode(String tuple) {
+        Arrays.fill(values, null);
+        json = tuple;
+        position = 0;
+
+        expect('[');
+        if (peek() == ']') {
+            position++;
+        } else {
+            int index = 0;
+            while (true) {
+                if (index >= values.length) throw error("Too many values");
+                values[index++] = readValue();
+                char c = next();
+                if (c == ']') break;
+                if (c != ',') throw error("Expected ',' or ']'");
+            }
+        }
+        if (peek() != 0) throw error("Unexpected content after the tuple");
+        return values;
+    }
+
+    /**
+     * Reads a string or {@code null} member.
+     *
+     * @return The decoded string, or {@code null}.
+     */
+    private String readValue() {
+        char c = peek();
+        if (c == 'n' && json.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+        expect('"');
+
+        // Strings without escapes are returned as a substring.
+        int start = position;
+        while (position < json.length()) {
+            char current = json.charAt(position);
+            if (current == '"') return json.substring(start, position++);
+            if (current == '\\') break;
+            position++;
+        }
+
+        text.setLength(0);
+        text.append(json, start, position);
+        while (position < json.length()) {
+            char current = json.charAt(position++);
+            if (current == '"') return text.toString();
+            if (current != '\\') {
+                text.append(current);
+                continue;
+            }
+            if (position >= json.length()) break;
+            char escaped = json.charAt(position++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    text.append(escaped);
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > json.length()) throw error("Invalid unicode escape");
+                    text.append((char) Integer.parseInt(json, position, position + 4, 16));
+                    position += 4;
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) throw error("Expected '" + expected + "'");
+    }
+
+    /**
+     * Skips whitespace and consumes the next character.
+     *
+     * @return The next character, or {@code 0} at the end of the tuple.
+     */
+    private char next() {
+        char c = peek();
+        if (c != 0) position++;
+        return c;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     *
+     * @return The next character, or {@code 0} at the end of the tuple.
+     */
+    private char peek() {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+        return position < json.length() ? json.charAt(position) : 0;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of the tuple: " + json);
+    }
+}
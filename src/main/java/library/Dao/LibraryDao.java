@@ -1,14 +1,87 @@
 package library.Dao;
 
 import library.model.Book;
+import library.model.DatabaseModel;
 import library.model.Essay;
 import library.model.Poem;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface LibraryDao {
     List<Book> getBooksUnder1950(String collectionName);
+    List<Book> getBooksBefore(String collectionName, int year);
+    List<Book> getBooksByAuthor(String collectionName, String author);
+    Page<Book> getBooksUnder1950(String collectionName, int pageSize, String cursor);
     List<Book> getAllBooks(String collectionName);
+    Page<Book> getAllBooks(String collectionName, int pageSize, String cursor);
+    Stream<Book> streamAllBooks(String collectionName);
+    ColumnStore<Book> getBookColumns(String collectionName);
+    ColumnStore<Essay> getEssayColumns(String collectionName);
     List<Poem> getAllPoems(String collectionName);
+    Page<Poem> getAllPoems(String collectionName, int pageSize, String cursor);
     List<Essay> getEssaysUnderAge0(String collectionName);
+    List<Essay> getEssaysBefore(String collectionName, int year);
+    Page<Essay> getEssaysUnderAge0(String collectionName, int pageSize, String cursor);
+    long countBooks(String collectionName);
+    long countPoems(String collectionName);
+    long countEssays(String collectionName);
+    List<AuthorCount> countBooksByAuthor(String collectionName);
+    List<YearCount> getBookYearHistogram(String collectionName, int bucketSize);
+    YearRange getBookYearRange(String collectionName);
+    Page<SearchHit<Book>> searchBooks(String collectionName, String text, int pageSize, String cursor);
+    Page<SearchHit<Poem>> searchPoems(String collectionName, String text, int pageSize, String cursor);
+    Page<SearchHit<Essay>> searchEssays(String collectionName, String text, int pageSize, String cursor);
+    ChangeSet<Book> getBookChanges(String collectionName, SyncToken since);
+    ChangeSet<Poem> getPoemChanges(String collectionName, SyncToken since);
+    ChangeSet<Essay> getEssayChanges(String collectionName, SyncToken since);
+
+    /**
+     * Appends books to an existing resource, as the last children of its root element.
+     *
+     * @param collectionName The name of the collection that contains the resource.
+     * @param resourceName The name of the resource.
+     * @param books The books to append.
+     * @return The number of root elements the books were appended to.
+     * @throws QueryException If the resource does not exist or the update fails; some books may have been appended.
+     */
+    long insertBooks(String collectionName, String resourceName, List<Book> books);
+
+    /**
+     * Replaces the books that have a title with a new version of the book.
+     *
+     * @param collectionName The name of the collection to modify.
+     * @param title The title of the books to replace.
+     * @param book The new version of the book.
+     * @return The number of books replaced.
+     * @throws QueryException If the update fails; some books may have been replaced.
+     */
+    long updateBook(String collectionName, String title, Book book);
+
+    /**
+     * Deletes the items of a model class whose field compares with a value.
+     *
+     * @param collectionName The name of the collection to modify.
+     * @param clazz The model class of the items.
+     * @param field The field of the class that is compared.
+     * @param comparison The comparison of the field with the value.
+     * @param value The value, a {@code String} or a {@code Number}, which is written as an XPath literal.
+     * @return The number of items deleted.
+     * @throws IllegalArgumentException If the field is not mapped or the value is not a string or a finite number.
+     * @throws QueryException If the update fails; some items may have been deleted.
+     */
+    long deleteWhere(String collectionName, Class<? extends DatabaseModel> clazz, String field, Comparison comparison,
+                     Object value);
+
+    /**
+     * Applies a batch of modifications in a single request. The batch is not atomic: the server keeps the
+     * modifications applied before one that fails. Only a select expression with a syntax error rejects the whole
+     * batch, since the expressions are compiled before anything is modified.
+     *
+     * @param collectionName The name of the collection to modify.
+     * @param batch The modifications to apply.
+     * @return The number of nodes modified.
+     * @throws QueryException If the update fails; some modifications may have been applied.
+     */
+    long update(String collectionName, UpdateBatch batch);
 }
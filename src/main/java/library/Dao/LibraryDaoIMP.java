@@ -1,15 +1,28 @@
 package library.Dao;
 
 import library.model.Book;
+import library.model.DatabaseModel;
 import library.model.Essay;
 import library.model.Poem;
 import library.service.ExistDatabaseConnection;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the {@link LibraryDao} interface that interacts with the eXist-db database
  * to retrieve books and poems from the specified collections.
  * This class provides methods to query for books and poems based on various criteria.
+ * <p>
+ * The methods that return lists use projection queries (see {@link QueryManager#queryProjected(String, String, Class)}),
+ * so only the fields of the model classes are transferred from the database.
+ * </p>
+ *
+ * <p>
+ * The write methods modify the documents in place with XUpdate (see {@link QueryManager#update(String, UpdateBatch)})
+ * and, unlike the queries, throw a {@link QueryException} when they fail.
+ * </p>
  */
 public class LibraryDaoIMP implements LibraryDao {
     private ExistDatabaseConnection dbConnection;
@@ -33,8 +46,50 @@ public class LibraryDaoIMP implements LibraryDao {
      */
     @Override
     public List<Book> getBooksUnder1950(String collectionName) {
-        String query = "for $book in //book[publishYear < 1950] return $book";
-        return queryManager.queryItems(collectionName, query, Book.class);
+        return getBooksBefore(collectionName, 1950);
+    }
+
+    /**
+     * Retrieves all books from the specified collection that were published before the specified year.
+     * The query is compiled once per collection and reused with the year bound as an external variable.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @param year The year before which the books were published.
+     * @return A list of {@link Book} objects published before the year.
+     */
+    @Override
+    public List<Book> getBooksBefore(String collectionName, int year) {
+        String query = LibraryQueries.BOOKS_BEFORE;
+        return queryManager.queryProjected(collectionName, query, Map.of("year", year), Book.class);
+    }
+
+    /**
+     * Retrieves all books of an author from the specified collection.
+     * The query is compiled once per collection and reused with the author bound as an external variable.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @param author The author of the books.
+     * @return A list of {@link Book} objects written by the author.
+     */
+    @Override
+    public List<Book> getBooksByAuthor(String collectionName, String author) {
+        String query = LibraryQueries.BOOKS_BY_AUTHOR;
+        return queryManager.queryProjected(collectionName, query, Map.of("author", author), Book.class);
+    }
+
+    /**
+     * Retrieves one page of the books from the specified collection that were published before 1950.
+     * The books are ordered by title and author, and only the requested page is transferred.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @param pageSize The maximum number of books in the page.
+     * @param cursor The cursor returned by the previous page, or {@code null} for the first page.
+     * @return A {@link Page} of {@link Book} objects published before 1950.
+     */
+    @Override
+    public Page<Book> getBooksUnder1950(String collectionName, int pageSize, String cursor) {
+        String query = LibraryQueries.BOOKS_UNDER_1950_ORDERED;
+        return queryManager.queryPage(collectionName, query, Book.class, pageSize, cursor);
     }
 
     /**
@@ -46,8 +101,63 @@ public class LibraryDaoIMP implements LibraryDao {
      */
     @Override
     public List<Book> getAllBooks(String collectionName) {
-        String query = "for $book in //book return $book";
-        return queryManager.queryItems(collectionName, query, Book.class);
+        String query = LibraryQueries.ALL_BOOKS;
+        return queryManager.queryProjected(collectionName, query, Book.class);
+    }
+
+    /**
+     * Retrieves one page of the books from the specified collection.
+     * The books are ordered by title and author, and only the requested page is transferred.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @param pageSize The maximum number of books in the page.
+     * @param cursor The cursor returned by the previous page, or {@code null} for the first page.
+     * @return A {@link Page} of {@link Book} objects in the specified collection.
+     */
+    @Override
+    public Page<Book> getAllBooks(String collectionName, int pageSize, String cursor) {
+        String query = LibraryQueries.ALL_BOOKS_ORDERED;
+        return queryManager.queryPage(collectionName, query, Book.class, pageSize, cursor);
+    }
+
+    /**
+     * Retrieves all books from the specified collection as a lazy stream.
+     * Books are mapped while the stream is consumed, so the stream must be closed to release the query results.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @return A stream of all {@link Book} objects in the specified collection.
+     */
+    @Override
+    public Stream<Book> streamAllBooks(String collectionName) {
+        String query = LibraryQueries.ALL_BOOKS;
+        return queryManager.streamItems(collectionName, query, Book.class);
+    }
+
+    /**
+     * Loads all books from the specified collection into an off-heap {@link ColumnStore}, for analytical scans that
+     * would not fit in the heap as one object per book. The store should be closed once it has been read, to free
+     * its memory.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @return The columns of all the books, or an empty store if an error occurs.
+     */
+    @Override
+    public ColumnStore<Book> getBookColumns(String collectionName) {
+        String query = LibraryQueries.ALL_BOOKS;
+        return queryManager.queryColumns(collectionName, query, null, Book.class);
+    }
+
+    /**
+     * Loads all essays from the specified collection into an off-heap {@link ColumnStore}, to be closed once it has
+     * been read.
+     *
+     * @param collectionName The name of the collection to query for essays.
+     * @return The columns of all the essays, or an empty store if an error occurs.
+     */
+    @Override
+    public ColumnStore<Essay> getEssayColumns(String collectionName) {
+        String query = LibraryQueries.ALL_ESSAYS;
+        return queryManager.queryColumns(collectionName, query, null, Essay.class);
     }
 
     /**
@@ -59,8 +169,23 @@ public class LibraryDaoIMP implements LibraryDao {
      */
     @Override
     public List<Poem> getAllPoems(String collectionName) {
-        String query = "for $poem in //poem return $poem";
-        return queryManager.queryItems(collectionName, query, Poem.class);
+        String query = LibraryQueries.ALL_POEMS;
+        return queryManager.queryProjected(collectionName, query, Poem.class);
+    }
+
+    /**
+     * Retrieves one page of the poems from the specified collection.
+     * The poems are ordered by title and author, and only the requested page is transferred.
+     *
+     * @param collectionName The name of the collection to query for poems.
+     * @param pageSize The maximum number of poems in the page.
+     * @param cursor The cursor returned by the previous page, or {@code null} for the first page.
+     * @return A {@link Page} of {@link Poem} objects in the specified collection.
+     */
+    @Override
+    public Page<Poem> getAllPoems(String collectionName, int pageSize, String cursor) {
+        String query = LibraryQueries.ALL_POEMS_ORDERED;
+        return queryManager.queryPage(collectionName, query, Poem.class, pageSize, cursor);
     }
 
     /**
@@ -71,9 +196,345 @@ public class LibraryDaoIMP implements LibraryDao {
      */
     @Override
     public List<Essay> getEssaysUnderAge0(String collectionName) {
-        String query = "for $essay in //essay[year < 0] return $essay";
-        return queryManager.queryItems(collectionName, query, Essay.class);
+        return getEssaysBefore(collectionName, 0);
+    }
+
+    /**
+     * Retrieves all essays from the specified collection that were published before the specified year.
+     * The query is compiled once per collection and reused with the year bound as an external variable.
+     *
+     * @param collectionName The name of the collection to query from.
+     * @param year The year before which the essays were published.
+     * @return A list of {@link Essay} objects published before the year.
+     */
+    @Override
+    public List<Essay> getEssaysBefore(String collectionName, int year) {
+        String query = LibraryQueries.ESSAYS_BEFORE;
+        return queryManager.queryProjected(collectionName, query, Map.of("year", year), Essay.class);
     }
 
+    /**
+     * Retrieves one page of the essays from the specified collection that were published before age 0.
+     * The essays are ordered by title and author, and only the requested page is transferred.
+     *
+     * @param collectionName The name of the collection to query from.
+     * @param pageSize The maximum number of essays in the page.
+     * @param cursor The cursor returned by the previous page, or {@code null} for the first page.
+     * @return A {@link Page} of {@link Essay} objects published before age 0.
+     */
+    @Override
+    public Page<Essay> getEssaysUnderAge0(String collectionName, int pageSize, String cursor) {
+        String query = LibraryQueries.ESSAYS_UNDER_AGE_0_ORDERED;
+        return queryManager.queryPage(collectionName, query, Essay.class, pageSize, cursor);
+    }
 
+    /**
+     * Counts the books of the specified collection. The count is computed on the server.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @return The number of books, or {@code 0} if an error occurs.
+     */
+    @Override
+    public long countBooks(String collectionName) {
+        return count(collectionName, LibraryQueries.COUNT_BOOKS);
+    }
+
+    /**
+     * Counts the poems of the specified collection. The count is computed on the server.
+     *
+     * @param collectionName The name of the collection to query for poems.
+     * @return The number of poems, or {@code 0} if an error occurs.
+     */
+    @Override
+    public long countPoems(String collectionName) {
+        return count(collectionName, LibraryQueries.COUNT_POEMS);
+    }
+
+    /**
+     * Counts the essays of the specified collection. The count is computed on the server.
+     *
+     * @param collectionName The name of the collection to query from.
+     * @return The number of essays, or {@code 0} if an error occurs.
+     */
+    @Override
+    public long countEssays(String collectionName) {
+        return count(collectionName, LibraryQueries.COUNT_ESSAYS);
+    }
+
+    /**
+     * Counts the books of every author in the specified collection.
+     * The books are grouped on the server, so only one row per author is transferred.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @return The number of books per author, from the most to the least prolific author.
+     *         The list is empty if an error occurs.
+     */
+    @Override
+    public List<AuthorCount> countBooksByAuthor(String collectionName) {
+        List<AuthorCount> counts = new ArrayList<>();
+        for (String[] row : queryManager.queryTuples(collectionName, LibraryQueries.BOOKS_PER_AUTHOR, null, 2)) {
+            counts.add(new AuthorCount(row[0], Long.parseLong(row[1])));
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the books of the specified collection published in every range of years.
+     * The books are grouped on the server; books without a numeric publication year are skipped.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @param bucketSize The number of years of each range, e.g. {@code 10} to count the books per decade.
+     * @return The number of books per range, ordered by year. Ranges without books are omitted.
+     *         The list is empty if an error occurs.
+     */
+    @Override
+    public List<YearCount> getBookYearHistogram(String collectionName, int bucketSize) {
+        if (bucketSize <= 0) throw new IllegalArgumentException("The bucket size must be positive");
+        List<YearCount> histogram = new ArrayList<>();
+        for (String[] row : queryManager.queryTuples(collectionName, LibraryQueries.BOOK_YEAR_HISTOGRAM,
+                Map.of("bucket", bucketSize), 2)) {
+            histogram.add(new YearCount(Integer.parseInt(row[0]), Long.parseLong(row[1])));
+        }
+        return histogram;
+    }
+
+    /**
+     * Retrieves the earliest and latest publication years of the books of the specified collection.
+     * The values are computed on the server; books without a numeric publication year are skipped.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @return The range of publication years, with a count of {@code 0} if there are no books or an error occurs.
+     */
+    @Override
+    public YearRange getBookYearRange(String collectionName) {
+        List<String[]> rows = queryManager.queryTuples(collectionName, LibraryQueries.BOOK_YEAR_RANGE, null, 3);
+        if (rows.isEmpty() || rows.get(0)[1] == null) return new YearRange(0, 0, 0);
+        String[] row = rows.get(0);
+        return new YearRange(Long.parseLong(row[0]), Integer.parseInt(row[1]), Integer.parseInt(row[2]));
+    }
+
+    /**
+     * Searches the books of the specified collection whose title or author match a full-text query.
+     * The search uses the Lucene indexes created by {@link library.service.IndexManager}, and only the requested
+     * page of hits is transferred.
+     *
+     * @param collectionName The name of the collection to query for books.
+     * @param text The full-text query, in Lucene syntax, e.g. {@code war peace} or {@code "war and peace"}.
+     * @param pageSize The maximum number of books in the page.
+     * @param cursor The cursor returned by the previous page, or {@code null} for the first page.
+     * @return A {@link Page} of the matching {@link Book} objects, from the most to the least relevant.
+     *         The page is empty if an error occurs.
+     */
+    @Override
+    public Page<SearchHit<Book>> searchBooks(String collectionName, String text, int pageSize, String cursor) {
+        String query = LibraryQueries.SEARCH_BOOKS;
+        return queryManager.querySearch(collectionName, query, Map.of("query", text), Book.class, pageSize, cursor);
+    }
+
+    /**
+     * Searches the poems of the specified collection whose title or author match a full-text query.
+     * The search uses the Lucene indexes created by {@link library.service.IndexManager}, and only the requested
+     * page of hits is transferred.
+     *
+     * @param collectionName The name of the collection to query for poems.
+     * @param text The full-text query, in Lucene syntax.
+     * @param pageSize The maximum number of poems in the page.
+     * @param cursor The cursor returned by the previous page, or {@code null} for the first page.
+     * @return A {@link Page} of the matching {@link Poem} objects, from the most to the least relevant.
+     *         The page is empty if an error occurs.
+     */
+    @Override
+    public Page<SearchHit<Poem>> searchPoems(String collectionName, String text, int pageSize, String cursor) {
+        String query = LibraryQueries.SEARCH_POEMS;
+        return queryManager.querySearch(collectionName, query, Map.of("query", text), Poem.class, pageSize, cursor);
+    }
+
+    /**
+     * Searches the essays of the specified collection whose title or author match a full-text query.
+     * The search uses the Lucene indexes created by {@link library.service.IndexManager}, and only the requested
+     * page of hits is transferred.
+     *
+     * @param collectionName The name of the collection to query from.
+     * @param text The full-text query, in Lucene syntax.
+     * @param pageSize The maximum number of essays in the page.
+     * @param cursor The cursor returned by the previous page, or {@code null} for the first page.
+     * @return A {@link Page} of the matching {@link Essay} objects, from the most to the least relevant.
+     *         The page is empty if an error occurs.
+     */
+    @Override
+    public Page<SearchHit<Essay>> searchEssays(String collectionName, String text, int pageSize, String cursor) {
+        String query = LibraryQueries.SEARCH_ESSAYS;
+        return queryManager.querySearch(collectionName, query, Map.of("query", text), Essay.class, pageSize, cursor);
+    }
+
+    /**
+     * Retrieves the books of the resources of the specified collection that were added, modified or removed since
+     * a previous synchronization. Only the changed resources are read.
+     *
+     * @param collectionName The name of the collection to synchronize.
+     * @param since The token of the previous synchronization, or {@link SyncToken#empty()} to read every book.
+     * @return The {@link Book} objects of the changed resources and the token of the next synchronization.
+     *         The change set is empty if an error occurs.
+     */
+    @Override
+    public ChangeSet<Book> getBookChanges(String collectionName, SyncToken since) {
+        return queryManager.queryChanges(collectionName, LibraryQueries.RESOURCE_BOOKS, Book.class, since);
+    }
+
+    /**
+     * Retrieves the poems of the resources of the specified collection that were added, modified or removed since
+     * a previous synchronization. Only the changed resources are read.
+     *
+     * @param collectionName The name of the collection to synchronize.
+     * @param since The token of the previous synchronization, or {@link SyncToken#empty()} to read every poem.
+     * @return The {@link Poem} objects of the changed resources and the token of the next synchronization.
+     *         The change set is empty if an error occurs.
+     */
+    @Override
+    public ChangeSet<Poem> getPoemChanges(String collectionName, SyncToken since) {
+        return queryManager.queryChanges(collectionName, LibraryQueries.RESOURCE_POEMS, Poem.class, since);
+    }
+
+    /**
+     * Retrieves the essays of the resources of the specified collection that were added, modified or removed since
+     * a previous synchronization. Only the changed resources are read.
+     *
+     * @param collectionName The name of the collection to synchronize.
+     * @param since The token of the previous synchronization, or {@link SyncToken#empty()} to read every essay.
+     * @return The {@link Essay} objects of the changed resources and the token of the next synchronization.
+     *         The change set is empty if an error occurs.
+     */
+    @Override
+    public ChangeSet<Essay> getEssayChanges(String collectionName, SyncToken since) {
+        return queryManager.queryChanges(collectionName, LibraryQueries.RESOURCE_ESSAYS, Essay.class, since);
+    }
+
+    /**
+     * Appends books to an existing resource of the specified collection, as the last children of its root element.
+     * All the books are sent in a single request, after checking that the resource exists. New resources are created
+     * with {@link library.service.BulkLoader}.
+     *
+     * @param collectionName The name of the collection that contains the resource.
+     * @param resourceName The name of the resource, e.g. {@code biblioteca-1.xml}.
+     * @param books The books to insert.
+     * @return The number of root elements the books were appended to, as reported by the server.
+     * @throws QueryException If the resource does not exist or the update fails.
+     */
+    @Override
+    public long insertBooks(String collectionName, String resourceName, List<Book> books) {
+        String document = collectionName.replaceAll("/+$", "") + "/" + resourceName;
+        List<String[]> available;
+        try {
+            available = queryManager.fetchTuples(collectionName, LibraryQueries.DOCUMENT_AVAILABLE,
+                    Map.of("document", document), 1);
+        } catch (Exception e) {
+            throw new QueryException("Error checking the resource " + document, e);
+        }
+        if (available.isEmpty() || !Boolean.parseBoolean(available.get(0)[0])) {
+            throw new QueryException("The resource " + document + " does not exist", null);
+        }
+        return update(collectionName, new UpdateBatch()
+                .append(String.format(LibraryQueries.DOCUMENT_ROOT, literal(document)), books));
+    }
+
+    /**
+     * Replaces the books of the specified collection that have a title with a new version of the book.
+     *
+     * @param collectionName The name of the collection to modify.
+     * @param title The title of the books to replace.
+     * @param book The new version of the book.
+     * @return The number of books replaced.
+     * @throws QueryException If the update fails.
+     */
+    @Override
+    public long updateBook(String collectionName, String title, Book book) {
+        return update(collectionName, new UpdateBatch()
+                .replace(String.format(LibraryQueries.BOOK_BY_TITLE, literal(title)), book));
+    }
+
+    /**
+     * Deletes the items of a model class from the specified collection whose field compares with a value.
+     * The items are the elements named after the class, like the ones written by {@link util.XMLFileCreator}, and
+     * the condition is the predicate {@code [field operator literal]}, e.g. {@code [publishYear < 1900]}. The value
+     * is always written as a literal, so it cannot change the expression.
+     *
+     * @param collectionName The name of the collection to modify.
+     * @param clazz The model class of the items, e.g. {@code Book.class} for the {@code book} elements.
+     * @param field The mapped field of the class that is compared, e.g. {@code publishYear}.
+     * @param comparison The comparison of the field with the value.
+     * @param value The value, a {@code String} compared as a string or a {@code Number} compared as a number.
+     * @return The number of items deleted.
+     * @throws IllegalArgumentException If the field is not mapped or the value is not a string or a finite number.
+     * @throws QueryException If the update fails.
+     */
+    @Override
+    public long deleteWhere(String collectionName, Class<? extends DatabaseModel> clazz, String field,
+                            Comparison comparison, Object value) {
+        if (ModelMapperRegistry.getMapper(clazz).indexOf(field) < 0) {
+            throw new IllegalArgumentException("The field " + field + " is not mapped in " + clazz.getName());
+        }
+        String elementName = clazz.getSimpleName().toLowerCase();
+        return update(collectionName, new UpdateBatch().remove(String.format(LibraryQueries.ELEMENTS_WHERE,
+                elementName, field, comparison.getOperator(), valueLiteral(value))));
+    }
+
+    /**
+     * Applies a batch of modifications to the specified collection in a single request. The batch is not atomic, see
+     * {@link QueryManager#update(String, UpdateBatch)}.
+     *
+     * @param collectionName The name of the collection to modify.
+     * @param batch The modifications to apply.
+     * @return The number of nodes modified.
+     * @throws QueryException If the update fails.
+     */
+    @Override
+    public long update(String collectionName, UpdateBatch batch) {
+        try {
+            return queryManager.update(collectionName, batch);
+        } catch (Exception e) {
+            throw new QueryException("Error updating the collection " + collectionName, e);
+        }
+    }
+
+    /**
+     * Escapes a value to be used inside an XQuery string literal delimited by apostrophes.
+     * Ampersands start entity and character references in XQuery literals, so they are escaped too. The XUpdate
+     * select expressions cannot declare external variables, which is why their values are written as literals.
+     *
+     * @param value The value to escape.
+     * @return The value with its ampersands escaped and its apostrophes doubled.
+     */
+    private static String literal(String value) {
+        return value.replace("&", "&amp;").replace("'", "''");
+    }
+
+    /**
+     * Writes the value of a condition as an XPath literal.
+     *
+     * @param value A string or a finite number.
+     * @return A string literal delimited by apostrophes, or a numeric literal.
+     * @throws IllegalArgumentException If the value is not a string or a finite number.
+     */
+    private static String valueLiteral(Object value) {
+        if (value instanceof String string) return "'" + literal(string) + "'";
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value.toString();
+        }
+        if ((value instanceof Double || value instanceof Float) && Double.isFinite(((Number) value).doubleValue())) {
+            return value.toString();
+        }
+        throw new IllegalArgumentException("The value of a condition must be a string or a finite number: " + value);
+    }
+
+    /**
+     * Executes a query that returns a single count.
+     *
+     * @param collectionName The name of the collection to query.
+     * @param query The counting query.
+     * @return The count, or {@code 0} if an error occurs.
+     */
+    private long count(String collectionName, String query) {
+        List<String[]> rows = queryManager.queryTuples(collectionName, query, null, 1);
+        return rows.isEmpty() ? 0 : Long.parseLong(rows.get(0)[0]);
+    }
 }
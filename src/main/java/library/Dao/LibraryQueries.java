@@ -0,0 +1,89 @@
+package library.Dao;
+
+/**
+ * XQuery statements used by the library DAOs.
+ * They are shared so decorators such as {@link CachingLibraryDao} can identify the query behind each DAO method.
+ */
+final class LibraryQueries {
+
+    static final String BOOKS_UNDER_1950 =
+            "for $book in //book[publishYear < 1950] return $book";
+    static final String BOOKS_UNDER_1950_ORDERED =
+            "for $book in //book[publishYear < 1950] order by $book/title, $book/author return $book";
+    static final String ALL_BOOKS =
+            "for $book in //book return $book";
+    static final String ALL_BOOKS_ORDERED =
+            "for $book in //book order by $book/title, $book/author return $book";
+    static final String ALL_POEMS =
+            "for $poem in //poem return $poem";
+    static final String ALL_POEMS_ORDERED =
+            "for $poem in //poem order by $poem/title, $poem/author return $poem";
+    static final String ALL_ESSAYS =
+            "for $essay in //essay return $essay";
+    static final String ESSAYS_UNDER_AGE_0 =
+            "for $essay in //essay[year < 0] return $essay";
+    static final String ESSAYS_UNDER_AGE_0_ORDERED =
+            "for $essay in //essay[year < 0] order by $essay/title, $essay/author return $essay";
+
+    // Prepared queries, compiled once per collection and executed with the variable values of each call.
+    static final String BOOKS_BEFORE =
+            "declare variable $year external; for $book in //book[publishYear < $year] return $book";
+    static final String BOOKS_BY_AUTHOR =
+            "declare variable $author external; for $book in //book[author = $author] return $book";
+    static final String ESSAYS_BEFORE =
+            "declare variable $year external; for $essay in //essay[year < $year] return $essay";
+
+    // Aggregations, computed on the server. Every result is a JSON array of strings, decoded by JsonTupleDecoder.
+    static final String COUNT_BOOKS =
+            "serialize([string(count(//book))], map { 'method': 'json' })";
+    static final String COUNT_POEMS =
+            "serialize([string(count(//poem))], map { 'method': 'json' })";
+    static final String COUNT_ESSAYS =
+            "serialize([string(count(//essay))], map { 'method': 'json' })";
+    static final String BOOKS_PER_AUTHOR =
+            "for $book in //book group by $author := string($book/author) "
+                    + "order by count($book) descending, $author "
+                    + "return serialize([$author, string(count($book))], map { 'method': 'json' })";
+    static final String BOOK_YEAR_HISTOGRAM =
+            "declare variable $bucket external; "
+                    + "for $year in //book/publishYear[. castable as xs:integer] ! xs:integer(.) "
+                    + "group by $start := xs:integer(floor($year div $bucket)) * $bucket "
+                    + "order by $start "
+                    + "return serialize([string($start), string(count($year))], map { 'method': 'json' })";
+    static final String BOOK_YEAR_RANGE =
+            "let $years := //book/publishYear[. castable as xs:integer] ! xs:integer(.) "
+                    + "return serialize([string(count($years)), min($years) ! string(), max($years) ! string()], "
+                    + "map { 'method': 'json' })";
+
+    // Full-text searches on the Lucene indexes of the titles and authors, ranked by relevance.
+    static final String SEARCH_BOOKS =
+            "declare variable $query external; "
+                    + "for $book in //book[ft:query(title, $query) or ft:query(author, $query)] "
+                    + "order by ft:score($book) descending, $book/title, $book/author return $book";
+    static final String SEARCH_POEMS =
+            "declare variable $query external; "
+                    + "for $poem in //poem[ft:query(title, $query) or ft:query(author, $query)] "
+                    + "order by ft:score($poem) descending, $poem/title, $poem/author return $poem";
+    static final String SEARCH_ESSAYS =
+            "declare variable $query external; "
+                    + "for $essay in //essay[ft:query(title, $query) or ft:query(author, $query)] "
+                    + "order by ft:score($essay) descending, $essay/title, $essay/author return $essay";
+
+    // Items of one resource, read by the incremental synchronization.
+    static final String RESOURCE_BOOKS = "//book";
+    static final String RESOURCE_POEMS = "//poem";
+    static final String RESOURCE_ESSAYS = "//essay";
+
+    // Select expressions of the XUpdate modifications, formatted with escaped string literals.
+    static final String DOCUMENT_ROOT = "doc('%s')/*";
+    static final String BOOK_BY_TITLE = "//book[title = '%s']";
+    static final String ELEMENTS_WHERE = "//%s[%s %s %s]";
+
+    // Whether a document exists, as a one-value JSON tuple.
+    static final String DOCUMENT_AVAILABLE =
+            "declare variable $document external; "
+                    + "serialize([string(doc-available($document))], map { 'method': 'json' })";
+
+    private LibraryQueries() {
+    }
+}
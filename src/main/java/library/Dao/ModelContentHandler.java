@@ -0,0 +1,122 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.Arrays;
+
+/**
+ * SAX handler that decodes the XML content of a query result into the raw field values of a {@link DatabaseModel}.
+ * <p>
+ * The content is read in a single pass: attributes of the root element and its direct child elements are matched
+ * against the fields of the {@link ModelMapper}. The value of a child element is its whole text content, so nested
+ * elements, CDATA sections and XML entities are decoded by the parser instead of being copied verbatim.
+ * When a field is present both as an attribute and as a child element, the element wins.
+ * </p>
+ *
+ * <p>
+ * An instance can be reused for several resources by calling {@link #reset()}, but it is not thread-safe.
+ * </p>
+ *
+ * @param <T> The type of the mapped model.
+ */
+class ModelContentHandler<T extends DatabaseModel> extends DefaultHandler {
+
+    private final ModelMapper<T> mapper;
+    private final String[] values;
+    private final boolean[] fromElement;
+    private final StringBuilder text = new StringBuilder();
+
+    private int depth;
+    private int currentField = -1;
+
+    /**
+     * Creates a handler for the fields of the specified mapper.
+     *
+     * @param mapper The binding plan of the target class.
+     */
+    ModelContentHandler(ModelMapper<T> mapper) {
+        this.mapper = mapper;
+        this.values = new String[mapper.getFieldCount()];
+        this.fromElement = new boolean[mapper.getFieldCount()];
+    }
+
+    /**
+     * Clears the decoded values so the handler can process a new resource.
+     */
+    void reset() {
+        Arrays.fill(values, null);
+        Arrays.fill(fromElement, false);
+        depth = 0;
+        currentField = -1;
+    }
+
+    /**
+     * Retrieves the decoded field values, indexed like the binding plan of the mapper.
+     *
+     * @return The field values; missing fields are {@code null}.
+     */
+    String[] getValues() {
+        return values;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        depth++;
+        if (depth == 1) {
+            readAttributes(attributes);
+        } else if (depth == 2) {
+            int index = mapper.indexOf(nameOf(localName, qName));
+            // Only the first occurrence of a field is mapped.
+            if (index >= 0 && !fromElement[index]) {
+                currentField = index;
+                text.setLength(0);
+            }
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (depth == 2 && currentField >= 0) {
+            values[currentField] = text.toString();
+            fromElement[currentField] = true;
+            currentField = -1;
+        }
+        depth--;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (currentField >= 0) {
+            text.append(ch, start, length);
+        }
+    }
+
+    /**
+     * Stores the attributes of the root element that match a field of the model.
+     *
+     * @param attributes The attributes of the root element.
+     */
+    private void readAttributes(Attributes attributes) {
+        for (int i = 0; i < attributes.getLength(); i++) {
+            int index = mapper.indexOf(nameOf(attributes.getLocalName(i), attributes.getQName(i)));
+            if (index >= 0) {
+                values[index] = attributes.getValue(i);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the name of a node, ignoring its namespace prefix.
+     *
+     * @param localName The local name reported by the parser, which may be empty.
+     * @param qName The qualified name reported by the parser.
+     * @return The name of the node without prefix.
+     */
+    private static String nameOf(String localName, String qName) {
+        if (localName != null && !localName.isEmpty()) return localName;
+        int colon = qName.indexOf(':');
+        return colon >= 0 ? qName.substring(colon + 1) : qName;
+    }
+}
@@ -0,0 +1,262 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+import library.model.ModelCodec;
+import library.model.ModelCodecs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Precompiled binding plan for a {@link DatabaseModel} class.
+ * <p>
+ * The plan is built once per class: it resolves the no-args constructor as a {@link MethodHandle}, the mappable
+ * fields as {@link VarHandle}s and the converter used for each field type. Mapping a row only assigns the values,
+ * so no reflective lookups are performed per result.
+ * </p>
+ *
+ * <p>
+ * Only {@code String} and {@code int} fields are mapped, static and synthetic fields are ignored.
+ * Instances are obtained through {@link ModelMapperRegistry#getMapper(Class)}.
+ * </p>
+ *
+ * <p>
+ * If the annotation processor generated a {@link ModelCodec} for the class, the mapper delegates to it instead,
+ * so instances are created with the constructor and read with the getters of the class, without reflection.
+ * </p>
+ *
+ * @param <T> The mapped {@link DatabaseModel} type.
+ */
+public final class ModelMapper<T extends DatabaseModel> {
+
+    private static final Logger logger = Logger.getLogger(ModelMapper.class.getName());
+
+    private final Class<T> type;
+    private final ModelCodec<T> codec;
+    private final MethodHandle constructor;
+    private final FieldBinding[] bindings;
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * Builds the binding plan for the specified class, or uses its generated codec if it has one.
+     *
+     * @param type The model class to inspect.
+     * @throws ReflectiveOperationException If the class has no codec and no accessible no-args constructor.
+     */
+    ModelMapper(Class<T> type) throws ReflectiveOperationException {
+        this.type = type;
+        this.codec = ModelCodecs.find(type);
+        if (codec != null) {
+            this.constructor = null;
+            this.bindings = null;
+            for (int i = 0; i < codec.getFieldCount(); i++) {
+                indexes.put(codec.getFieldName(i), i);
+            }
+            return;
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+
+        List<FieldBinding> plan = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+
+            VarHandle handle = lookup.unreflectVarHandle(field);
+            if (field.getType().equals(String.class)) {
+                plan.add(new StringBinding(field.getName(), handle));
+            } else if (field.getType().equals(int.class)) {
+                plan.add(new IntBinding(field.getName(), handle));
+            }
+        }
+
+        this.bindings = plan.toArray(new FieldBinding[0]);
+        for (int i = 0; i < bindings.length; i++) {
+            indexes.put(bindings[i].name, i);
+        }
+    }
+
+    /**
+     * Retrieves the mapped class.
+     *
+     * @return The model class of this mapper.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the number of mapped fields.
+     *
+     * @return The number of fields bound by this mapper.
+     */
+    public int getFieldCount() {
+        return codec != null ? codec.getFieldCount() : bindings.length;
+    }
+
+    /**
+     * Retrieves the name of a mapped field.
+     *
+     * @param index The index of the field in the binding plan.
+     * @return The field name, which is also the XML element name.
+     */
+    public String getFieldName(int index) {
+        return codec != null ? codec.getFieldName(index) : bindings[index].name;
+    }
+
+    /**
+     * Checks whether a mapped field is an {@code int}, whose value can be passed already decoded to
+     * {@link #create(String[], int[])}.
+     *
+     * @param index The index of the field in the binding plan.
+     * @return {@code true} for {@code int} fields, {@code false} for {@code String} fields.
+     */
+    public boolean isIntField(int index) {
+        return codec != null ? codec.getFieldType(index) == int.class : bindings[index] instanceof IntBinding;
+    }
+
+    /**
+     * Retrieves the index of a field in the binding plan.
+     *
+     * @param fieldName The name of the field.
+     * @return The index of the field, or {@code -1} if the field is not mapped.
+     */
+    public int indexOf(String fieldName) {
+        Integer index = indexes.get(fieldName);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Reads the value of a mapped field from an instance.
+     *
+     * @param item The instance to read from.
+     * @param index The index of the field in the binding plan.
+     * @return The value of the field; {@code int} fields are boxed.
+     */
+    public Object getValue(T item, int index) {
+        return codec != null ? codec.getValue(item, index) : bindings[index].handle.get(item);
+    }
+
+    /**
+     * Creates a new instance and assigns the specified values to its fields.
+     * Values are indexed like the binding plan; {@code null} values are skipped.
+     *
+     * @param values The raw field values.
+     * @return A new instance of {@code T} populated with the values.
+     * @throws Exception If the instance could not be created.
+     */
+    public T create(String[] values) throws Exception {
+        if (codec != null) return codec.create(values);
+
+        Object item = newInstance();
+
+        for (int i = 0; i < bindings.length; i++) {
+            String value = values[i];
+            if (value == null) continue;
+            try {
+                bindings[i].assign(item, value);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Error setting field value", e);
+            }
+        }
+        return type.cast(item);
+    }
+
+    /**
+     * Creates a new instance from values that are already decoded, e.g. by a parser that reads {@code int} fields
+     * directly from their digits. Text fields are read from {@code values}, skipping {@code null} values, and
+     * {@code int} fields from {@code intValues}.
+     *
+     * @param values The text field values, indexed like the binding plan.
+     * @param intValues The {@code int} field values, indexed like the binding plan.
+     * @return A new instance of {@code T} populated with the values.
+     * @throws Exception If the instance could not be created.
+     */
+    public T create(String[] values, int[] intValues) throws Exception {
+        if (codec != null) return codec.create(values, intValues);
+
+        Object item = newInstance();
+
+        for (int i = 0; i < bindings.length; i++) {
+            if (bindings[i] instanceof IntBinding) {
+                bindings[i].handle.set(item, intValues[i]);
+            } else if (values[i] != null) {
+                bindings[i].assign(item, values[i]);
+            }
+        }
+        return type.cast(item);
+    }
+
+    /**
+     * Invokes the no-args constructor. {@code invokeExact} is declared to throw {@code Throwable}, so a checked
+     * exception of the constructor is wrapped here, like {@link java.lang.reflect.Constructor#newInstance} does,
+     * and callers only handle {@code Exception}s.
+     *
+     * @return The new instance.
+     * @throws InvocationTargetException If the constructor throws a checked exception.
+     */
+    private Object newInstance() throws InvocationTargetException {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Binding between a field name and the handle used to assign it.
+     */
+    private abstract static class FieldBinding {
+        final String name;
+        final VarHandle handle;
+
+        FieldBinding(String name, VarHandle handle) {
+            this.name = name;
+            this.handle = handle;
+        }
+
+        abstract void assign(Object target, String value);
+    }
+
+    /**
+     * Binding for {@code String} fields, which are assigned as they are.
+     */
+    private static final class StringBinding extends FieldBinding {
+        StringBinding(String name, VarHandle handle) {
+            super(name, handle);
+        }
+
+        @Override
+        void assign(Object target, String value) {
+            handle.set(target, value);
+        }
+    }
+
+    /**
+     * Binding for {@code int} fields, which are parsed before the assignment. Surrounding whitespace is ignored.
+     */
+    private static final class IntBinding extends FieldBinding {
+        IntBinding(String name, VarHandle handle) {
+            super(name, handle);
+        }
+
+        @Override
+        void assign(Object target, String value) {
+            handle.set(target, Integer.parseInt(value.trim()));
+        }
+    }
+}
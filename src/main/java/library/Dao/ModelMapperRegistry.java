@@ -0,0 +1,42 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe registry of {@link ModelMapper} instances.
+ * <p>
+ * The binding plan of each {@link DatabaseModel} class is built the first time the class is requested and reused
+ * for every following query.
+ * </p>
+ */
+public final class ModelMapperRegistry {
+
+    private static final Map<Class<?>, ModelMapper<?>> mappers = new ConcurrentHashMap<>();
+
+    private ModelMapperRegistry() {
+    }
+
+    /**
+     * Retrieves the mapper of the specified class, building it if it does not exist yet.
+     *
+     * @param clazz The model class to map.
+     * @param <T> The type of the model, which must extend {@link DatabaseModel}.
+     * @return The cached {@link ModelMapper} for the class.
+     * @throws IllegalArgumentException If the class cannot be mapped, e.g. it has no no-args constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends DatabaseModel> ModelMapper<T> getMapper(Class<T> clazz) {
+        return (ModelMapper<T>) mappers.computeIfAbsent(clazz, ModelMapperRegistry::buildMapper);
+    }
+
+    private static ModelMapper<?> buildMapper(Class<?> clazz) {
+        try {
+            return new ModelMapper<>(clazz.asSubclass(DatabaseModel.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Class cannot be mapped: " + clazz.getName(), e);
+        }
+    }
+}
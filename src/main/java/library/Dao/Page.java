@@ -0,0 +1,100 @@
+package library.Dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Represents a page of query results together with the continuation token needed to fetch the next page.
+ * <p>
+ * The cursor is an opaque token: callers should pass the value of {@link #getNextCursor()} back to the paginated
+ * DAO methods without inspecting it. A {@code null} cursor requests the first page.
+ * </p>
+ *
+ * @param <T> The type of the items in the page.
+ */
+public class Page<T> {
+
+    private static final String CURSOR_PREFIX = "offset:";
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    /**
+     * Creates a new page.
+     *
+     * @param items The items of the page.
+     * @param nextCursor The continuation token of the next page, or {@code null} if this is the last page.
+     */
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Retrieves the items of the page.
+     *
+     * @return The items of the page.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Retrieves the continuation token of the next page.
+     *
+     * @return The cursor of the next page, or {@code null} if there are no more results.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Checks if there are more results after this page.
+     *
+     * @return {@code true} if another page can be fetched.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Encodes the position of the next result into a cursor.
+     *
+     * @param offset The number of results already returned.
+     * @return The opaque cursor.
+     */
+    static String encodeCursor(long offset) {
+        byte[] token = (CURSOR_PREFIX + offset).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Decodes the position stored in a cursor.
+     *
+     * @param cursor The cursor to decode, may be {@code null}.
+     * @return The number of results already returned, {@code 0} for a {@code null} cursor.
+     * @throws IllegalArgumentException If the cursor is not valid.
+     */
+    static long decodeCursor(String cursor) {
+        if (cursor == null) return 0;
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!token.startsWith(CURSOR_PREFIX)) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+
+            long offset = Long.parseLong(token.substring(CURSOR_PREFIX.length()));
+            if (offset < 0) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,34 @@
+package library.Dao;
+
+/**
+ * How {@link QueryManager#queryPartitioned} splits a collection into groups of resources that are queried
+ * concurrently.
+ *
+ * @param partitions The number of partitions the resources of the collection are split into.
+ * @param parallelism The maximum number of partitions queried at the same time.
+ * @param ordered If {@code true}, the results are merged in the order of the partitions and of their resources;
+ *                otherwise, the partitions are merged in the order in which they finish.
+ */
+public record Partitioning(int partitions, int parallelism, boolean ordered) {
+
+    /**
+     * Validates the partitioning.
+     *
+     * @throws IllegalArgumentException If the number of partitions or the parallelism is not positive.
+     */
+    public Partitioning {
+        if (partitions <= 0) throw new IllegalArgumentException("The number of partitions must be positive: " + partitions);
+        if (parallelism <= 0) throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+    }
+
+    /**
+     * Creates a partitioning that queries every partition at the same time.
+     *
+     * @param partitions The number of partitions.
+     * @param ordered Whether the results are merged in the order of the partitions.
+     * @return The partitioning.
+     */
+    public static Partitioning of(int partitions, boolean ordered) {
+        return new Partitioning(partitions, partitions, ordered);
+    }
+}
@@ -0,0 +1,182 @@
+package library.Dao;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Combines several {@link QueryRequest}s into a single XQuery, so they are sent to the server in one round trip.
+ * <p>
+ * Each request is turned into a projection (see {@link QueryProjection}) whose JSON tuples start with the position
+ * of the request in the batch, and the projections are concatenated into one sequence. The requests may target
+ * different collections: the absolute paths of every query, such as {@code //book}, are bound to the collection of
+ * its request by prefixing them with {@code collection('...')}, which selects the same documents as running the
+ * query on that collection.
+ * </p>
+ *
+ * <p>
+ * Queries in a batch cannot have a prolog, since the declarations of different queries could conflict.
+ * </p>
+ */
+final class QueryBatch {
+
+    // Keywords that are operators, after which a slash starts a new path expression, when they follow an operand.
+    private static final Set<String> KEYWORDS = Set.of(
+            "return", "in", "satisfies", "where", "then", "else", "and", "or", "to", "div", "idiv", "mod",
+            "union", "intersect", "except", "eq", "ne", "lt", "le", "gt", "ge", "is", "by", "ascending",
+            "descending", "case", "default");
+    // Keywords that are followed by another keyword, such as "descending return" or "default return".
+    private static final Set<String> CLAUSE_END_KEYWORDS = Set.of("ascending", "descending", "default");
+
+    private QueryBatch() {
+    }
+
+    /**
+     * Builds the query of a batch.
+     *
+     * @param requests The requests of the batch.
+     * @return The combined query, whose results are JSON tuples tagged with the position of their request.
+     * @throws IllegalArgumentException If a query has a prolog or two requests are equal.
+     */
+    static String combine(List<QueryRequest<?>> requests) {
+        QueryResults.checkDistinct(requests);
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < requests.size(); i++) {
+            QueryRequest<?> request = requests.get(i);
+            if (QueryProjection.prologEnd(request.query()) > 0) {
+                throw new IllegalArgumentException("Batched queries cannot declare a prolog: " + request.query());
+            }
+
+            String query = bindToCollection(request.query(), request.collectionName());
+            if (i > 0) batch.append(", ");
+            batch.append('(')
+                    .append(QueryProjection.projectTagged(query, ModelMapperRegistry.getMapper(request.modelClass()),
+                            "'" + i + "'"))
+                    .append(')');
+        }
+        return batch.toString();
+    }
+
+    /**
+     * Prefixes the absolute paths of a query with the documents of a collection.
+     * <p>
+     * The query is split into tokens, keeping track of whether the last one completes an operand, such as a name, a
+     * variable, a literal or a closing bracket. A slash starts an absolute path when it does not follow an operand,
+     * e.g. at the start of the query, after an opening bracket, an operator or a keyword such as {@code in}. A
+     * keyword is only an operator when it follows an operand; otherwise it is a name, so in {@code $b/div/p} the
+     * {@code div} is a step. String literals, comments and the closing tags of direct element constructors are left
+     * unchanged.
+     * </p>
+     *
+     * @param query The query, without a prolog.
+     * @param collectionName The name of the collection the query runs on.
+     * @return The query with every absolute path bound to the collection.
+     */
+    static String bindToCollection(String query, String collectionName) {
+        String documents = "collection('" + collectionName.replace("'", "''") + "')";
+        StringBuilder bound = new StringBuilder(query.length() + documents.length());
+        boolean operand = false;
+        char previous = 0;
+
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            char next = i + 1 < query.length() ? query.charAt(i + 1) : 0;
+
+            if (c == '(' && next == ':') {
+                int end = commentEnd(query, i);
+                bound.append(query, i, end);
+                i = end;
+                continue;
+            }
+            if (c == '\'' || c == '"') {
+                int end = query.indexOf(c, i + 1);
+                end = end < 0 ? query.length() : end + 1;
+                bound.append(query, i, end);
+                i = end;
+                operand = true;
+                previous = c;
+                continue;
+            }
+            if (isNameStart(c) || Character.isDigit(c)) {
+                int end = nameEnd(query, i + 1);
+                String name = query.substring(i, end);
+                bound.append(name);
+                operand = !operand || !KEYWORDS.contains(name) || CLAUSE_END_KEYWORDS.contains(name);
+                previous = query.charAt(end - 1);
+                i = end;
+                continue;
+            }
+
+            if (c == '/') {
+                // A slash after '<' closes a direct element constructor.
+                if (!operand && previous != '<') bound.append(documents);
+                bound.append(c);
+                if (next == '/') {
+                    bound.append(next);
+                    i++;
+                }
+                operand = false;
+                previous = c;
+            } else {
+                bound.append(c);
+                if (!Character.isWhitespace(c)) {
+                    // A star that follows an operand is a multiplication; otherwise it is a name test.
+                    operand = c == ')' || c == ']' || c == '}' || c == '.' || (c == '*' && !operand);
+                    previous = c;
+                }
+            }
+            i++;
+        }
+        return bound.toString();
+    }
+
+    /**
+     * Finds the end of a comment, which may contain nested comments.
+     *
+     * @param query The query.
+     * @param start The position of the {@code (:} that opens the comment.
+     * @return The position after the {@code :)} that closes it, or the length of the query if it is not closed.
+     */
+    private static int commentEnd(String query, int start) {
+        int depth = 0;
+        for (int i = start; i + 1 < query.length(); i++) {
+            if (query.charAt(i) == '(' && query.charAt(i + 1) == ':') {
+                depth++;
+                i++;
+            } else if (query.charAt(i) == ':' && query.charAt(i + 1) == ')') {
+                depth--;
+                i++;
+                if (depth == 0) return i + 1;
+            }
+        }
+        return query.length();
+    }
+
+    /**
+     * Finds the end of a name, variable or number. A colon is part of a prefixed name only when a name follows it,
+     * so the axis separator {@code ::} and the assignment {@code :=} end the name.
+     *
+     * @param query The query.
+     * @param start The position after the first character of the name.
+     * @return The position after the last character of the name.
+     */
+    private static int nameEnd(String query, int start) {
+        int i = start;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.') {
+                i++;
+            } else if (c == ':' && i + 1 < query.length() && isNameStart(query.charAt(i + 1))
+                    && query.charAt(i + 1) != '$') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isNameStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+}
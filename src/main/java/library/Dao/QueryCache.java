@@ -0,0 +1,220 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread-safe LRU cache of query results.
+ * <p>
+ * Entries are bounded by count and by an approximate size in bytes, and expire after a fixed time to live.
+ * When a limit is exceeded the least recently used entries are evicted. Results of a collection can be
+ * invalidated explicitly, e.g. after the collection has been modified.
+ * </p>
+ *
+ * <p>
+ * Every invalidation also advances the generation of the collection. A caller that loads a result captures the
+ * generation with {@link #generation(String)} before running the query and passes it to
+ * {@link #put(CacheKey, Object, long, long)}, which drops the result if the collection was invalidated meanwhile, so
+ * a query that overlaps a write never caches what it read before the write.
+ * </p>
+ */
+public class QueryCache {
+
+    // Approximate sizes used to estimate the weight of the cached results.
+    private static final long ENTRY_OVERHEAD = 64;
+    private static final long OBJECT_OVERHEAD = 16;
+    private static final long REFERENCE_SIZE = 8;
+    private static final long STRING_OVERHEAD = 40;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlNanos;
+
+    // Access order, so the eldest entry is the least recently used one.
+    private final LinkedHashMap<CacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    // Number of invalidations of each collection, and of the whole cache.
+    private final Map<String, Long> generations = new HashMap<>();
+    private long allGeneration;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries The maximum number of cached results.
+     * @param maxWeight The maximum approximate size in bytes of all the cached results.
+     * @param ttl The time after which a cached result expires.
+     */
+    public QueryCache(int maxEntries, long maxWeight, Duration ttl) {
+        if (maxEntries <= 0 || maxWeight <= 0) throw new IllegalArgumentException("The cache limits must be positive");
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Retrieves a cached result.
+     *
+     * @param key The key of the result.
+     * @param <V> The type of the cached result.
+     * @return The cached result, or {@code null} if it is not cached or has expired.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <V> V get(CacheKey key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+            remove(key);
+            expirations++;
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (V) entry.value;
+    }
+
+    /**
+     * Stores a result, evicting the least recently used entries if the limits are exceeded.
+     * Results heavier than the whole cache are not stored.
+     *
+     * @param key The key of the result.
+     * @param value The result to cache.
+     * @param valueWeight The approximate size in bytes of the result.
+     */
+    public synchronized void put(CacheKey key, Object value, long valueWeight) {
+        long entryWeight = valueWeight + ENTRY_OVERHEAD;
+        if (entryWeight > maxWeight) return;
+
+        remove(key);
+        entries.put(key, new Entry(value, entryWeight, System.nanoTime() + ttlNanos));
+        weight += entryWeight;
+
+        Iterator<Map.Entry<CacheKey, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Stores a result loaded at a generation of its collection. The result is dropped if the collection has been
+     * invalidated since, because it may have been read before the modification.
+     *
+     * @param key The key of the result.
+     * @param value The result to cache.
+     * @param valueWeight The approximate size in bytes of the result.
+     * @param generation The generation of the collection, retrieved before the result was loaded.
+     * @see #generation(String)
+     */
+    public synchronized void put(CacheKey key, Object value, long valueWeight, long generation) {
+        if (generation(key.collectionName()) == generation) put(key, value, valueWeight);
+    }
+
+    /**
+     * Retrieves the generation of a collection, which advances every time its results are invalidated.
+     *
+     * @param collectionName The name of the collection, with or without a trailing slash.
+     * @return The current generation.
+     */
+    public synchronized long generation(String collectionName) {
+        return allGeneration + generations.getOrDefault(CacheKey.normalize(collectionName), 0L);
+    }
+
+    /**
+     * Removes every cached result of a collection and advances its generation.
+     *
+     * @param collectionName The name of the collection, with or without a trailing slash.
+     */
+    public synchronized void invalidate(String collectionName) {
+        String name = CacheKey.normalize(collectionName);
+        generations.merge(name, 1L, Long::sum);
+        Iterator<Map.Entry<CacheKey, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<CacheKey, Entry> entry = iterator.next();
+            if (entry.getKey().collectionName().equals(name)) {
+                weight -= entry.getValue().weight;
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Removes every cached result and advances the generation of every collection.
+     */
+    public synchronized void invalidateAll() {
+        allGeneration++;
+        invalidations += entries.size();
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Retrieves a snapshot of the statistics of the cache.
+     *
+     * @return The current {@link CacheStats}.
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, expirations, invalidations, entries.size(), weight);
+    }
+
+    /**
+     * Estimates the size in bytes of a list of mapped objects.
+     *
+     * @param items The objects to weigh.
+     * @param clazz The class of the objects.
+     * @param <T> The type of the objects, which must extend {@link DatabaseModel}.
+     * @return The approximate size in bytes of the list.
+     */
+    public static <T extends DatabaseModel> long estimateWeight(List<T> items, Class<T> clazz) {
+        ModelMapper<T> mapper = ModelMapperRegistry.getMapper(clazz);
+        long total = OBJECT_OVERHEAD;
+        for (T item : items) {
+            total += REFERENCE_SIZE + OBJECT_OVERHEAD;
+            for (int i = 0; i < mapper.getFieldCount(); i++) {
+                Object value = mapper.getValue(item, i);
+                if (value instanceof String text) {
+                    total += REFERENCE_SIZE + STRING_OVERHEAD + 2L * text.length();
+                } else {
+                    total += Integer.BYTES;
+                }
+            }
+        }
+        return total;
+    }
+
+    private void remove(CacheKey key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) weight -= previous.weight;
+    }
+
+    /**
+     * A cached result with its weight and expiration time.
+     */
+    private static class Entry {
+        final Object value;
+        final long weight;
+        final long expiresAt;
+
+        Entry(Object value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
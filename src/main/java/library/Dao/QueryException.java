@@ -0,0 +1,20 @@
+package library.Dao;
+
+/**
+ * Unchecked exception thrown when a query or the mapping of its results fails and the caller asked for errors to be
+ * propagated instead of logged, e.g. by {@link QueryManager#fetchItems(String, String, Class)}.
+ */
+public class QueryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param message A descriptive error message.
+     * @param cause The original error.
+     */
+    public QueryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,55 @@
+package library.Dao;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory of the executors used to run queries concurrently.
+ */
+public final class QueryExecutors {
+
+    private QueryExecutors() {
+    }
+
+    /**
+     * Retrieves the executor shared by the query managers and asynchronous DAOs created without an executor.
+     * <p>
+     * It is created with {@link #newQueryExecutor()} on first use and lives as long as the application. Its threads
+     * do not keep the JVM running and idle ones are discarded, so it is never shut down; callers must not shut it
+     * down either. Components that need an executor with a bounded lifecycle should receive their own one.
+     * </p>
+     *
+     * @return The shared thread-per-task executor.
+     */
+    public static ExecutorService sharedQueryExecutor() {
+        return Shared.EXECUTOR;
+    }
+
+    /**
+     * Creates an executor that runs every query in its own thread.
+     * <p>
+     * Queries spend almost all their time waiting for the database, so on Java 21 or later a virtual thread is used
+     * per task. On older runtimes it falls back to a cached pool of daemon platform threads.
+     * </p>
+     *
+     * @return A new thread-per-task executor.
+     */
+    public static ExecutorService newQueryExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "query-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // Holder of the shared executor, created when it is first requested.
+    private static final class Shared {
+        static final ExecutorService EXECUTOR = newQueryExecutor();
+    }
+}
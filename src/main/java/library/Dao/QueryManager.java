@@ -2,18 +2,45 @@ package library.Dao;
 
 import library.model.DatabaseModel;
 import library.service.ExistDatabaseConnection;
-import org.xmldb.api.base.Collection;
+import library.service.PooledCollection;
+import org.exist.xmldb.EXistXQueryService;
+import org.exist.xmldb.ExtendedResource;
+import org.xmldb.api.base.CompiledExpression;
 import org.xmldb.api.base.ResourceIterator;
 import org.xmldb.api.base.ResourceSet;
+import org.xmldb.api.base.XMLDBException;
 import org.xmldb.api.modules.XMLResource;
 import org.xmldb.api.modules.XPathQueryService;
+import org.xmldb.api.modules.XQueryService;
+import org.xmldb.api.modules.XUpdateQueryService;
 
-import java.lang.reflect.Field;
+import java.lang.ref.Cleaner;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,20 +57,96 @@ import java.util.logging.Logger;
  * Java objects while ensuring that errors are logged for debugging and troubleshooting purposes.
  * </p>
  *
+ * <p>
+ * Every execution is timed and recorded in a {@link QueryMetrics} registry, split into the phases of
+ * {@link QueryPhase}. For streams, the execution ends when the stream is closed.
+ * </p>
+ *
+ * <p>
+ * With {@link #setByteParsing(boolean)}, or the system property {@code library.byteParsing=true}, results whose
+ * transport exposes their serialized bytes are parsed directly from them by a {@link ByteContentDecoder}, instead of
+ * building a {@code String} of every resource. It applies to the resources of a remote server; embedded resources
+ * are always streamed from the DOM through a {@link ModelContentHandler}, which does not build one either.
+ * </p>
+ *
  * @author Rafael Francisco Jiménez Rayo
  */
 public class QueryManager {
 
     private static final Logger logger = Logger.getLogger(QueryManager.class.getName());
+    // Releases the collection and results of the streams that are garbage collected without being closed.
+    private static final Cleaner STREAM_CLEANER = Cleaner.create();
+    // External variables of the partition queries of queryPartitioned.
+    private static final String PARTITION_COLLECTION = "partition-collection";
+    private static final String PARTITION_RESOURCES = "partition-resources";
+    // Names of the XML resources of a collection, leaving out binary resources, which doc() cannot open.
+    private static final String XML_RESOURCES =
+            "declare variable $collection external; "
+                    + "for $name in xmldb:get-child-resources($collection) "
+                    + "where not(util:is-binary-doc($collection || '/' || $name)) "
+                    + "return serialize([$name], map { 'method': 'json' })";
     private final ExistDatabaseConnection dbConnection;
+    private final ExecutorService executor;
+    private final QueryMetrics metrics;
+    private volatile boolean byteParsing = Boolean.getBoolean("library.byteParsing");
 
     /**
      * Creates a new {@code QueryManager} with the specified database connection.
+     * Concurrent queries run on the executor shared by every manager, {@link QueryExecutors#sharedQueryExecutor()},
+     * and the executions are recorded in {@link QueryMetrics#getDefault()}.
      *
      * @param databaseConnection The connection to the eXist-db database.
      */
     public QueryManager(ExistDatabaseConnection databaseConnection) {
+        this(databaseConnection, QueryExecutors.sharedQueryExecutor());
+    }
+
+    /**
+     * Creates a new {@code QueryManager} with the specified database connection and executor.
+     * The manager does not shut the executor down; it belongs to the caller.
+     *
+     * @param databaseConnection The connection to the eXist-db database.
+     * @param executor The executor used to run concurrent queries.
+     */
+    public QueryManager(ExistDatabaseConnection databaseConnection, ExecutorService executor) {
+        this(databaseConnection, executor, QueryMetrics.getDefault());
+    }
+
+    /**
+     * Creates a new {@code QueryManager} with the specified database connection, executor and metrics registry.
+     *
+     * @param databaseConnection The connection to the eXist-db database.
+     * @param executor The executor used to run concurrent queries.
+     * @param metrics The registry where the executions are recorded.
+     */
+    public QueryManager(ExistDatabaseConnection databaseConnection, ExecutorService executor, QueryMetrics metrics) {
         this.dbConnection = databaseConnection;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Enables or disables parsing the results from their serialized bytes, when the transport exposes them.
+     * Only the queries executed afterwards are affected.
+     * <p>
+     * Byte parsing applies to the queries that map whole elements, such as {@link #queryItems},
+     * {@link #queryPage} and {@link #streamItems}. The JSON tuples of projections, aggregations, searches, batches,
+     * change feeds, column stores and partitioned queries are short strings and are always read as text.
+     * </p>
+     *
+     * @param byteParsing {@code true} to parse the bytes of the results, {@code false} to use SAX.
+     */
+    public void setByteParsing(boolean byteParsing) {
+        this.byteParsing = byteParsing;
+    }
+
+    /**
+     * Checks whether the results are parsed from their serialized bytes.
+     *
+     * @return {@code true} if byte-level parsing is enabled.
+     */
+    public boolean isByteParsing() {
+        return byteParsing;
     }
 
     /**
@@ -57,12 +160,106 @@ public class QueryManager {
      * @return A list of objects of type {@code T} that match the query, or an empty list if no matches are found or an error occurs.
      */
     public <T extends DatabaseModel> List<T> queryItems(String collectionName, String query, Class<T> clazz) {
-        try (Collection col = dbConnection.getCollection(collectionName)) {
-            XPathQueryService service = (XPathQueryService) col.getService("XPathQueryService", "1.0");
-            ResourceSet result = service.query(query);
-            col.close();
+        return queryItems(query, collectionName, query, clazz);
+    }
+
+    /**
+     * Executes an XPath query on a specified collection and maps the results, propagating any error.
+     * <p>
+     * Unlike {@link #queryItems(String, String, Class)}, a failure while querying or mapping any of the results is
+     * thrown to the caller instead of being logged, so an empty list always means that nothing matched.
+     * </p>
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XPath query to execute.
+     * @param clazz The class type of the objects to map the XML results to.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return A list of objects of type {@code T} that match the query.
+     * @throws Exception If the collection cannot be retrieved, the query fails or a result cannot be mapped.
+     */
+    public <T extends DatabaseModel> List<T> fetchItems(String collectionName, String query, Class<T> clazz)
+            throws Exception {
+        return executeQuery(query, collectionName, query, null, clazz, false, true);
+    }
+
+    /**
+     * Executes a prepared XQuery with the specified external variables and maps the results.
+     * <p>
+     * The query is compiled once per collection and query text and the compiled expression is reused by the
+     * following calls, which only bind new variable values. The query must declare its variables, e.g.
+     * {@code declare variable $year external;}. Errors are logged and an empty list is returned, like
+     * {@link #queryItems(String, String, Class)} does.
+     * </p>
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery to execute.
+     * @param variables The values of the external variables, keyed by variable name without the {@code $}.
+     * @param clazz The class type of the objects to map the XML results to.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return A list of objects of type {@code T} that match the query, or an empty list if an error occurs.
+     */
+    public <T extends DatabaseModel> List<T> queryItems(String collectionName, String query,
+                                                        Map<String, ?> variables, Class<T> clazz) {
+        try {
+            return executeQuery(query, collectionName, query, variables, clazz, false, false);
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error querying the collection", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Executes a prepared XQuery with the specified external variables and maps the results, propagating any error.
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery to execute.
+     * @param variables The values of the external variables, keyed by variable name without the {@code $}.
+     * @param clazz The class type of the objects to map the XML results to.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return A list of objects of type {@code T} that match the query.
+     * @throws Exception If the collection cannot be retrieved, the query fails or a result cannot be mapped.
+     * @see #queryItems(String, String, Map, Class)
+     */
+    public <T extends DatabaseModel> List<T> fetchItems(String collectionName, String query,
+                                                        Map<String, ?> variables, Class<T> clazz) throws Exception {
+        return executeQuery(query, collectionName, query, variables, clazz, false, true);
+    }
+
+    /**
+     * Executes a query on a specified collection, transferring only the fields of the specified class.
+     * <p>
+     * The query is wrapped in a projection generated from the fields of {@code clazz}, so the server serializes a
+     * compact JSON tuple per result instead of the whole element, and children that are not mapped, such as long
+     * texts, are never transferred. The query must return the elements to map, as for
+     * {@link #queryItems(String, String, Class)}. Errors are logged and an empty list is returned.
+     * </p>
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the elements to map.
+     * @param clazz The class type of the objects to map the results to.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return A list of objects of type {@code T} that match the query, or an empty list if an error occurs.
+     */
+    public <T extends DatabaseModel> List<T> queryProjected(String collectionName, String query, Class<T> clazz) {
+        return queryProjected(collectionName, query, null, clazz);
+    }
 
-            return processQueryResults(result, clazz);
+    /**
+     * Executes a prepared query with external variables, transferring only the fields of the specified class.
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the elements to map.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The class type of the objects to map the results to.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return A list of objects of type {@code T} that match the query, or an empty list if an error occurs.
+     * @see #queryProjected(String, String, Class)
+     * @see #queryItems(String, String, Map, Class)
+     */
+    public <T extends DatabaseModel> List<T> queryProjected(String collectionName, String query,
+                                                            Map<String, ?> variables, Class<T> clazz) {
+        try {
+            return executeQuery(query, collectionName, query, variables, clazz, true, false);
         } catch (Exception e) {
             logError(Level.SEVERE, "Error querying the collection", e);
             return Collections.emptyList();
@@ -70,94 +267,1221 @@ public class QueryManager {
     }
 
     /**
-     * Processes the query results and maps them to a list of objects of the specified type.
+     * Executes a query transferring only the fields of the specified class, propagating any error.
      *
-     * @param result The {@link ResourceSet} containing the results of the query.
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the elements to map.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
      * @param clazz The class type of the objects to map the results to.
      * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
-     * @return A list of objects of type {@code T} derived from the XML query results.
+     * @return A list of objects of type {@code T} that match the query.
+     * @throws Exception If the collection cannot be retrieved, the query fails or a result cannot be mapped.
+     * @see #queryProjected(String, String, Class)
      */
-    private <T extends DatabaseModel> List<T> processQueryResults(ResourceSet result, Class<T> clazz) {
-        List<T> items = new ArrayList<>();
+    public <T extends DatabaseModel> List<T> fetchProjected(String collectionName, String query,
+                                                            Map<String, ?> variables, Class<T> clazz)
+            throws Exception {
+        return executeQuery(query, collectionName, query, variables, clazz, true, true);
+    }
+
+    /**
+     * Executes a query that returns rows of values, such as an aggregation, and decodes them.
+     * <p>
+     * Every result of the query must be a JSON array of strings or nulls, e.g.
+     * {@code serialize([$author, string(count($book))], map { 'method': 'json' })}, so the server only transfers the
+     * computed values. Errors are logged and an empty list is returned.
+     * </p>
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the rows.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param width The number of values of each row.
+     * @return The rows; missing values are {@code null}. The list is empty if an error occurs.
+     */
+    public List<String[]> queryTuples(String collectionName, String query, Map<String, ?> variables, int width) {
+        try {
+            return executeTuples(query, collectionName, query, variables, width);
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error querying the collection", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Executes a query that returns rows of values, such as an aggregation, propagating any error.
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the rows.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param width The number of values of each row.
+     * @return The rows; missing values are {@code null}.
+     * @throws Exception If the collection cannot be retrieved, the query fails or a row cannot be decoded.
+     * @see #queryTuples(String, String, Map, int)
+     */
+    public List<String[]> fetchTuples(String collectionName, String query, Map<String, ?> variables, int width)
+            throws Exception {
+        return executeTuples(query, collectionName, query, variables, width);
+    }
+
+    /**
+     * Executes a query and stores its results in a {@link ColumnStore}, outside the heap, instead of creating one
+     * object per result.
+     * <p>
+     * The query is wrapped in a projection of the fields of {@code clazz}, as in
+     * {@link #queryProjected(String, String, Class)}, and every tuple is appended to the columns as soon as it is
+     * decoded. Errors are logged and an empty store is returned. The caller owns the store and should
+     * {@linkplain ColumnStore#close() close} it to free its memory.
+     * </p>
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the elements to store.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The model class whose fields are the columns.
+     * @param <T> The model type.
+     * @return The columns of the results, or an empty store if an error occurs.
+     */
+    public <T extends DatabaseModel> ColumnStore<T> queryColumns(String collectionName, String query,
+                                                                 Map<String, ?> variables, Class<T> clazz) {
         try {
-            ResourceIterator iterator = result.getIterator();
-            while (iterator.hasMoreResources()) {
-                XMLResource resource = (XMLResource) iterator.nextResource();
-                T item = mapXmlToObject(resource.getContent().toString(), clazz);
-                if (item != null) items.add(item);
+            return executeColumns(collectionName, query, variables, clazz);
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error querying the collection", e);
+            return new ColumnStore<>(ModelMapperRegistry.getMapper(clazz));
+        }
+    }
+
+    /**
+     * Executes a query and stores its results in a {@link ColumnStore}, propagating any error.
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the elements to store.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The model class whose fields are the columns.
+     * @param <T> The model type.
+     * @return The columns of the results.
+     * @throws Exception If the collection cannot be retrieved, the query fails or a result cannot be decoded.
+     * @see #queryColumns(String, String, Map, Class)
+     */
+    public <T extends DatabaseModel> ColumnStore<T> fetchColumns(String collectionName, String query,
+                                                                 Map<String, ?> variables, Class<T> clazz)
+            throws Exception {
+        return executeColumns(collectionName, query, variables, clazz);
+    }
+
+    /**
+     * Executes a full-text search and returns one page of the hits, ranked by relevance.
+     * <p>
+     * The query must return the matching elements of a Lucene full-text query ({@code ft:query}) ordered by
+     * relevance, e.g. {@code for $book in //book[ft:query(title, $query)] order by ft:score($book) descending
+     * return $book}. Only the requested page is transferred, as a JSON tuple per hit with its {@code ft:score} and
+     * the fields of the model class. Errors are logged and an empty page is returned.
+     * </p>
+     *
+     * @param collectionName The name of the collection to search.
+     * @param query The search query, ordered by relevance.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The class the hits are mapped to.
+     * @param pageSize The maximum number of hits in the page.
+     * @param cursor The continuation token returned by the previous page, or {@code null} for the first page.
+     * @param <T> The type of the hits.
+     * @return The page of hits with their scores; the page is empty if an error occurs.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
+     */
+    public <T extends DatabaseModel> Page<SearchHit<T>> querySearch(String collectionName, String query,
+                                                                   Map<String, ?> variables, Class<T> clazz,
+                                                                   int pageSize, String cursor) {
+        validatePage(pageSize, cursor);
+        try {
+            return executeSearch(collectionName, query, variables, clazz, pageSize, cursor, false);
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error searching the collection", e);
+            return new Page<>(Collections.emptyList(), null);
+        }
+    }
+
+    /**
+     * Executes a full-text search and returns one page of the hits, propagating any error.
+     *
+     * @param collectionName The name of the collection to search.
+     * @param query The search query, ordered by relevance.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The class the hits are mapped to.
+     * @param pageSize The maximum number of hits in the page.
+     * @param cursor The continuation token returned by the previous page, or {@code null} for the first page.
+     * @param <T> The type of the hits.
+     * @return The page of hits with their scores.
+     * @throws Exception If the query fails or a hit cannot be mapped.
+     * @see #querySearch(String, String, Map, Class, int, String)
+     */
+    public <T extends DatabaseModel> Page<SearchHit<T>> fetchSearch(String collectionName, String query,
+                                                                   Map<String, ?> variables, Class<T> clazz,
+                                                                   int pageSize, String cursor) throws Exception {
+        return executeSearch(collectionName, query, variables, clazz, pageSize, cursor, true);
+    }
+
+    /**
+     * Executes several typed queries in a single round trip and returns the results of all of them.
+     * <p>
+     * The queries are combined into one XQuery by {@link QueryBatch}, which tags the projected results of each query
+     * with its position; the results are then split and mapped to the class of their request. Unlike
+     * {@link #queryAll(List, Duration)}, only one collection is borrowed and one request is sent, whatever the number
+     * of queries, which suits composite views that need several small results. The queries may target different
+     * collections, but they cannot declare a prolog. Errors are logged and every request gets an empty list.
+     * </p>
+     *
+     * @param requests The queries to execute, without duplicates.
+     * @return The results of every request; results that cannot be mapped are skipped.
+     * @throws IllegalArgumentException If a query declares a prolog or two requests are equal.
+     */
+    public QueryResults queryBatch(List<QueryRequest<?>> requests) {
+        String batch = QueryBatch.combine(requests);
+        try {
+            return executeBatch(requests, batch, false);
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error executing the query batch", e);
+            return new QueryResults();
+        }
+    }
+
+    /**
+     * Executes several typed queries in a single round trip, propagating any error.
+     *
+     * @param requests The queries to execute, without duplicates.
+     * @return The results of every request.
+     * @throws IllegalArgumentException If a query declares a prolog or two requests are equal.
+     * @throws Exception If the query fails or a result cannot be mapped.
+     * @see #queryBatch(List)
+     */
+    public QueryResults fetchBatch(List<QueryRequest<?>> requests) throws Exception {
+        return executeBatch(requests, QueryBatch.combine(requests), true);
+    }
+
+    /**
+     * Computes the changes of a collection since a previous synchronization and maps the items of the added and
+     * modified resources.
+     * <p>
+     * Only the names and last-modified times of the resources are listed, and only the changed resources are read,
+     * so the items transferred are proportional to the volume of the changes instead of the size of the collection.
+     * Resources are compared by their last-modified time, so the clocks of the clients do not matter. Only the
+     * resources directly in the collection are tracked, not those of its subcollections. Errors are logged and an
+     * empty change set with the same token is returned, so the next call retries from the same watermark.
+     * </p>
+     *
+     * @param collectionName The name of the collection to synchronize.
+     * @param itemQuery The query that selects the items of a resource, e.g. {@code //book}. It cannot declare a
+     *                  prolog.
+     * @param clazz The class the items are mapped to.
+     * @param since The token of the previous synchronization, or {@link SyncToken#empty()} to read every resource.
+     * @param <T> The type of the items.
+     * @return The changes and the token of this synchronization.
+     */
+    public <T extends DatabaseModel> ChangeSet<T> queryChanges(String collectionName, String itemQuery, Class<T> clazz,
+                                                               SyncToken since) {
+        try {
+            return fetchChanges(collectionName, itemQuery, clazz, since);
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error reading the changes of the collection", e);
+            return new ChangeSet<>(Map.of(), Map.of(), Set.of(), since);
+        }
+    }
+
+    /**
+     * Computes the changes of a collection since a previous synchronization, propagating any error.
+     *
+     * @param collectionName The name of the collection to synchronize.
+     * @param itemQuery The query that selects the items of a resource, e.g. {@code //book}. It cannot declare a
+     *                  prolog.
+     * @param clazz The class the items are mapped to.
+     * @param since The token of the previous synchronization, or {@link SyncToken#empty()} to read every resource.
+     * @param <T> The type of the items.
+     * @return The changes and the token of this synchronization.
+     * @throws Exception If the collection cannot be read or an item cannot be mapped.
+     * @see #queryChanges(String, String, Class, SyncToken)
+     */
+    public <T extends DatabaseModel> ChangeSet<T> fetchChanges(String collectionName, String itemQuery, Class<T> clazz,
+                                                               SyncToken since) throws Exception {
+        if (QueryProjection.prologEnd(itemQuery) > 0) {
+            throw new IllegalArgumentException("The item query cannot declare a prolog: " + itemQuery);
+        }
+        String collectionPath = collectionName.endsWith("/")
+                ? collectionName.substring(0, collectionName.length() - 1) : collectionName;
+
+        Map<String, Long> lastModified = new LinkedHashMap<>();
+        for (String[] resource : executeTuples(ChangeQueries.RESOURCE_TIMESTAMPS, collectionName,
+                ChangeQueries.RESOURCE_TIMESTAMPS, Map.of("collection", collectionPath), 2)) {
+            lastModified.put(resource[0], Long.parseLong(resource[1]));
+        }
+
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, Long> resource : lastModified.entrySet()) {
+            if (!resource.getValue().equals(since.getLastModified().get(resource.getKey()))) {
+                changed.add(resource.getKey());
             }
+        }
+        Set<String> removed = new LinkedHashSet<>(since.getLastModified().keySet());
+        removed.removeAll(lastModified.keySet());
+
+        List<List<T>> items = fetchResourceItems(collectionName, collectionPath, itemQuery, clazz, changed);
+        Map<String, List<T>> added = new LinkedHashMap<>();
+        Map<String, List<T>> modified = new LinkedHashMap<>();
+        for (int i = 0; i < changed.size(); i++) {
+            String resource = changed.get(i);
+            (since.getLastModified().containsKey(resource) ? modified : added).put(resource, items.get(i));
+        }
+        return new ChangeSet<>(added, modified, removed, new SyncToken(lastModified));
+    }
+
+    /**
+     * Splits a collection into groups of resources, executes a query on the groups concurrently and merges the
+     * mapped results.
+     * <p>
+     * The XML resources of the collection are split into
+     * {@link Partitioning#partitions()} groups of consecutive resources, and at most {@link Partitioning#parallelism()}
+     * workers of the executor query one group at a time, so the server evaluates and the client maps several groups
+     * at the same time. Each group is a prepared query compiled once and executed with the names of its resources.
+     * Only the fields of {@code clazz} are transferred, as in {@link #queryProjected(String, String, Class)}.
+     * </p>
+     *
+     * <p>
+     * The query is evaluated on each document, so its paths must be relative to the document, e.g.
+     * {@code for $book in //book return $book}, and an {@code order by} clause only sorts the results of a document.
+     * Binary resources and resources of subcollections are not included. Errors are logged and an empty list is
+     * returned.
+     * </p>
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the elements to map from each document.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The class type of the objects to map the results to.
+     * @param partitioning The number of partitions, the parallelism and whether the order is preserved.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return The results of every partition, or an empty list if an error occurs.
+     */
+    public <T extends DatabaseModel> List<T> queryPartitioned(String collectionName, String query,
+                                                              Map<String, ?> variables, Class<T> clazz,
+                                                              Partitioning partitioning) {
+        try {
+            return executePartitioned(collectionName, query, variables, clazz, partitioning, false);
         } catch (Exception e) {
-            logError(Level.SEVERE, "Error processing query results", e);
+            logError(Level.SEVERE, "Error querying the collection", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Executes a query on groups of resources of a collection concurrently, propagating any error. When a partition
+     * fails, the partitions that have not started are skipped and the running ones are cancelled.
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XQuery that returns the elements to map from each document.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The class type of the objects to map the results to.
+     * @param partitioning The number of partitions, the parallelism and whether the order is preserved.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return The results of every partition.
+     * @throws Exception If the collection cannot be listed, a query fails or a result cannot be mapped.
+     * @see #queryPartitioned(String, String, Map, Class, Partitioning)
+     */
+    public <T extends DatabaseModel> List<T> fetchPartitioned(String collectionName, String query,
+                                                              Map<String, ?> variables, Class<T> clazz,
+                                                              Partitioning partitioning) throws Exception {
+        return executePartitioned(collectionName, query, variables, clazz, partitioning, true);
+    }
+
+    /**
+     * Applies the modifications of a batch to a collection in a single XUpdate request.
+     * <p>
+     * The server applies the modifications one after another and updates the indexes of the modified documents. The
+     * batch is not atomic: the server does not undo the modifications already applied when a later one fails while it
+     * is being applied. The select expressions are compiled first, so a syntax error rejects the batch before any
+     * document is modified, but errors that only occur at evaluation do not. Results cached by the callers, such as
+     * the ones of a {@link CachingLibraryDao}, are not invalidated by this method. The execution is recorded in the
+     * metrics under {@code xupdate:} followed by the collection name.
+     * </p>
+     *
+     * @param collectionName The name of the collection to modify.
+     * @param batch The modifications to apply; an empty batch is not sent.
+     * @return The number of nodes modified, as reported by the server.
+     * @throws Exception If the collection cannot be retrieved, a select expression is invalid or the server rejects
+     *                   the modifications.
+     */
+    public long update(String collectionName, UpdateBatch batch) throws Exception {
+        if (batch.isEmpty()) return 0;
+
+        String xupdate = batch.toXUpdate();
+        QueryTrace trace = new QueryTrace();
+        boolean failed = true;
+        try (PooledCollection col = borrowCollection(collectionName, trace)) {
+            try {
+                long start = System.nanoTime();
+                XUpdateQueryService service = col.getXUpdateQueryService();
+                start = trace.mark(QueryPhase.GET_SERVICE, start);
+                col.getXQueryService().compile(batch.toSelectQuery());
+                long modified = service.update(xupdate);
+                trace.mark(QueryPhase.EXECUTE, start);
+                failed = false;
+                return modified;
+            } catch (XMLDBException e) {
+                col.invalidate();
+                throw e;
+            }
+        } finally {
+            metrics.record("xupdate:" + collectionName, trace, failed);
         }
+    }
+
+    /**
+     * Executes several queries concurrently and returns the results of all of them.
+     * <p>
+     * Every request runs in its own task, so the total latency is close to the latency of the slowest query instead
+     * of the sum of all of them. A request that fails or does not finish within the timeout is cancelled and gets an
+     * empty list, like {@link #queryItems(String, String, Class)} does on errors.
+     * </p>
+     *
+     * @param requests The queries to execute, without duplicates.
+     * @param timeout The maximum time to wait for each query, counted from the moment they are all submitted.
+     * @return The results of every request.
+     * @throws IllegalArgumentException If two requests are equal, since their results could not be told apart.
+     */
+    public QueryResults queryAll(List<QueryRequest<?>> requests, Duration timeout) {
+        QueryResults.checkDistinct(requests);
+        Map<QueryRequest<?>, Future<?>> tasks = new LinkedHashMap<>();
+        for (QueryRequest<?> request : requests) {
+            tasks.put(request, executor.submit(() -> queryItems(request)));
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        QueryResults results = new QueryResults();
+        for (Map.Entry<QueryRequest<?>, Future<?>> task : tasks.entrySet()) {
+            collectResult(results, task.getKey(), task.getValue(), deadline);
+        }
+        return results;
+    }
+
+    /**
+     * Executes the same kind of query on several collections concurrently.
+     *
+     * @param queries The query to execute on each collection, keyed by collection name.
+     * @param clazz The class type of the objects to map the XML results to.
+     * @param timeout The maximum time to wait for each query.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return The results of each query, keyed by collection name.
+     * @see #queryAll(List, Duration)
+     */
+    public <T extends DatabaseModel> Map<String, List<T>> queryAll(Map<String, String> queries, Class<T> clazz,
+                                                                   Duration timeout) {
+        Map<String, QueryRequest<T>> requests = new LinkedHashMap<>();
+        queries.forEach((collectionName, query) ->
+                requests.put(collectionName, new QueryRequest<>(collectionName, query, clazz)));
+
+        QueryResults results = queryAll(new ArrayList<>(requests.values()), timeout);
+
+        Map<String, List<T>> items = new LinkedHashMap<>();
+        requests.forEach((collectionName, request) -> items.put(collectionName, results.get(request)));
         return items;
     }
 
     /**
-     * Maps the XML content of a {@link XMLResource} to an object of the specified class type.
+     * Executes a query on a specified collection and returns only one page of the mapped results.
+     * <p>
+     * The query is wrapped in {@code subsequence()}, so the server only serializes and transfers the requested page.
+     * One extra result is requested to know whether a next page exists. The query should define an explicit order
+     * so the pages are stable between calls.
+     * </p>
      *
-     * @param content The XML content as a {@link String} to be mapped.
-     * @param clazz The class type of the object to map the XML content to.
-     * @param <T> The type of the object, which must extend {@link DatabaseModel}.
-     * @return An object of type {@code T} populated with data from the XML content, or {@code null} if the mapping fails.
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The ordered XQuery to paginate.
+     * @param clazz The class type of the objects to map the XML results to.
+     * @param pageSize The maximum number of items in the page.
+     * @param cursor The continuation token returned by the previous page, or {@code null} for the first page.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return The page of objects of type {@code T}; the page is empty if an error occurs.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
+     */
+    public <T extends DatabaseModel> Page<T> queryPage(String collectionName, String query, Class<T> clazz,
+                                                       int pageSize, String cursor) {
+        long offset = validatePage(pageSize, cursor);
+        List<T> items = queryItems(query, collectionName, pageQuery(query, offset, pageSize), clazz);
+        return toPage(items, offset, pageSize);
+    }
+
+    /**
+     * Executes a query on a specified collection and returns one page of the mapped results, propagating any error.
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The ordered XQuery to paginate.
+     * @param clazz The class type of the objects to map the XML results to.
+     * @param pageSize The maximum number of items in the page.
+     * @param cursor The continuation token returned by the previous page, or {@code null} for the first page.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return The page of objects of type {@code T}.
+     * @throws Exception If the query fails or a result cannot be mapped.
+     * @see #queryPage(String, String, Class, int, String)
+     */
+    public <T extends DatabaseModel> Page<T> fetchPage(String collectionName, String query, Class<T> clazz,
+                                                       int pageSize, String cursor) throws Exception {
+        long offset = validatePage(pageSize, cursor);
+        List<T> items = executeQuery(query, collectionName, pageQuery(query, offset, pageSize), null, clazz, false, true);
+        return toPage(items, offset, pageSize);
+    }
+
+    /**
+     * Executes an XPath query on a specified collection and returns a lazy {@link Stream} over the mapped results.
+     * <p>
+     * Resources are fetched and mapped one by one while the caller consumes the stream, so the memory used does not
+     * depend on the size of the result set. The collection and the server-side results are released when the stream
+     * is closed, so callers should use it inside a try-with-resources block. A stream that is never closed keeps its
+     * pooled collection until the stream is garbage collected; it is then returned to the pool and the leak is logged
+     * as a warning.
+     * </p>
+     *
+     * @param collectionName The name of the collection to query in the database.
+     * @param query The XPath query to execute.
+     * @param clazz The class type of the objects to map the XML results to.
+     * @param <T> The type of objects to be returned, which must extend {@link DatabaseModel}.
+     * @return A stream of objects of type {@code T} that match the query, or an empty stream if an error occurs.
      */
-    private <T extends DatabaseModel> T mapXmlToObject(String content, Class<T> clazz) {
+    public <T extends DatabaseModel> Stream<T> streamItems(String collectionName, String query, Class<T> clazz) {
+        QueryTrace trace = new QueryTrace();
+        PooledCollection col = null;
         try {
-            // Create a new instance of the specified class type
-            T item = clazz.getDeclaredConstructor().newInstance();
-
-            // Iterate over the declared fields in the class
-            for (Field field : clazz.getDeclaredFields()) {
-                field.setAccessible(true); // Ensure field is accessible
-
-                // Extract the field value from the XML content using its name
-                String fieldValue = extractFieldValue(content, field.getName());
-                if (fieldValue != null) {
-                    // Assign the extracted value to the field of the object
-                    setFieldValue(item, field, fieldValue);
+            col = borrowCollection(collectionName, trace);
+            ResourceSet result = query(col, query, null, trace);
+
+            Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+                    new ResultIterator<>(result, clazz, false, false, trace), Spliterator.ORDERED | Spliterator.NONNULL);
+            Stream<T> stream = StreamSupport.stream(spliterator, false);
+            StreamRelease release = new StreamRelease(query, result, col, trace);
+            Cleaner.Cleanable cleanable = STREAM_CLEANER.register(stream, release);
+            return stream.onClose(() -> {
+                release.closed = true;
+                cleanable.clean();
+            });
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error querying the collection", e);
+            releaseResults(null, col);
+            metrics.record(query, trace, true);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Executes a query and maps its results, logging any error.
+     *
+     * @param label The query under which the execution is recorded in the metrics.
+     * @param collectionName The name of the collection to query.
+     * @param query The query to execute.
+     * @param clazz The class type of the objects to map the results to.
+     * @param <T> The type of the results.
+     * @return The mapped results, or an empty list if an error occurs.
+     */
+    private <T extends DatabaseModel> List<T> queryItems(String label, String collectionName, String query,
+                                                         Class<T> clazz) {
+        try {
+            return executeQuery(label, collectionName, query, null, clazz, false, false);
+        } catch (Exception e) {
+            logError(Level.SEVERE, "Error querying the collection", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Executes a query on a pooled collection and maps its results, recording the execution in the metrics.
+     *
+     * @param label The query under which the execution is recorded in the metrics.
+     * @param collectionName The name of the collection to query.
+     * @param query The query to execute.
+     * @param variables The external variables of a prepared query, or {@code null} to execute the query directly.
+     * @param clazz The class type of the objects to map the results to.
+     * @param projected If {@code true}, the query is wrapped in a {@link QueryProjection} of the class fields.
+     * @param failFast If {@code true}, mapping errors are thrown; otherwise they are logged and the result is skipped.
+     * @param <T> The type of the results.
+     * @return The mapped results.
+     * @throws Exception If the collection cannot be retrieved or the query fails.
+     */
+    private <T extends DatabaseModel> List<T> executeQuery(String label, String collectionName, String query,
+                                                           Map<String, ?> variables, Class<T> clazz,
+                                                           boolean projected, boolean failFast) throws Exception {
+        if (projected) query = QueryProjection.project(query, ModelMapperRegistry.getMapper(clazz));
+
+        QueryTrace trace = new QueryTrace();
+        boolean failed = true;
+        try (PooledCollection col = borrowCollection(collectionName, trace)) {
+            ResourceSet result = query(col, query, variables, trace);
+            try {
+                List<T> items = new ArrayList<>();
+                new ResultIterator<>(result, clazz, failFast, projected, trace).forEachRemaining(items::add);
+                failed = false;
+                return items;
+            } finally {
+                releaseResults(result, null);
+            }
+        } finally {
+            metrics.record(label, trace, failed);
+        }
+    }
+
+    /**
+     * Executes a query whose results are JSON tuples and decodes them, recording the execution in the metrics.
+     *
+     * @param label The query under which the execution is recorded in the metrics.
+     * @param collectionName The name of the collection to query.
+     * @param query The query to execute.
+     * @param variables The external variables of a prepared query, or {@code null} to execute the query directly.
+     * @param width The number of values of each tuple.
+     * @return The decoded tuples.
+     * @throws Exception If the collection cannot be retrieved, the query fails or a tuple cannot be decoded.
+     */
+    private List<String[]> executeTuples(String label, String collectionName, String query, Map<String, ?> variables,
+                                         int width) throws Exception {
+        QueryTrace trace = new QueryTrace();
+        boolean failed = true;
+        try (PooledCollection col = borrowCollection(collectionName, trace)) {
+            ResourceSet result = query(col, query, variables, trace);
+            try {
+                JsonTupleDecoder<?> decoder = new JsonTupleDecoder<>(width);
+                List<String[]> tuples = new ArrayList<>();
+                ResourceIterator resources = result.getIterator();
+                long start = System.nanoTime();
+                while (resources.hasMoreResources()) {
+                    XMLResource resource = (XMLResource) resources.nextResource();
+                    start = trace.mark(QueryPhase.ITERATE, start);
+                    tuples.add(decoder.decode(resource).clone());
+                    trace.addResult();
+                    start = trace.mark(QueryPhase.MAP, start);
                 }
-                // Ensure the field is no longer accessible.
-                field.setAccessible(false);
+                failed = false;
+                return tuples;
+            } finally {
+                releaseResults(result, null);
             }
-            return item;
+        } finally {
+            metrics.record(label, trace, failed);
+        }
+    }
 
-        } catch (Exception e) {
-            logError(Level.SEVERE, "Error mapping XML to object", e);
-            return null;
+    /**
+     * Executes a projection of a query and appends its tuples to a new {@link ColumnStore}, recording the execution
+     * in the metrics.
+     *
+     * @param collectionName The name of the collection to query.
+     * @param query The query that returns the elements to store.
+     * @param variables The external variables of a prepared query, or {@code null} to execute the query directly.
+     * @param clazz The model class whose fields are the columns.
+     * @param <T> The model type.
+     * @return The filled store.
+     * @throws Exception If the collection cannot be retrieved, the query fails or a tuple cannot be decoded.
+     */
+    private <T extends DatabaseModel> ColumnStore<T> executeColumns(String collectionName, String query,
+                                                                    Map<String, ?> variables, Class<T> clazz)
+            throws Exception {
+        ModelMapper<T> mapper = ModelMapperRegistry.getMapper(clazz);
+        String projection = QueryProjection.project(query, mapper);
+
+        QueryTrace trace = new QueryTrace();
+        boolean failed = true;
+        try (PooledCollection col = borrowCollection(collectionName, trace)) {
+            ResourceSet result = query(col, projection, variables, trace);
+            try {
+                JsonTupleDecoder<T> decoder = new JsonTupleDecoder<>(mapper);
+                ColumnStore<T> store = new ColumnStore<>(mapper);
+                try {
+                    ResourceIterator resources = result.getIterator();
+                    long start = System.nanoTime();
+                    while (resources.hasMoreResources()) {
+                        XMLResource resource = (XMLResource) resources.nextResource();
+                        start = trace.mark(QueryPhase.ITERATE, start);
+                        store.add(decoder.decode(resource));
+                        trace.addResult();
+                        start = trace.mark(QueryPhase.MAP, start);
+                    }
+                } catch (Exception e) {
+                    // A partial store is never returned, so its memory is freed here.
+                    store.close();
+                    throw e;
+                }
+                failed = false;
+                return store;
+            } finally {
+                releaseResults(result, null);
+            }
+        } finally {
+            metrics.record(query, trace, failed);
         }
     }
 
     /**
-     * Extracts the value of a specified field from XML content using a Regular Expression to match the field name.
+     * Executes a full-text search and maps one page of the hits together with their relevance scores.
      *
-     * @param content The XML content to search within.
-     * @param fieldName The name of the field to extract from the XML.
-     * @return The field value as a {@link String}, or {@code null} if the field is not found.
+     * @param collectionName The name of the collection to search.
+     * @param query The search query, ordered by relevance.
+     * @param variables The values of the external variables, or {@code null} if the query has none.
+     * @param clazz The class the hits are mapped to.
+     * @param pageSize The maximum number of hits in the page.
+     * @param cursor The continuation token returned by the previous page, or {@code null} for the first page.
+     * @param failFast If {@code true}, a hit that cannot be mapped is thrown; otherwise it is logged and skipped.
+     * @param <T> The type of the hits.
+     * @return The page of hits.
+     * @throws Exception If the collection cannot be retrieved or the query fails.
      */
-    private String extractFieldValue(String content, String fieldName) {
-        Matcher matcher = Pattern.compile("<" + fieldName + ">(.*?)</" + fieldName + ">").matcher(content);
-        return matcher.find() ? matcher.group(1) : null;
+    private <T extends DatabaseModel> Page<SearchHit<T>> executeSearch(String collectionName, String query,
+                                                                      Map<String, ?> variables, Class<T> clazz,
+                                                                      int pageSize, String cursor, boolean failFast)
+            throws Exception {
+        long offset = validatePage(pageSize, cursor);
+        ModelMapper<T> mapper = ModelMapperRegistry.getMapper(clazz);
+        String searchQuery = QueryProjection.projectScored(pageQuery(query, offset, pageSize), mapper);
+
+        List<SearchHit<T>> hits = new ArrayList<>();
+        for (String[] tuple : executeTuples(query, collectionName, searchQuery, variables, mapper.getFieldCount() + 1)) {
+            try {
+                T item = mapper.create(Arrays.copyOfRange(tuple, 1, tuple.length));
+                hits.add(new SearchHit<>(item, Double.parseDouble(tuple[0])));
+            } catch (Exception e) {
+                if (failFast) throw new QueryException("Error mapping search hit to object", e);
+                logError(Level.SEVERE, "Error mapping search hit to object", e);
+            }
+        }
+        return toPage(hits, offset, pageSize);
+    }
+
+    /**
+     * Executes a combined batch query and splits its tagged tuples into the results of each request.
+     *
+     * @param requests The requests of the batch.
+     * @param batch The combined query built by {@link QueryBatch#combine(List)}.
+     * @param failFast If {@code true}, a result that cannot be mapped is thrown; otherwise it is logged and skipped.
+     * @return The results of every request.
+     * @throws Exception If the collection cannot be retrieved or the query fails.
+     */
+    private QueryResults executeBatch(List<QueryRequest<?>> requests, String batch, boolean failFast)
+            throws Exception {
+        QueryResults results = new QueryResults();
+        if (requests.isEmpty()) return results;
+
+        List<ModelMapper<?>> mappers = new ArrayList<>();
+        List<List<DatabaseModel>> items = new ArrayList<>();
+        int width = 0;
+        for (QueryRequest<?> request : requests) {
+            ModelMapper<?> mapper = ModelMapperRegistry.getMapper(request.modelClass());
+            mappers.add(mapper);
+            items.add(new ArrayList<>());
+            width = Math.max(width, mapper.getFieldCount() + 1);
+        }
+
+        // The batch runs on the collection of the first request; every query selects its own collection. It is
+        // executed as a prepared query without variables, so a repeated batch reuses its compiled expression.
+        for (String[] tuple : executeTuples(batch, requests.get(0).collectionName(), batch, Map.of(), width)) {
+            try {
+                int index = Integer.parseInt(tuple[0]);
+                ModelMapper<?> mapper = mappers.get(index);
+                items.get(index).add(mapper.create(Arrays.copyOfRange(tuple, 1, mapper.getFieldCount() + 1)));
+            } catch (Exception e) {
+                if (failFast) throw new QueryException("Error mapping batch result to object", e);
+                logError(Level.SEVERE, "Error mapping batch result to object", e);
+            }
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            putResults(results, requests.get(i), items.get(i));
+        }
+        return results;
     }
 
     /**
-     * Sets the value of a field in an object using reflection.
+     * Executes a query on the partitions of a collection with a bounded number of workers and merges the results.
      *
-     * @param item The object whose field value is to be set.
-     * @param field The field to set the value for.
-     * @param value The value to assign to the field.
-     * @param <T> The type of the object whose field is being set.
+     * @param collectionName The name of the collection to query.
+     * @param query The query that returns the elements to map from each document.
+     * @param variables The external variables of the query, or {@code null} if it has none.
+     * @param clazz The class type of the objects to map the results to.
+     * @param partitioning The number of partitions, the parallelism and whether the order is preserved.
+     * @param failFast If {@code true}, mapping errors are thrown; otherwise they are logged and the result is skipped.
+     * @param <T> The type of the results.
+     * @return The merged results.
+     * @throws Exception If the collection cannot be listed or a partition fails.
      */
-    private <T extends DatabaseModel> void setFieldValue(T item, Field field, String value) {
+    private <T extends DatabaseModel> List<T> executePartitioned(String collectionName, String query,
+                                                                 Map<String, ?> variables, Class<T> clazz,
+                                                                 Partitioning partitioning, boolean failFast)
+            throws Exception {
+        String collectionPath;
+        try (PooledCollection col = dbConnection.borrowCollection(collectionName)) {
+            collectionPath = col.getCollection().getName();
+        }
+        String[] resources = executeTuples(XML_RESOURCES, collectionName, XML_RESOURCES,
+                Map.of("collection", collectionPath), 1).stream().map(name -> name[0]).toArray(String[]::new);
+        List<String> partitions = partition(resources, partitioning.partitions());
+        String partitionQuery = partitionQuery(query);
+
+        AtomicReferenceArray<List<T>> results = new AtomicReferenceArray<>(partitions.size());
+        Queue<List<T>> completed = new ConcurrentLinkedQueue<>();
+        AtomicInteger next = new AtomicInteger();
+        Callable<Void> worker = () -> {
+            try {
+                for (int i = next.getAndIncrement(); i < partitions.size(); i = next.getAndIncrement()) {
+                    Map<String, Object> partitionVariables = new HashMap<>();
+                    if (variables != null) partitionVariables.putAll(variables);
+                    partitionVariables.put(PARTITION_COLLECTION, collectionPath);
+                    partitionVariables.put(PARTITION_RESOURCES, partitions.get(i));
+                    List<T> items = executeQuery(query, collectionName, partitionQuery, partitionVariables, clazz,
+                            true, failFast);
+                    results.set(i, items);
+                    completed.add(items);
+                }
+                return null;
+            } catch (Exception e) {
+                // The other workers stop taking partitions.
+                next.set(partitions.size());
+                throw e;
+            }
+        };
+
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(partitioning.parallelism(), partitions.size()); i++) {
+            workers.add(executor.submit(worker));
+        }
         try {
-            if (value != null) {
-                // Assign the value based on the field's type
-                if (field.getType().equals(String.class)) {
-                    field.set(item, value);
-                } else if (field.getType().equals(int.class)) {
-                    field.set(item, Integer.parseInt(value));
+            for (Future<Void> task : workers) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            next.set(partitions.size());
+            for (Future<Void> task : workers) {
+                task.cancel(true);
+            }
+        }
+
+        List<T> items = new ArrayList<>();
+        if (partitioning.ordered()) {
+            for (int i = 0; i < partitions.size(); i++) {
+                items.addAll(results.get(i));
+            }
+        } else {
+            completed.forEach(items::addAll);
+        }
+        return items;
+    }
+
+    /**
+     * Splits the resources of a collection into groups of consecutive resources of similar size.
+     *
+     * @param resources The names of the resources.
+     * @param count The number of groups.
+     * @return The names of the resources of each non-empty group, separated by slashes.
+     */
+    private static List<String> partition(String[] resources, int count) {
+        List<String> partitions = new ArrayList<>();
+        List<String> names = Arrays.asList(resources);
+        for (int i = 0; i < count; i++) {
+            int start = (int) ((long) resources.length * i / count);
+            int end = (int) ((long) resources.length * (i + 1) / count);
+            if (end > start) partitions.add(String.join("/", names.subList(start, end)));
+        }
+        return partitions;
+    }
+
+    /**
+     * Builds the query of a partition, which evaluates a query on each of its documents. The prolog of the query,
+     * if any, is kept in front.
+     *
+     * @param query The query to evaluate on each document.
+     * @return The query, which declares the collection path and the slash-separated resource names as external
+     *         variables.
+     */
+    private static String partitionQuery(String query) {
+        int bodyStart = QueryProjection.prologEnd(query);
+        return query.substring(0, bodyStart)
+                + " declare variable $" + PARTITION_COLLECTION + " external;"
+                + " declare variable $" + PARTITION_RESOURCES + " external;"
+                + " for $partition-resource in tokenize($" + PARTITION_RESOURCES + ", '/')"
+                + " return doc($" + PARTITION_COLLECTION + " || '/' || $partition-resource) ! ("
+                + query.substring(bodyStart) + ")";
+    }
+
+    /**
+     * Reads and maps the items of several resources of a collection in a single query.
+     *
+     * @param collectionName The name of the collection.
+     * @param collectionPath The path of the collection, without a trailing slash.
+     * @param itemQuery The query that selects the items of a resource.
+     * @param clazz The class the items are mapped to.
+     * @param resources The names of the resources to read.
+     * @param <T> The type of the items.
+     * @return The items of every resource, in the order of the names.
+     * @throws Exception If the query fails or an item cannot be mapped.
+     */
+    private <T extends DatabaseModel> List<List<T>> fetchResourceItems(String collectionName, String collectionPath,
+                                                                      String itemQuery, Class<T> clazz,
+                                                                      List<String> resources) throws Exception {
+        List<List<T>> items = new ArrayList<>();
+        for (int i = 0; i < resources.size(); i++) {
+            items.add(new ArrayList<>());
+        }
+        if (resources.isEmpty()) return items;
+
+        ModelMapper<T> mapper = ModelMapperRegistry.getMapper(clazz);
+        String query = ChangeQueries.resourceItems(itemQuery, mapper);
+        Map<String, Object> variables = Map.of("collection", collectionPath, "resources", String.join("/", resources));
+        for (String[] tuple : executeTuples(query, collectionName, query, variables, mapper.getFieldCount() + 1)) {
+            try {
+                items.get(Integer.parseInt(tuple[0]) - 1).add(mapper.create(Arrays.copyOfRange(tuple, 1, tuple.length)));
+            } catch (Exception e) {
+                throw new QueryException("Error mapping changed item to object", e);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Stores the results of a request, whose items were mapped to the class of the request.
+     *
+     * @param results The results of the batch.
+     * @param request The request.
+     * @param items The mapped items.
+     * @param <T> The type of the results.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends DatabaseModel> void putResults(QueryResults results, QueryRequest<T> request,
+                                                      List<DatabaseModel> items) {
+        results.put(request, (List<T>) (List<?>) items);
+    }
+
+    /**
+     * Borrows a collection handle from the pool, timing it as the {@link QueryPhase#GET_COLLECTION} phase.
+     *
+     * @param collectionName The name of the collection.
+     * @param trace The trace of the execution.
+     * @return The borrowed handle.
+     * @throws Exception If the collection cannot be retrieved.
+     */
+    private PooledCollection borrowCollection(String collectionName, QueryTrace trace) throws Exception {
+        long start = System.nanoTime();
+        PooledCollection col = dbConnection.borrowCollection(collectionName);
+        trace.mark(QueryPhase.GET_COLLECTION, start);
+        return col;
+    }
+
+    /**
+     * Checks the arguments of a paginated query.
+     *
+     * @param pageSize The requested page size.
+     * @param cursor The requested cursor.
+     * @return The number of results before the requested page.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is not valid.
+     */
+    private long validatePage(int pageSize, String cursor) {
+        if (pageSize <= 0) throw new IllegalArgumentException("The page size must be positive: " + pageSize);
+        return Page.decodeCursor(cursor);
+    }
+
+    /**
+     * Wraps a query in {@code subsequence()} so it returns one page plus one extra result.
+     * The prolog of the query, if any, is kept in front of the paginated body.
+     *
+     * @param query The ordered query.
+     * @param offset The number of results before the page.
+     * @param pageSize The size of the page.
+     * @return The paginated query.
+     */
+    private String pageQuery(String query, long offset, int pageSize) {
+        // XQuery positions start at 1.
+        int bodyStart = QueryProjection.prologEnd(query);
+        return query.substring(0, bodyStart)
+                + " subsequence((" + query.substring(bodyStart) + "), " + (offset + 1) + ", " + (pageSize + 1) + ")";
+    }
+
+    /**
+     * Builds a page from the results of a paginated query.
+     *
+     * @param items The results, including the extra one if there is a next page.
+     * @param offset The number of results before the page.
+     * @param pageSize The size of the page.
+     * @param <T> The type of the results.
+     * @return The page with the cursor of the next one.
+     */
+    private <T> Page<T> toPage(List<T> items, long offset, int pageSize) {
+        if (items.size() > pageSize) {
+            return new Page<>(new ArrayList<>(items.subList(0, pageSize)), Page.encodeCursor(offset + pageSize));
+        }
+        return new Page<>(items, null);
+    }
+
+    /**
+     * Executes a typed request.
+     *
+     * @param request The request to execute.
+     * @param <T> The type of the results.
+     * @return The mapped results.
+     */
+    private <T extends DatabaseModel> List<T> queryItems(QueryRequest<T> request) {
+        return queryItems(request.collectionName(), request.query(), request.modelClass());
+    }
+
+    /**
+     * Waits for the result of a concurrent request and stores it.
+     * Requests that fail or time out are cancelled and get an empty list.
+     *
+     * @param results The results where the request result is stored.
+     * @param request The executed request.
+     * @param task The task running the request.
+     * @param deadline The {@link System#nanoTime()} after which the request times out.
+     * @param <T> The type of the results.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends DatabaseModel> void collectResult(QueryResults results, QueryRequest<T> request,
+                                                         Future<?> task, long deadline) {
+        try {
+            List<T> items = (List<T>) task.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            results.put(request, items);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            logError(Level.WARNING, "Query timed out on collection " + request.collectionName(), e);
+            results.put(request, Collections.emptyList());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+            results.put(request, Collections.emptyList());
+        } catch (ExecutionException e) {
+            logError(Level.SEVERE, "Error querying the collection " + request.collectionName(), e);
+            results.put(request, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Executes a query with the query service of a pooled collection.
+     * If the query fails, the handle is invalidated so the pool does not reuse a possibly broken connection.
+     *
+     * @param col The borrowed collection handle.
+     * @param query The query to execute.
+     * @param variables The external variables of a prepared query, or {@code null} to execute the query directly.
+     * @param trace The trace where the {@link QueryPhase#GET_SERVICE} and {@link QueryPhase#EXECUTE} phases are timed.
+     * @return The results of the query.
+     * @throws XMLDBException If the query fails.
+     */
+    private ResourceSet query(PooledCollection col, String query, Map<String, ?> variables, QueryTrace trace)
+            throws XMLDBException {
+        try {
+            long start = System.nanoTime();
+            if (variables == null) {
+                XPathQueryService service = col.getQueryService();
+                start = trace.mark(QueryPhase.GET_SERVICE, start);
+                ResourceSet result = service.query(query);
+                trace.mark(QueryPhase.EXECUTE, start);
+                return result;
+            }
+
+            XQueryService service = col.getXQueryService();
+            start = trace.mark(QueryPhase.GET_SERVICE, start);
+            ResourceSet result = executePrepared(col, service, query, variables);
+            trace.mark(QueryPhase.EXECUTE, start);
+            return result;
+        } catch (XMLDBException e) {
+            col.invalidate();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes the compiled expression of a query, binding its external variables.
+     * The expression and the variables are reset afterwards, so the next execution starts from a clean state.
+     *
+     * @param col The borrowed collection handle, which caches the compiled expression.
+     * @param service The XQuery service of the collection.
+     * @param query The query to execute.
+     * @param variables The values of the external variables.
+     * @return The results of the query.
+     * @throws XMLDBException If the query cannot be compiled or executed.
+     */
+    private ResourceSet executePrepared(PooledCollection col, XQueryService service, String query,
+                                        Map<String, ?> variables) throws XMLDBException {
+        CompiledExpression expression = col.compile(query);
+        try {
+            for (Map.Entry<String, ?> variable : variables.entrySet()) {
+                service.declareVariable(variable.getKey(), variable.getValue());
+            }
+            return service.execute(expression);
+        } finally {
+            expression.reset();
+            if (service instanceof EXistXQueryService) {
+                ((EXistXQueryService) service).clearVariables();
+            }
+        }
+    }
+
+    /**
+     * Releases the server-side results of a query and returns the collection it was executed on to the pool.
+     *
+     * @param result The results to release, may be {@code null}.
+     * @param col The collection handle to return, may be {@code null}.
+     */
+    private void releaseResults(ResourceSet result, PooledCollection col) {
+        try {
+            if (result != null) result.clear();
+        } catch (XMLDBException e) {
+            logError(Level.WARNING, "Error releasing query results", e);
+        }
+        if (col != null) col.close();
+    }
+
+    /**
+     * Releases the collection and the server-side results of a stream returned by {@link #streamItems}, once.
+     * <p>
+     * It runs when the stream is closed or, through {@link #STREAM_CLEANER}, when a stream that was not closed becomes
+     * unreachable. It must not refer to the stream, which would then never become unreachable.
+     * </p>
+     */
+    private class StreamRelease implements Runnable {
+        private final String query;
+        private final ResourceSet result;
+        private final PooledCollection col;
+        private final QueryTrace trace;
+        private volatile boolean closed;
+
+        StreamRelease(String query, ResourceSet result, PooledCollection col, QueryTrace trace) {
+            this.query = query;
+            this.result = result;
+            this.col = col;
+            this.trace = trace;
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                logger.warning("A stream of query results was not closed; its collection "
+                        + col.getCollectionName() + " is returned to the pool after being garbage collected: " + query);
+            }
+            releaseResults(result, col);
+            metrics.record(query, trace, false);
+        }
+    }
+
+    /**
+     * Maps the XML content of a {@link XMLResource} to an object of the mapper's class type.
+     * The content is pushed through the SAX handler, which collects all the field values in one pass.
+     *
+     * @param resource The resource whose XML content is mapped.
+     * @param mapper The binding plan of the target class.
+     * @param handler The reusable handler that decodes the field values.
+     * @param <T> The type of the object, which must extend {@link DatabaseModel}.
+     * @return An object of type {@code T} populated with data from the XML content.
+     * @throws Exception If the content cannot be parsed or the object cannot be created.
+     */
+    private <T extends DatabaseModel> T mapXmlToObject(XMLResource resource, ModelMapper<T> mapper,
+                                                      ModelContentHandler<T> handler) throws Exception {
+        handler.reset();
+        resource.getContentAsSAX(handler);
+        return mapper.create(handler.getValues());
+    }
+
+    /**
+     * Maps the JSON tuple returned by a projection query to an object of the mapper's class type.
+     *
+     * @param resource The resource whose content is the tuple.
+     * @param mapper The binding plan of the target class.
+     * @param decoder The reusable decoder of the tuples.
+     * @param <T> The type of the object, which must extend {@link DatabaseModel}.
+     * @return An object of type {@code T} populated with the values of the tuple.
+     * @throws Exception If the tuple cannot be decoded or the object cannot be created.
+     */
+    private <T extends DatabaseModel> T mapTupleToObject(XMLResource resource, ModelMapper<T> mapper,
+                                                        JsonTupleDecoder<T> decoder) throws Exception {
+        return mapper.create(decoder.decode(resource));
+    }
+
+    /**
+     * Iterator that maps the resources of a {@link ResourceSet} lazily, as they are requested.
+     * <p>
+     * By default, resources that cannot be mapped are logged and skipped, and an error while fetching resources
+     * ends the iteration. In fail-fast mode every error is thrown as a {@link QueryException} instead.
+     * Resources are either whole elements, decoded with a {@link ModelContentHandler} or, in byte parsing mode, with a
+     * {@link ByteContentDecoder}, or the JSON tuples of a {@link QueryProjection}, decoded with a
+     * {@link JsonTupleDecoder}.
+     * The time spent fetching and mapping resources is added to the {@link QueryTrace} of the execution.
+     * </p>
+     *
+     * @param <T> The type of the mapped objects.
+     */
+    private class ResultIterator<T extends DatabaseModel> implements Iterator<T> {
+        private final boolean failFast;
+        private final QueryTrace trace;
+        private ResourceIterator resources;
+        private ModelMapper<T> mapper;
+        private ModelContentHandler<T> handler;
+        private ByteContentDecoder<T> byteDecoder;
+        private JsonTupleDecoder<T> tupleDecoder;
+        private T next;
+
+        ResultIterator(ResourceSet result, Class<T> clazz, boolean failFast, boolean projected, QueryTrace trace) {
+            this.failFast = failFast;
+            this.trace = trace;
+            try {
+                this.mapper = ModelMapperRegistry.getMapper(clazz);
+                if (projected) {
+                    this.tupleDecoder = new JsonTupleDecoder<>(mapper);
+                } else {
+                    this.handler = new ModelContentHandler<>(mapper);
+                    if (byteParsing) this.byteDecoder = new ByteContentDecoder<>(mapper);
                 }
+                this.resources = result.getIterator();
+            } catch (Exception e) {
+                handleError("Error processing query results", e);
             }
-        } catch (Exception e) {
-            logError(Level.SEVERE, "Error setting field value", e);
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                long start = System.nanoTime();
+                while (next == null && resources != null && resources.hasMoreResources()) {
+                    XMLResource resource = (XMLResource) resources.nextResource();
+                    start = trace.mark(QueryPhase.ITERATE, start);
+                    next = mapResource(resource);
+                    start = trace.mark(QueryPhase.MAP, start);
+                }
+                trace.mark(QueryPhase.ITERATE, start);
+            } catch (XMLDBException e) {
+                resources = null;
+                handleError("Error processing query results", e);
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T item = next;
+            next = null;
+            return item;
+        }
+
+        private T mapResource(XMLResource resource) {
+            try {
+                T item;
+                if (tupleDecoder != null) {
+                    item = mapTupleToObject(resource, mapper, tupleDecoder);
+                } else if (byteDecoder != null && resource instanceof ExtendedResource) {
+                    item = byteDecoder.decode((ExtendedResource) resource);
+                } else {
+                    item = mapXmlToObject(resource, mapper, handler);
+                }
+                trace.addResult();
+                return item;
+            } catch (Exception e) {
+                trace.addMappingError();
+                handleError("Error mapping XML to object", e);
+                return null;
+            }
+        }
+
+        private void handleError(String message, Exception e) {
+            if (failFast) throw new QueryException(message, e);
+            logError(Level.SEVERE, message, e);
         }
     }
 
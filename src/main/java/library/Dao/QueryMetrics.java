@@ -0,0 +1,289 @@
+package library.Dao;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of the execution statistics of the queries run by {@link QueryManager}.
+ * <p>
+ * For every query text it counts the executions, failures and unmappable results, and keeps histograms of the total
+ * latency, of the latency of every {@link QueryPhase} and of the number of results. Paginated queries are recorded
+ * under the text of the query before pagination. The statistics of all queries are also added up in a total.
+ * </p>
+ *
+ * <p>
+ * Recording is lock-free and does not allocate beyond one small trace per query, so the metrics can stay enabled in
+ * production. The number of distinct queries tracked is bounded; further queries are recorded together as
+ * {@value #OTHER_QUERIES}. The statistics can be read with {@link #getAllStats()} or through JMX after calling
+ * {@link #registerMBeans()}.
+ * </p>
+ */
+public class QueryMetrics {
+
+    /** Name under which the queries that exceed the tracking limit are recorded. */
+    public static final String OTHER_QUERIES = "(other queries)";
+    private static final String ALL_QUERIES = "(all queries)";
+    private static final int MAX_TRACKED_QUERIES = 256;
+    private static final String JMX_DOMAIN = "library.Dao";
+
+    private static final Logger logger = Logger.getLogger(QueryMetrics.class.getName());
+    private static final QueryMetrics DEFAULT = new QueryMetrics("default");
+
+    private final String name;
+    private final Map<String, QueryStatsCollector> queries = new ConcurrentHashMap<>();
+    private final Map<QueryStatsCollector, ObjectName> registeredQueries = new ConcurrentHashMap<>();
+    private final AtomicInteger queryIds = new AtomicInteger();
+    private volatile QueryStatsCollector total = new QueryStatsCollector(ALL_QUERIES);
+    private volatile boolean enabled = true;
+    private volatile MBeanServer mBeanServer;
+
+    /**
+     * Creates a new registry.
+     *
+     * @param name The name of the registry, used in the names of its MBeans.
+     */
+    public QueryMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Retrieves the registry used by the {@link QueryManager}s created without an explicit one.
+     *
+     * @return The default registry.
+     */
+    public static QueryMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the recording of new executions. The statistics recorded so far are kept.
+     *
+     * @param enabled Whether executions are recorded.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Retrieves the statistics of a query.
+     *
+     * @param query The text of the query.
+     * @return A snapshot of the statistics, or {@code null} if the query has not been recorded.
+     */
+    public QueryStats getStats(String query) {
+        QueryStatsCollector collector = queries.get(query);
+        return collector != null ? collector.snapshot() : null;
+    }
+
+    /**
+     * Retrieves the statistics of every recorded query.
+     *
+     * @return A snapshot of the statistics of each query.
+     */
+    public List<QueryStats> getAllStats() {
+        List<QueryStats> stats = new ArrayList<>(queries.size());
+        for (QueryStatsCollector collector : queries.values()) {
+            stats.add(collector.snapshot());
+        }
+        return stats;
+    }
+
+    /**
+     * Retrieves the statistics of all the queries added up.
+     *
+     * @return A snapshot of the total statistics.
+     */
+    public QueryStats getTotals() {
+        return total.snapshot();
+    }
+
+    /**
+     * Discards all the recorded statistics.
+     */
+    public void reset() {
+        total = new QueryStatsCollector(ALL_QUERIES);
+        for (QueryStatsCollector collector : new ArrayList<>(queries.values())) {
+            queries.remove(collector.getQuery(), collector);
+            unregister(collector);
+        }
+    }
+
+    /**
+     * Registers the MBeans of the registry in the platform MBean server: one for the totals, named
+     * {@code library.Dao:type=QueryMetrics,name=<name>}, and one per query, which adds a {@code query} key with a
+     * sequence number. Queries recorded later are registered as they appear.
+     *
+     * @throws JMException If the MBeans cannot be registered, e.g. because another registry has the same name.
+     */
+    public synchronized void registerMBeans() throws JMException {
+        if (mBeanServer != null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new Management(), registryName());
+        mBeanServer = server;
+        for (QueryStatsCollector collector : queries.values()) {
+            register(collector);
+        }
+    }
+
+    /**
+     * Removes the MBeans of the registry from the platform MBean server.
+     */
+    public synchronized void unregisterMBeans() {
+        if (mBeanServer == null) return;
+        for (QueryStatsCollector collector : registeredQueries.keySet()) {
+            unregister(collector);
+        }
+        try {
+            mBeanServer.unregisterMBean(registryName());
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Error unregistering the query metrics MBean", e);
+        }
+        mBeanServer = null;
+    }
+
+    /**
+     * Records a finished execution.
+     *
+     * @param query The text of the query, without pagination.
+     * @param trace The trace of the execution.
+     * @param failed Whether the execution failed.
+     */
+    void record(String query, QueryTrace trace, boolean failed) {
+        if (!enabled) return;
+        collectorOf(query).record(trace, failed);
+        total.record(trace, failed);
+    }
+
+    /**
+     * Retrieves the statistics of a query, creating them if it is a new query.
+     *
+     * @param query The text of the query.
+     * @return The live statistics of the query.
+     */
+    private QueryStatsCollector collectorOf(String query) {
+        QueryStatsCollector collector = queries.get(query);
+        if (collector != null) return collector;
+
+        if (queries.size() >= MAX_TRACKED_QUERIES && !OTHER_QUERIES.equals(query)) {
+            return collectorOf(OTHER_QUERIES);
+        }
+        QueryStatsCollector created = new QueryStatsCollector(query);
+        collector = queries.putIfAbsent(query, created);
+        if (collector != null) return collector;
+
+        if (mBeanServer != null) register(created);
+        return created;
+    }
+
+    /**
+     * Registers the MBean of a query if the registry MBeans are registered.
+     *
+     * @param collector The statistics of the query.
+     */
+    private synchronized void register(QueryStatsCollector collector) {
+        if (mBeanServer == null || registeredQueries.containsKey(collector)) return;
+        try {
+            ObjectName objectName = new ObjectName(registryName() + ",query=" + queryIds.incrementAndGet());
+            mBeanServer.registerMBean(collector, objectName);
+            registeredQueries.put(collector, objectName);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Error registering the MBean of a query", e);
+        }
+    }
+
+    /**
+     * Unregisters the MBean of a query, if it was registered.
+     *
+     * @param collector The statistics of the query.
+     */
+    private synchronized void unregister(QueryStatsCollector collector) {
+        ObjectName objectName = registeredQueries.remove(collector);
+        if (objectName == null || mBeanServer == null) return;
+        try {
+            mBeanServer.unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Error unregistering the MBean of a query", e);
+        }
+    }
+
+    private ObjectName registryName() throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=QueryMetrics,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * MBean of the registry, which exposes the total statistics.
+     */
+    private class Management implements QueryMetricsMXBean {
+        @Override
+        public int getTrackedQueries() {
+            return queries.size();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            QueryMetrics.this.setEnabled(enabled);
+        }
+
+        @Override
+        public void reset() {
+            QueryMetrics.this.reset();
+        }
+
+        @Override
+        public String getQuery() {
+            return total.getQuery();
+        }
+
+        @Override
+        public long getCount() {
+            return total.getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return total.getErrors();
+        }
+
+        @Override
+        public long getMappingErrors() {
+            return total.getMappingErrors();
+        }
+
+        @Override
+        public HistogramSnapshot getLatency() {
+            return total.getLatency();
+        }
+
+        @Override
+        public Map<QueryPhase, HistogramSnapshot> getPhaseLatencies() {
+            return total.getPhaseLatencies();
+        }
+
+        @Override
+        public HistogramSnapshot getResultSizes() {
+            return total.getResultSizes();
+        }
+    }
+}
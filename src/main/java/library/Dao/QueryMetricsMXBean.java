@@ -0,0 +1,19 @@
+package library.Dao;
+
+/**
+ * JMX management interface of a {@link QueryMetrics} registry.
+ * The statistics of every query are registered as separate {@link QueryStatsMXBean}s.
+ */
+public interface QueryMetricsMXBean extends QueryStatsMXBean {
+
+    int getTrackedQueries();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Discards all the recorded statistics.
+     */
+    void reset();
+}
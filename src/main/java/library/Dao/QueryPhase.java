@@ -0,0 +1,17 @@
+package library.Dao;
+
+/**
+ * Phases of the execution of a query measured by {@link QueryMetrics}.
+ */
+public enum QueryPhase {
+    /** Borrowing the collection handle from the pool, which opens it if no idle handle is available. */
+    GET_COLLECTION,
+    /** Retrieving the query service of the collection. */
+    GET_SERVICE,
+    /** Compiling and running the query on the server. */
+    EXECUTE,
+    /** Fetching the resources of the result set. */
+    ITERATE,
+    /** Parsing the XML of every resource and creating the model objects. */
+    MAP
+}
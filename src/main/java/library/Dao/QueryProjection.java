@@ -0,0 +1,139 @@
+package library.Dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates projection queries, which return only the values of the fields of a model class instead of whole
+ * elements.
+ * <p>
+ * Every result of the original query is turned into a JSON array of strings, serialized on the server, with one
+ * member per field of the {@link ModelMapper} in the same order. Like {@link ModelContentHandler}, the value of a
+ * field is the text of the first child element with its name, or else the attribute with its name; missing fields
+ * are {@code null}. The tuples are decoded with {@link JsonTupleDecoder}.
+ * </p>
+ *
+ * <p>
+ * Scored projections of full-text searches add the {@code ft:score} of the result as the first member, and tagged
+ * projections add a tag, such as the position of the query in a {@link QueryBatch}.
+ * </p>
+ */
+final class QueryProjection {
+
+    private static final String ITEM_VARIABLE = "$projection-item";
+
+    // Return clause of the projection of each class, built once.
+    private static final Map<Class<?>, String> returnClauses = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, String> scoredReturnClauses = new ConcurrentHashMap<>();
+
+    private QueryProjection() {
+    }
+
+    /**
+     * Wraps a query so it returns the field values of its results as JSON tuples.
+     * The prolog of the query, if any, is kept in front of the projection.
+     *
+     * @param query The query that returns the elements to map.
+     * @param mapper The binding plan of the target class.
+     * @return The projection query.
+     */
+    static String project(String query, ModelMapper<?> mapper) {
+        return wrap(query, returnClauses.computeIfAbsent(mapper.getType(), type -> returnClause(mapper, null)));
+    }
+
+    /**
+     * Wraps a full-text query so it returns the relevance score and the field values of its results as JSON tuples.
+     * The prolog of the query, if any, is kept in front of the projection.
+     *
+     * @param query The query that returns the elements matched by {@code ft:query}.
+     * @param mapper The binding plan of the target class.
+     * @return The projection query, whose tuples start with the score.
+     */
+    static String projectScored(String query, ModelMapper<?> mapper) {
+        return wrap(query, scoredReturnClauses.computeIfAbsent(mapper.getType(),
+                type -> returnClause(mapper, "string(ft:score(" + ITEM_VARIABLE + "))")));
+    }
+
+    /**
+     * Wraps a query so it returns a tag and the field values of its results as JSON tuples.
+     * The prolog of the query, if any, is kept in front of the projection.
+     *
+     * @param query The query that returns the elements to map.
+     * @param mapper The binding plan of the target class.
+     * @param tag The string expression serialized as the first member of every tuple, e.g. {@code '1'}.
+     * @return The projection query, whose tuples start with the tag.
+     */
+    static String projectTagged(String query, ModelMapper<?> mapper, String tag) {
+        return wrap(query, returnClause(mapper, tag));
+    }
+
+    private static String wrap(String query, String returnClause) {
+        int bodyStart = prologEnd(query);
+        return query.substring(0, bodyStart)
+                + " for " + ITEM_VARIABLE + " in (" + query.substring(bodyStart) + ") return " + returnClause;
+    }
+
+    /**
+     * Builds the expression that serializes the fields of one result.
+     *
+     * @param mapper The binding plan of the target class.
+     * @param firstMember An expression serialized before the fields, or {@code null} to serialize only the fields.
+     * @return The return clause of the projection.
+     */
+    private static String returnClause(ModelMapper<?> mapper, String firstMember) {
+        StringBuilder clause = new StringBuilder("serialize([");
+        if (firstMember != null) clause.append(firstMember);
+        for (int i = 0; i < mapper.getFieldCount(); i++) {
+            String field = mapper.getFieldName(i);
+            if (i > 0 || firstMember != null) clause.append(", ");
+            clause.append('(').append(ITEM_VARIABLE).append('/').append(field).append(", ")
+                    .append(ITEM_VARIABLE).append("/@").append(field).append(")[1] ! string()");
+        }
+        return clause.append("], map { 'method': 'json' })").toString();
+    }
+
+    /**
+     * Finds the end of the prolog of a query: the position after the last semicolon that is not nested in brackets,
+     * string literals or comments. Semicolons only appear at the top level of a query as separators of the prolog
+     * declarations.
+     *
+     * @param query The query.
+     * @return The index where the query body starts, or {@code 0} if the query has no prolog.
+     */
+    static int prologEnd(String query) {
+        int end = 0;
+        int depth = 0;
+        int commentDepth = 0;
+        char quote = 0;
+
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            char next = i + 1 < query.length() ? query.charAt(i + 1) : 0;
+
+            if (commentDepth > 0) {
+                if (c == '(' && next == ':') {
+                    commentDepth++;
+                    i++;
+                } else if (c == ':' && next == ')') {
+                    commentDepth--;
+                    i++;
+                }
+            } else if (quote != 0) {
+                // A doubled quote is an escaped quote, which is handled as closing and reopening the literal.
+                if (c == quote) quote = 0;
+            } else if (c == '(' && next == ':') {
+                commentDepth++;
+                i++;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+            } else if (c == ';' && depth == 0) {
+                end = i + 1;
+            }
+        }
+        return end;
+    }
+}
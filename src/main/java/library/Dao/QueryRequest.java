@@ -0,0 +1,14 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+
+/**
+ * A typed query to run as part of a group of queries, such as {@link QueryManager#queryAll(java.util.List, java.time.Duration)}.
+ *
+ * @param collectionName The name of the collection to query.
+ * @param query The XQuery to execute.
+ * @param modelClass The class the results are mapped to.
+ * @param <T> The type of the mapped results.
+ */
+public record QueryRequest<T extends DatabaseModel>(String collectionName, String query, Class<T> modelClass) {
+}
@@ -0,0 +1,73 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of a group of {@link QueryRequest}s, which can be retrieved with the type of each request.
+ * The results are keyed by request, so a group cannot contain two equal requests.
+ */
+public class QueryResults {
+    private final Map<QueryRequest<?>, List<?>> results = new LinkedHashMap<>();
+
+    /**
+     * Stores the results of a request.
+     *
+     * @param request The executed request.
+     * @param items The mapped results.
+     * @param <T> The type of the results.
+     */
+    <T extends DatabaseModel> void put(QueryRequest<T> request, List<T> items) {
+        results.put(request, items);
+    }
+
+    /**
+     * Checks that a group has no equal requests, whose results would be stored under the same key.
+     *
+     * @param requests The requests of the group.
+     * @throws IllegalArgumentException If two requests are equal.
+     */
+    static void checkDistinct(List<QueryRequest<?>> requests) {
+        Set<QueryRequest<?>> distinct = new HashSet<>();
+        for (QueryRequest<?> request : requests) {
+            if (!distinct.add(request)) {
+                throw new IllegalArgumentException("The request is repeated in the group: " + request);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the results of a request.
+     *
+     * @param request The executed request.
+     * @param <T> The type of the results.
+     * @return The mapped results, or an empty list if the request failed or was not part of the group.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends DatabaseModel> List<T> get(QueryRequest<T> request) {
+        List<?> items = results.get(request);
+        return items != null ? (List<T>) items : Collections.emptyList();
+    }
+
+    /**
+     * Retrieves the number of requests in the group.
+     *
+     * @return The number of stored results.
+     */
+    public int size() {
+        return results.size();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResults{" +
+                "results=" + results +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package library.Dao;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the statistics of a query recorded by {@link QueryMetrics}.
+ * Latencies are in nanoseconds and result sizes in number of mapped objects.
+ */
+public class QueryStats {
+    private final String query;
+    private final long count;
+    private final long errors;
+    private final long mappingErrors;
+    private final HistogramSnapshot latency;
+    private final Map<QueryPhase, HistogramSnapshot> phaseLatencies;
+    private final HistogramSnapshot resultSizes;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param query The measured query.
+     * @param count Number of executions.
+     * @param errors Number of executions that failed.
+     * @param mappingErrors Number of results skipped because they could not be mapped.
+     * @param latency Total latency of the executions.
+     * @param phaseLatencies Latency of every phase of the successful executions.
+     * @param resultSizes Number of results of the successful executions.
+     */
+    QueryStats(String query, long count, long errors, long mappingErrors, HistogramSnapshot latency,
+               Map<QueryPhase, HistogramSnapshot> phaseLatencies, HistogramSnapshot resultSizes) {
+        this.query = query;
+        this.count = count;
+        this.errors = errors;
+        this.mappingErrors = mappingErrors;
+        this.latency = latency;
+        this.phaseLatencies = Collections.unmodifiableMap(phaseLatencies);
+        this.resultSizes = resultSizes;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getMappingErrors() {
+        return mappingErrors;
+    }
+
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    public Map<QueryPhase, HistogramSnapshot> getPhaseLatencies() {
+        return phaseLatencies;
+    }
+
+    /**
+     * Retrieves the latency of one phase of the successful executions.
+     *
+     * @param phase The phase.
+     * @return The latency histogram of the phase.
+     */
+    public HistogramSnapshot getPhaseLatency(QueryPhase phase) {
+        return phaseLatencies.get(phase);
+    }
+
+    public HistogramSnapshot getResultSizes() {
+        return resultSizes;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStats{" +
+                "query='" + query + '\'' +
+                ", count=" + count +
+                ", errors=" + errors +
+                ", mappingErrors=" + mappingErrors +
+                ", latency=" + latency +
+                ", phaseLatencies=" + phaseLatencies +
+                ", resultSizes=" + resultSizes +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package library.Dao;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics of a query, updated by every {@link QueryTrace} recorded for it.
+ * It is also the MBean registered for the query when {@link QueryMetrics#registerMBeans()} is called.
+ */
+class QueryStatsCollector implements QueryStatsMXBean {
+    private final String query;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder mappingErrors = new LongAdder();
+    private final Histogram latency = new Histogram();
+    private final Histogram[] phaseLatencies = new Histogram[QueryTrace.phases().length];
+    private final Histogram resultSizes = new Histogram();
+
+    QueryStatsCollector(String query) {
+        this.query = query;
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            phaseLatencies[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records a finished execution. The phases and the result size are only recorded if the execution succeeded.
+     *
+     * @param trace The trace of the execution.
+     * @param failed Whether the execution failed.
+     */
+    void record(QueryTrace trace, boolean failed) {
+        count.increment();
+        latency.record(trace.getElapsedNanos());
+        if (trace.getMappingErrors() > 0) mappingErrors.add(trace.getMappingErrors());
+
+        if (failed) {
+            errors.increment();
+            return;
+        }
+        for (QueryPhase phase : QueryTrace.phases()) {
+            phaseLatencies[phase.ordinal()].record(trace.getPhaseNanos(phase));
+        }
+        resultSizes.record(trace.getResults());
+    }
+
+    QueryStats snapshot() {
+        return new QueryStats(query, count.sum(), errors.sum(), mappingErrors.sum(), latency.snapshot(),
+                getPhaseLatencies(), resultSizes.snapshot());
+    }
+
+    @Override
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getMappingErrors() {
+        return mappingErrors.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getLatency() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public Map<QueryPhase, HistogramSnapshot> getPhaseLatencies() {
+        Map<QueryPhase, HistogramSnapshot> phases = new EnumMap<>(QueryPhase.class);
+        for (QueryPhase phase : QueryTrace.phases()) {
+            phases.put(phase, phaseLatencies[phase.ordinal()].snapshot());
+        }
+        return phases;
+    }
+
+    @Override
+    public HistogramSnapshot getResultSizes() {
+        return resultSizes.snapshot();
+    }
+}
@@ -0,0 +1,29 @@
+package library.Dao;
+
+import java.util.Map;
+
+/**
+ * JMX view of the statistics of the queries recorded by {@link QueryMetrics}.
+ * Latencies are in nanoseconds and result sizes in number of mapped objects.
+ */
+public interface QueryStatsMXBean {
+
+    /**
+     * Retrieves the measured query.
+     *
+     * @return The text of the query, or a description if the statistics cover several queries.
+     */
+    String getQuery();
+
+    long getCount();
+
+    long getErrors();
+
+    long getMappingErrors();
+
+    HistogramSnapshot getLatency();
+
+    Map<QueryPhase, HistogramSnapshot> getPhaseLatencies();
+
+    HistogramSnapshot getResultSizes();
+}
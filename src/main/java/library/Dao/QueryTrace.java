@@ -0,0 +1,60 @@
+package library.Dao;
+
+/**
+ * Timings and result counts of one query execution, recorded in {@link QueryMetrics} when the query ends.
+ * A trace is only updated by the thread that runs or consumes the query.
+ */
+final class QueryTrace {
+    private static final QueryPhase[] PHASES = QueryPhase.values();
+
+    private final long start = System.nanoTime();
+    private final long[] phaseNanos = new long[PHASES.length];
+    private long results;
+    private long mappingErrors;
+
+    /**
+     * Adds the time elapsed since an instant to a phase.
+     *
+     * @param phase The measured phase.
+     * @param since The {@link System#nanoTime()} when the phase started.
+     * @return The current {@link System#nanoTime()}, so the next phase can start from it.
+     */
+    long mark(QueryPhase phase, long since) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - since;
+        return now;
+    }
+
+    void addResult() {
+        results++;
+    }
+
+    void addMappingError() {
+        mappingErrors++;
+    }
+
+    long getPhaseNanos(QueryPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    long getResults() {
+        return results;
+    }
+
+    long getMappingErrors() {
+        return mappingErrors;
+    }
+
+    /**
+     * Retrieves the time elapsed since the trace was created.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    long getElapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    static QueryPhase[] phases() {
+        return PHASES;
+    }
+}
@@ -0,0 +1,13 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+
+/**
+ * Result of a full-text search, with the relevance score computed by the Lucene index of eXist-db.
+ *
+ * @param item The matching item.
+ * @param score The relevance score; higher is more relevant. Scores are only comparable within the same search.
+ * @param <T> The type of the item.
+ */
+public record SearchHit<T extends DatabaseModel>(T item, double score) {
+}
@@ -0,0 +1,242 @@
+package library.Dao;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary that assigns a dense code to every distinct string, stored outside the Java heap.
+ * <p>
+ * The distinct values are kept as UTF-8 bytes in a direct buffer, with their offsets and hashes in
+ * {@link IntColumn}s, and are looked up in an open-addressing hash table that is also a direct buffer. So encoding
+ * a column of repeated values, such as authors, keeps a single copy of each value and no objects on the heap.
+ * {@code null} is encoded as {@link #NULL}. Buffers replaced when the dictionary grows are freed at once, and the
+ * others by {@link #free()}. Not thread-safe.
+ * </p>
+ */
+final class StringDictionary {
+
+    /** Code of the {@code null} value. */
+    static final int NULL = -1;
+    /** Result of {@link #find(String)} for a value that is not in the dictionary. */
+    static final int ABSENT = -2;
+
+    private static final int MAX_BYTES = Integer.MAX_VALUE - 8;
+
+    private final IntColumn offsets = new IntColumn(1024);
+    private final IntColumn hashes = new IntColumn(1024);
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(16 * 1024);
+    private int byteSize;
+    // Codes plus one, so zero marks an empty slot, and the buffer that owns their memory.
+    private ByteBuffer slotMemory;
+    private IntBuffer slots = allocateSlots(2048);
+    private int[] sortedCodes;
+
+    /**
+     * Retrieves the code of a value, adding the value if it is new.
+     *
+     * @param value The value, may be {@code null}.
+     * @return The code of the value.
+     * @throws IllegalStateException If the dictionary cannot grow anymore.
+     */
+    int encode(String value) {
+        if (value == null) return NULL;
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        int hash = mix(value.hashCode());
+        int slot = findSlot(utf8, hash);
+        int code = slots.get(slot) - 1;
+        if (code >= 0) return code;
+
+        code = size();
+        append(utf8);
+        offsets.add(byteSize - utf8.length);
+        hashes.add(hash);
+        slots.put(slot, code + 1);
+        sortedCodes = null;
+        if (size() * 2 > slots.capacity()) rehash();
+        return code;
+    }
+
+    /**
+     * Retrieves the code of a value without adding it.
+     *
+     * @param value The value, may be {@code null}.
+     * @return The code of the value, {@link #NULL} for {@code null} or {@link #ABSENT} if the value is not present.
+     */
+    int find(String value) {
+        if (value == null) return NULL;
+        int code = slots.get(findSlot(value.getBytes(StandardCharsets.UTF_8), mix(value.hashCode()))) - 1;
+        return code >= 0 ? code : ABSENT;
+    }
+
+    /**
+     * Decodes a value. A new {@code String} is created on every call.
+     *
+     * @param code The code of the value.
+     * @return The value, or {@code null} for {@link #NULL}.
+     */
+    String decode(int code) {
+        if (code == NULL) return null;
+        int start = offsets.get(code);
+        byte[] utf8 = new byte[end(code) - start];
+        bytes.get(start, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retrieves the number of distinct values.
+     *
+     * @return The number of codes assigned.
+     */
+    int size() {
+        return offsets.size();
+    }
+
+    /**
+     * Retrieves the codes ordered by the Unicode code points of their values, computed once until a new value is
+     * added. The values are compared as UTF-8 bytes in the buffer, whose order is the code point order, so sorting
+     * creates no object per value. It only differs from the natural order of {@code String} for characters outside
+     * the Basic Multilingual Plane, which sort after the characters from U+E000 to U+FFFF.
+     *
+     * @return The codes in ascending order of their values.
+     */
+    int[] sortedCodes() {
+        if (sortedCodes == null) {
+            int[] codes = new int[size()];
+            Arrays.setAll(codes, i -> i);
+            sortedCodes = sort(codes);
+        }
+        return sortedCodes;
+    }
+
+    /**
+     * Retrieves the memory reserved by the dictionary outside the heap.
+     *
+     * @return The capacity of its buffers, in bytes.
+     */
+    long getOffHeapBytes() {
+        return bytes.capacity() + (long) slots.capacity() * Integer.BYTES
+                + offsets.getOffHeapBytes() + hashes.getOffHeapBytes();
+    }
+
+    /**
+     * Frees the memory of the dictionary. The dictionary is empty afterwards and must not be used anymore.
+     */
+    void free() {
+        offsets.free();
+        hashes.free();
+        DirectBuffers.free(bytes);
+        DirectBuffers.free(slotMemory);
+        bytes = ByteBuffer.allocate(0);
+        byteSize = 0;
+        slotMemory = ByteBuffer.allocate(0);
+        slots = slotMemory.asIntBuffer();
+        sortedCodes = null;
+    }
+
+    /**
+     * Finds the slot of a value in the hash table: the slot that holds its code, or the empty slot where it belongs.
+     */
+    private int findSlot(byte[] utf8, int hash) {
+        int mask = slots.capacity() - 1;
+        int slot = hash & mask;
+        while (true) {
+            int code = slots.get(slot) - 1;
+            if (code < 0 || hashes.get(code) == hash && equalsAt(code, utf8)) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Sorts codes by their values with a bottom-up merge sort, which merges runs of doubling width between the array
+     * and a buffer of the same size.
+     */
+    private int[] sort(int[] codes) {
+        int[] source = codes;
+        int[] target = new int[codes.length];
+        for (int width = 1; width < codes.length; width *= 2) {
+            for (int start = 0; start < codes.length; start += 2 * width) {
+                int middle = Math.min(start + width, codes.length);
+                int end = Math.min(start + 2 * width, codes.length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    boolean takeLeft = right >= end || left < middle && compare(source[left], source[right]) <= 0;
+                    target[i] = takeLeft ? source[left++] : source[right++];
+                }
+            }
+            int[] merged = target;
+            target = source;
+            source = merged;
+        }
+        return source;
+    }
+
+    // Compares the UTF-8 bytes of two values as unsigned bytes.
+    private int compare(int code, int other) {
+        int start = offsets.get(code);
+        int length = end(code) - start;
+        int otherStart = offsets.get(other);
+        int otherLength = end(other) - otherStart;
+        for (int i = 0, common = Math.min(length, otherLength); i < common; i++) {
+            int difference = (bytes.get(start + i) & 0xff) - (bytes.get(otherStart + i) & 0xff);
+            if (difference != 0) return difference;
+        }
+        return length - otherLength;
+    }
+
+    private boolean equalsAt(int code, byte[] utf8) {
+        int start = offsets.get(code);
+        if (end(code) - start != utf8.length) return false;
+        for (int i = 0; i < utf8.length; i++) {
+            if (bytes.get(start + i) != utf8[i]) return false;
+        }
+        return true;
+    }
+
+    private int end(int code) {
+        return code + 1 < size() ? offsets.get(code + 1) : byteSize;
+    }
+
+    private void append(byte[] utf8) {
+        if (byteSize + (long) utf8.length > bytes.capacity()) {
+            long capacity = Math.max((long) bytes.capacity() * 2, (long) byteSize + utf8.length);
+            if (capacity > MAX_BYTES) {
+                if (byteSize + (long) utf8.length > MAX_BYTES) throw new IllegalStateException("The dictionary is full");
+                capacity = MAX_BYTES;
+            }
+            ByteBuffer larger = ByteBuffer.allocateDirect((int) capacity);
+            larger.put(0, bytes, 0, byteSize);
+            DirectBuffers.free(bytes);
+            bytes = larger;
+        }
+        bytes.put(byteSize, utf8);
+        byteSize += utf8.length;
+    }
+
+    private void rehash() {
+        ByteBuffer previousMemory = slotMemory;
+        IntBuffer larger = allocateSlots(slots.capacity() * 2);
+        int mask = larger.capacity() - 1;
+        for (int code = 0; code < size(); code++) {
+            int slot = hashes.get(code) & mask;
+            while (larger.get(slot) != 0) slot = (slot + 1) & mask;
+            larger.put(slot, code + 1);
+        }
+        slots = larger;
+        DirectBuffers.free(previousMemory);
+    }
+
+    // Allocates a table of empty slots and keeps its buffer in slotMemory.
+    private IntBuffer allocateSlots(int capacity) {
+        slotMemory = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+        return slotMemory.asIntBuffer();
+    }
+
+    // Spreads the bits of String.hashCode, whose low bits are weak for short strings.
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16) * 0x45d9f3b;
+    }
+}
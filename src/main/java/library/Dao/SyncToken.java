@@ -0,0 +1,115 @@
+package library.Dao;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Watermark of an incremental synchronization, returned by every {@link ChangeSet}.
+ * <p>
+ * The token holds the last-modified time of every resource of the collection when the changes were computed, so the
+ * next synchronization can tell which resources were added, modified or removed since then. Tokens can be persisted
+ * with {@link #encode()} and restored with {@link #decode(String)}; {@link #empty()} starts a full synchronization.
+ * </p>
+ *
+ * <p>
+ * eXist-db records the last-modified time of a resource in milliseconds. A write within the same millisecond as the
+ * previous write of the resource does not change its time, so a synchronization that ran between both writes does
+ * not report the second one as a modification.
+ * </p>
+ */
+public class SyncToken {
+
+    private static final SyncToken EMPTY = new SyncToken(Collections.emptyMap());
+
+    // Resource names cannot contain a slash, so it separates the names and the times in the encoded form.
+    private static final char SEPARATOR = '/';
+
+    private final Map<String, Long> lastModified;
+
+    /**
+     * Creates a token.
+     *
+     * @param lastModified The last-modified time, in milliseconds since the epoch, of every resource.
+     */
+    SyncToken(Map<String, Long> lastModified) {
+        this.lastModified = Collections.unmodifiableMap(lastModified);
+    }
+
+    /**
+     * Retrieves the token of a synchronization that has not started, for which every resource is new.
+     *
+     * @return The empty token.
+     */
+    public static SyncToken empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Retrieves the last-modified times of the resources known by the token.
+     *
+     * @return The times in milliseconds since the epoch, keyed by resource name.
+     */
+    public Map<String, Long> getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Retrieves the time of the latest modification known by the token.
+     *
+     * @return The latest last-modified time, or {@code null} if the token is empty.
+     */
+    public Instant getHighWatermark() {
+        return lastModified.values().stream().max(Long::compare).map(Instant::ofEpochMilli).orElse(null);
+    }
+
+    /**
+     * Encodes the token as an opaque string, so it can be stored between synchronizations.
+     *
+     * @return The encoded token.
+     */
+    public String encode() {
+        StringBuilder token = new StringBuilder();
+        for (Map.Entry<String, Long> resource : lastModified.entrySet()) {
+            if (token.length() > 0) token.append(SEPARATOR);
+            token.append(resource.getValue()).append(SEPARATOR).append(resource.getKey());
+        }
+        byte[] bytes = token.toString().getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes a token created by {@link #encode()}.
+     *
+     * @param encoded The encoded token.
+     * @return The token.
+     * @throws IllegalArgumentException If the string is not a valid token.
+     */
+    public static SyncToken decode(String encoded) {
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            if (token.isEmpty()) return EMPTY;
+
+            String[] parts = token.split(String.valueOf(SEPARATOR), -1);
+            if (parts.length % 2 != 0) throw new IllegalArgumentException("Invalid sync token: " + encoded);
+            Map<String, Long> lastModified = new LinkedHashMap<>();
+            for (int i = 0; i < parts.length; i += 2) {
+                lastModified.put(parts[i + 1], Long.parseLong(parts[i]));
+            }
+            return new SyncToken(lastModified);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sync token: " + encoded, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SyncToken{" +
+                "resources=" + lastModified.size() +
+                ", highWatermark=" + getHighWatermark() +
+                '}';
+    }
+}
@@ -0,0 +1,135 @@
+package library.Dao;
+
+import library.model.DatabaseModel;
+import util.XMLFileCreator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Group of modifications of a collection that are sent to the server as a single XUpdate request.
+ * <p>
+ * Every modification selects its target nodes with an XPath expression evaluated on the documents of the collection,
+ * e.g. {@code //book[title = 'Dune']} or {@code doc('/db/Libreria/Novelas/biblioteca-1.xml')/*}. New elements are
+ * serialized from the model objects like {@link XMLFileCreator} does. The modifications are applied in the order
+ * they were added, by {@link QueryManager#update(String, UpdateBatch)}, in a single request. The batch is not atomic:
+ * if a modification fails while the server applies it, the modifications applied before it are kept. Every select
+ * expression is compiled before the batch is sent, so only a batch with a syntax error in an expression is rejected
+ * without modifying anything.
+ * </p>
+ *
+ * <p>
+ * A batch can be reused after it has been applied, but it is not thread-safe.
+ * </p>
+ */
+public final class UpdateBatch {
+
+    private static final String XUPDATE_NAMESPACE = "http://www.xmldb.org/xupdate";
+
+    private final StringBuilder modifications = new StringBuilder();
+    private final List<String> selects = new ArrayList<>();
+
+    /**
+     * Appends elements, serialized from model objects, as the last children of the selected nodes.
+     *
+     * @param select The XPath expression that selects the parent nodes.
+     * @param items The objects to insert.
+     * @return This batch.
+     * @throws IllegalArgumentException If an object cannot be serialized.
+     */
+    public UpdateBatch append(String select, List<? extends DatabaseModel> items) {
+        if (items.isEmpty()) return this;
+        modifications.append("<xu:append select=\"").append(escapeAttribute(select)).append("\">")
+                .append(serialize(items))
+                .append("</xu:append>");
+        selects.add(select);
+        return this;
+    }
+
+    /**
+     * Replaces each selected node with an element serialized from a model object.
+     *
+     * @param select The XPath expression that selects the nodes to replace.
+     * @param item The object that replaces them.
+     * @return This batch.
+     * @throws IllegalArgumentException If the object cannot be serialized.
+     */
+    public UpdateBatch replace(String select, DatabaseModel item) {
+        modifications.append("<xu:replace select=\"").append(escapeAttribute(select)).append("\">")
+                .append(serialize(List.of(item)))
+                .append("</xu:replace>");
+        selects.add(select);
+        return this;
+    }
+
+    /**
+     * Removes the selected nodes.
+     *
+     * @param select The XPath expression that selects the nodes to remove.
+     * @return This batch.
+     */
+    public UpdateBatch remove(String select) {
+        modifications.append("<xu:remove select=\"").append(escapeAttribute(select)).append("\"/>");
+        selects.add(select);
+        return this;
+    }
+
+    /**
+     * Retrieves the number of modifications.
+     *
+     * @return The number of modifications added to the batch.
+     */
+    public int size() {
+        return selects.size();
+    }
+
+    /**
+     * Checks if the batch has no modifications.
+     *
+     * @return {@code true} if no modification was added.
+     */
+    public boolean isEmpty() {
+        return selects.isEmpty();
+    }
+
+    /**
+     * Builds the XUpdate document of the batch.
+     *
+     * @return The {@code xu:modifications} element with every modification.
+     */
+    String toXUpdate() {
+        return "<xu:modifications version=\"1.0\" xmlns:xu=\"" + XUPDATE_NAMESPACE + "\">" + modifications
+                + "</xu:modifications>";
+    }
+
+    /**
+     * Builds a query that contains every select expression of the batch, used to check them before the batch is sent.
+     *
+     * @return The sequence of the select expressions.
+     */
+    String toSelectQuery() {
+        return "(" + String.join("), (", selects) + ")";
+    }
+
+    /**
+     * Serializes model objects as XML elements.
+     *
+     * @param items The objects to serialize.
+     * @return The elements, one per object.
+     */
+    private static String serialize(List<? extends DatabaseModel> items) {
+        StringWriter writer = new StringWriter();
+        try {
+            XMLFileCreator.writeElements(items.iterator(), writer);
+        } catch (IOException | IllegalAccessException e) {
+            throw new IllegalArgumentException("The objects cannot be serialized", e);
+        }
+        return writer.toString();
+    }
+
+    private static String escapeAttribute(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+    }
+}
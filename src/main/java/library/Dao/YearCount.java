@@ -0,0 +1,10 @@
+package library.Dao;
+
+/**
+ * Bucket of a publication-year histogram, computed on the server by an aggregation query.
+ *
+ * @param year The first year of the bucket.
+ * @param count The number of items published in the bucket.
+ */
+public record YearCount(int year, long count) {
+}
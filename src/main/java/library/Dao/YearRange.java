@@ -0,0 +1,11 @@
+package library.Dao;
+
+/**
+ * Earliest and latest publication years of a collection, computed on the server by an aggregation query.
+ *
+ * @param count The number of items with a publication year.
+ * @param min The earliest year, or {@code 0} if {@code count} is {@code 0}.
+ * @param max The latest year, or {@code 0} if {@code count} is {@code 0}.
+ */
+public record YearRange(long count, int min, int max) {
+}
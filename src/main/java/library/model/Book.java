@@ -5,8 +5,11 @@ package library.model;
  * This class provides getters and setters for these attributes.
  */
 public class Book implements DatabaseModel{
+    @Indexed({Indexed.Kind.NGRAM, Indexed.Kind.FULL_TEXT})
     private String title;
+    @Indexed({Indexed.Kind.RANGE, Indexed.Kind.FULL_TEXT})
     private String author;
+    @Indexed
     private int publishYear;
 
     /**
@@ -4,8 +4,11 @@ package library.model;
  * Data class for Essays.
  */
 public class Essay implements DatabaseModel{
+    @Indexed(Indexed.Kind.FULL_TEXT)
     private String title;
+    @Indexed({Indexed.Kind.RANGE, Indexed.Kind.FULL_TEXT})
     private String author;
+    @Indexed
     private int year;
     public Essay(String title, String author, int year) {
         this.title = title;
@@ -0,0 +1,39 @@
+package library.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a {@link DatabaseModel} whose element should be indexed by eXist-db.
+ * <p>
+ * The index definitions are generated by {@code library.service.IndexManager}. Range indexes speed up comparisons
+ * and ordering on the field, e.g. {@code //book[publishYear < 1950]}; NGram indexes speed up substring searches on
+ * text fields, e.g. {@code ngram:contains(title, 'war')}; full-text indexes allow searching the words of text fields
+ * by relevance, e.g. {@code ft:query(title, 'war')}.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Indexed {
+
+    /**
+     * The kinds of index that can be created for a field.
+     */
+    enum Kind {
+        /** Typed index of the field values, used by comparisons and ordering. */
+        RANGE,
+        /** Index of the substrings of the field text, used by {@code ngram:contains}. */
+        NGRAM,
+        /** Lucene index of the words of the field text, used by {@code ft:query} and {@code ft:score}. */
+        FULL_TEXT
+    }
+
+    /**
+     * The indexes to create for the field.
+     *
+     * @return The kinds of index, a range index by default.
+     */
+    Kind[] value() default Kind.RANGE;
+}
@@ -0,0 +1,106 @@
+package library.model;
+
+import java.io.IOException;
+
+/**
+ * Reader and writer of the fields of a {@link DatabaseModel} class, generated at compile time.
+ * <p>
+ * The implementations are generated by {@code library.processor.ModelCodecProcessor} for every model class whose
+ * fields are {@code String} or {@code int} and that has a public constructor taking all of them, in declaration
+ * order, and a getter for each one. They call the constructor and the getters directly, so mapping a query result or
+ * serializing an object does not use reflection. The codecs are found with {@link ModelCodecs#find(Class)}.
+ * </p>
+ *
+ * @param <T> The model type.
+ */
+public interface ModelCodec<T extends DatabaseModel> {
+
+    /**
+     * Receives the fields of an object written by {@link #write(DatabaseModel, FieldWriter)}.
+     */
+    interface FieldWriter {
+        /**
+         * Receives a text field.
+         *
+         * @param name The name of the field.
+         * @param value The value of the field, may be {@code null}.
+         * @throws IOException If the field cannot be written.
+         */
+        void field(String name, String value) throws IOException;
+
+        /**
+         * Receives an integer field.
+         *
+         * @param name The name of the field.
+         * @param value The value of the field.
+         * @throws IOException If the field cannot be written.
+         */
+        void field(String name, int value) throws IOException;
+    }
+
+    /**
+     * Retrieves the model class.
+     *
+     * @return The class read and written by this codec.
+     */
+    Class<T> getType();
+
+    /**
+     * Retrieves the number of fields.
+     *
+     * @return The number of fields of the model class.
+     */
+    int getFieldCount();
+
+    /**
+     * Retrieves the name of a field, which is also the name of its XML element.
+     *
+     * @param index The index of the field, in declaration order.
+     * @return The field name.
+     */
+    String getFieldName(int index);
+
+    /**
+     * Retrieves the type of a field.
+     *
+     * @param index The index of the field, in declaration order.
+     * @return {@code String.class} or {@code int.class}.
+     */
+    Class<?> getFieldType(int index);
+
+    /**
+     * Creates an instance from the raw values of its fields.
+     *
+     * @param values The values, indexed like the fields; {@code null} values leave the default value of the field.
+     * @return The new instance.
+     */
+    T create(String[] values);
+
+    /**
+     * Creates an instance from values that are already decoded: text fields are read from {@code values} and
+     * {@code int} fields from {@code intValues}, so they are not parsed again.
+     *
+     * @param values The values of the text fields, indexed like the fields; {@code null} values are kept as they are.
+     * @param intValues The values of the {@code int} fields, indexed like the fields.
+     * @return The new instance.
+     */
+    T create(String[] values, int[] intValues);
+
+    /**
+     * Reads the value of a field from an instance.
+     *
+     * @param item The instance to read from.
+     * @param index The index of the field.
+     * @return The value of the field; {@code int} fields are boxed.
+     */
+    Object getValue(T item, int index);
+
+    /**
+     * Writes every field of an instance, in declaration order.
+     *
+     * @param item The instance to write.
+     * @param writer Receives the fields.
+     * @throws IOException If a field cannot be written.
+     */
+    void write(T item, FieldWriter writer) throws IOException;
+}
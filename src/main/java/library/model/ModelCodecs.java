@@ -0,0 +1,76 @@
+package library.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of the generated {@link ModelCodec}s, loaded once with {@link ServiceLoader}.
+ * <p>
+ * The codecs are registered in {@code META-INF/services/library.model.ModelCodec} by the annotation processor.
+ * Classes without a codec keep using the reflective mapping. The codecs can be disabled with the system property
+ * {@code library.codecs=false}, e.g. to compare both paths in a benchmark.
+ * </p>
+ */
+public final class ModelCodecs {
+
+    private static final Logger logger = Logger.getLogger(ModelCodecs.class.getName());
+
+    private static final Map<Class<?>, ModelCodec<?>> codecs = loadCodecs();
+
+    private ModelCodecs() {
+    }
+
+    /**
+     * Retrieves the codec of a model class.
+     *
+     * @param type The model class.
+     * @param <T> The model type.
+     * @return The generated codec, or {@code null} if the class has none.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends DatabaseModel> ModelCodec<T> find(Class<T> type) {
+        return (ModelCodec<T>) codecs.get(type);
+    }
+
+    /**
+     * Retrieves the codec of any class, e.g. the class of an object being serialized.
+     *
+     * @param type The class.
+     * @return The generated codec, or {@code null} if the class is not a model with a codec.
+     */
+    public static ModelCodec<?> forClass(Class<?> type) {
+        return codecs.get(type);
+    }
+
+    /**
+     * Parses the raw value of an {@code int} field like the reflective mapping: surrounding whitespace is ignored,
+     * and an invalid value is logged and leaves the default value. Used by the generated codecs.
+     *
+     * @param value The raw value, may be {@code null}.
+     * @param fieldName The name of the field, for the log message.
+     * @return The parsed value, or {@code 0} if the value is missing or invalid.
+     */
+    public static int parseInt(String value, String fieldName) {
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Level.SEVERE, "Error setting field value: " + fieldName, e);
+            return 0;
+        }
+    }
+
+    private static Map<Class<?>, ModelCodec<?>> loadCodecs() {
+        Map<Class<?>, ModelCodec<?>> loaded = new HashMap<>();
+        if (!Boolean.parseBoolean(System.getProperty("library.codecs", "true"))) return loaded;
+
+        for (ModelCodec<?> codec : ServiceLoader.load(ModelCodec.class, ModelCodecs.class.getClassLoader())) {
+            loaded.put(codec.getType(), codec);
+        }
+        logger.fine(() -> "Loaded model codecs: " + loaded.keySet());
+        return loaded;
+    }
+}
@@ -5,7 +5,9 @@ package library.model;
  * This class provides getters and setters for the poem's title and author.
  */
 public class Poem implements DatabaseModel {
+    @Indexed({Indexed.Kind.NGRAM, Indexed.Kind.FULL_TEXT})
     private String title;
+    @Indexed({Indexed.Kind.RANGE, Indexed.Kind.FULL_TEXT})
     private String author;
 
     /**
@@ -0,0 +1,277 @@
+package library.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor that generates a {@code library.model.ModelCodec} for every {@code DatabaseModel} class of
+ * the compiled sources.
+ * <p>
+ * For a model {@code Book}, the class {@code BookCodec} is generated in the same package. It creates instances with
+ * the public constructor that takes every field in declaration order, with the same names, and reads the fields with
+ * their getters, so neither reflection nor {@code setAccessible} are needed. The codecs are registered in
+ * {@code META-INF/services/library.model.ModelCodec}.
+ * </p>
+ *
+ * <p>
+ * Only classes whose instance fields are all {@code String} or {@code int} are supported, like the reflective
+ * mapping. Classes without the constructor or a getter are skipped with a note and keep using reflection.
+ * The processor runs in the second compilation of the build, after it has been compiled by the first one.
+ * </p>
+ */
+@SupportedAnnotationTypes("*")
+public class ModelCodecProcessor extends AbstractProcessor {
+
+    private static final String MODEL_INTERFACE = "library.model.DatabaseModel";
+    private static final String CODEC_INTERFACE = "library.model.ModelCodec";
+    private static final String SERVICE_FILE = "META-INF/services/" + CODEC_INTERFACE;
+
+    private final Set<String> codecs = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement model = processingEnv.getElementUtils().getTypeElement(MODEL_INTERFACE);
+        if (model == null) return false;
+
+        if (roundEnv.processingOver()) {
+            if (!codecs.isEmpty()) writeServiceFile();
+            return false;
+        }
+
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            if (type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT)
+                    && type.getModifiers().contains(Modifier.PUBLIC)
+                    && processingEnv.getTypeUtils().isAssignable(type.asType(), model.asType())) {
+                generateCodec(type);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates the codec of a model class, if the class is supported.
+     *
+     * @param type The model class.
+     */
+    private void generateCodec(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) continue;
+            if (!isString(field.asType()) && field.asType().getKind() != TypeKind.INT) {
+                skip(type, "field " + field.getSimpleName() + " is not a String or an int");
+                return;
+            }
+            fields.add(field);
+        }
+
+        if (!hasConstructor(type, fields)) {
+            skip(type, "there is no public constructor taking every field in declaration order");
+            return;
+        }
+        List<String> getters = new ArrayList<>();
+        for (VariableElement field : fields) {
+            String getter = findGetter(type, field);
+            if (getter == null) {
+                skip(type, "field " + field.getSimpleName() + " has no public getter");
+                return;
+            }
+            getters.add(getter);
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String codecName = type.getSimpleName() + "Codec";
+        String qualifiedName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(codecSource(packageName, codecName, type.getSimpleName().toString(), fields, getters));
+            codecs.add(qualifiedName);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot generate " + qualifiedName + ": " + e.getMessage(), type);
+        }
+    }
+
+    /**
+     * Builds the source of a codec.
+     *
+     * @param packageName The package of the model class.
+     * @param codecName The simple name of the codec.
+     * @param modelName The simple name of the model class.
+     * @param fields The fields of the model class.
+     * @param getters The getters of the fields.
+     * @return The Java source of the codec.
+     */
+    private String codecSource(String packageName, String codecName, String modelName,
+                               List<VariableElement> fields, List<String> getters) {
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) source.append("package ").append(packageName).append(";\n\n");
+        source.append("import java.io.IOException;\n")
+                .append("import javax.annotation.processing.Generated;\n")
+                .append("import library.model.ModelCodec;\n")
+                .append("import library.model.ModelCodecs;\n\n")
+                .append("/**\n * Codec of {@link ").append(modelName).append("}, generated from its fields.\n */\n")
+                .append("@Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(codecName).append(" implements ModelCodec<")
+                .append(modelName).append("> {\n\n");
+
+        source.append("    private static final String[] FIELD_NAMES = {");
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) source.append(", ");
+            source.append('"').append(fields.get(i).getSimpleName()).append('"');
+        }
+        source.append("};\n\n");
+
+        source.append("    private static final Class<?>[] FIELD_TYPES = {");
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) source.append(", ");
+            source.append(isString(fields.get(i).asType()) ? "String.class" : "int.class");
+        }
+        source.append("};\n\n");
+
+        source.append("    @Override\n    public Class<").append(modelName).append("> getType() {\n")
+                .append("        return ").append(modelName).append(".class;\n    }\n\n")
+                .append("    @Override\n    public int getFieldCount() {\n")
+                .append("        return FIELD_NAMES.length;\n    }\n\n")
+                .append("    @Override\n    public String getFieldName(int index) {\n")
+                .append("        return FIELD_NAMES[index];\n    }\n\n")
+                .append("    @Override\n    public Class<?> getFieldType(int index) {\n")
+                .append("        return FIELD_TYPES[index];\n    }\n\n");
+
+        source.append("    @Override\n    public ").append(modelName).append(" create(String[] values) {\n")
+                .append("        return new ").append(modelName).append('(');
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) source.append(",\n                ");
+            if (isString(fields.get(i).asType())) {
+                source.append("values[").append(i).append(']');
+            } else {
+                source.append("ModelCodecs.parseInt(values[").append(i).append("], \"")
+                        .append(fields.get(i).getSimpleName()).append("\")");
+            }
+        }
+        source.append(");\n    }\n\n");
+
+        source.append("    @Override\n    public ").append(modelName)
+                .append(" create(String[] values, int[] intValues) {\n")
+                .append("        return new ").append(modelName).append('(');
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) source.append(",\n                ");
+            source.append(isString(fields.get(i).asType()) ? "values[" : "intValues[").append(i).append(']');
+        }
+        source.append(");\n    }\n\n");
+
+        source.append("    @Override\n    public Object getValue(").append(modelName).append(" item, int index) {\n")
+                .append("        switch (index) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            source.append("            case ").append(i).append(":\n")
+                    .append("                return item.").append(getters.get(i)).append("();\n");
+        }
+        source.append("            default:\n")
+                .append("                throw new IndexOutOfBoundsException(\"Field index: \" + index);\n")
+                .append("        }\n    }\n\n");
+
+        source.append("    @Override\n    public void write(").append(modelName)
+                .append(" item, FieldWriter writer) throws IOException {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            source.append("        writer.field(\"").append(fields.get(i).getSimpleName()).append("\", item.")
+                    .append(getters.get(i)).append("());\n");
+        }
+        return source.append("    }\n}\n").toString();
+    }
+
+    /**
+     * Checks if a class has a public constructor whose parameters match its fields, by type and name.
+     *
+     * @param type The model class.
+     * @param fields The fields of the class.
+     * @return {@code true} if the constructor exists.
+     */
+    private boolean hasConstructor(TypeElement type, List<VariableElement> fields) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PUBLIC)) continue;
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (parameters.size() != fields.size()) continue;
+
+            boolean matches = true;
+            for (int i = 0; i < fields.size() && matches; i++) {
+                matches = parameters.get(i).getSimpleName().contentEquals(fields.get(i).getSimpleName())
+                        && processingEnv.getTypeUtils().isSameType(parameters.get(i).asType(), fields.get(i).asType());
+            }
+            if (matches) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the public getter of a field, named {@code get} followed by the capitalized field name.
+     *
+     * @param type The model class.
+     * @param field The field.
+     * @return The name of the getter, or {@code null} if there is none.
+     */
+    private String findGetter(TypeElement type, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        String getter = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals(getter) && method.getParameters().isEmpty()
+                    && method.getModifiers().contains(Modifier.PUBLIC)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                return getter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the service file that registers the generated codecs.
+     */
+    private void writeServiceFile() {
+        Filer filer = processingEnv.getFiler();
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = file.openWriter()) {
+                for (String codec : codecs) {
+                    writer.write(codec);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private boolean isString(TypeMirror type) {
+        return type.toString().equals("java.lang.String");
+    }
+
+    private void skip(Element type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "No codec generated for " + type + ": " + reason, type);
+    }
+}
@@ -0,0 +1,230 @@
+package library.service;
+
+import library.model.XMLCollection;
+import org.xmldb.api.base.Collection;
+import org.xmldb.api.modules.XMLResource;
+import util.XMLFileCreator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Uploads model objects straight into an eXist-db collection, without staging XML files on disk.
+ * <p>
+ * The input is split into batches of a configurable size. Every batch is serialized with {@link XMLFileCreator} and
+ * stored as its own XML resource by one of the uploader threads, so large inputs are ingested in parallel. Only a
+ * bounded number of batches are kept in memory at a time, which allows streaming millions of records.
+ * </p>
+ *
+ * <p>
+ * Resources are named {@code <rootName>-<batch number>.xml} and contain the same structure as the files written by
+ * {@link XMLFileCreator#createXmlFile(List, String, String)}, so the DAO queries work on them unchanged. Batches are
+ * numbered after the highest number already used in the collection, so a second load adds new resources instead of
+ * replacing the ones of the first; a batch whose resource exists anyway, e.g. written by a concurrent load, fails the
+ * upload instead of overwriting it.
+ * </p>
+ *
+ * <p>
+ * Every uploader thread borrows a handle of the collection from the pool, so the number of threads is capped at the
+ * pool size per collection.
+ * </p>
+ */
+public class BulkLoader {
+
+    /**
+     * Receives the progress of an upload. It is called from the uploader threads, so it must be thread-safe.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called every time a batch has been stored.
+         *
+         * @param itemsStored The total number of items stored so far.
+         * @param batchesStored The total number of batches stored so far.
+         */
+        void onProgress(long itemsStored, long batchesStored);
+    }
+
+    private static final Pattern BATCH_NUMBER = Pattern.compile("-(\\d+)\\.xml");
+
+    private final ExistDatabaseConnection dbConnection;
+    private final int batchSize;
+    private final int threads;
+
+    /**
+     * Creates a new loader.
+     *
+     * @param dbConnection The connection to the eXist-db database.
+     * @param batchSize The number of items stored in each resource.
+     * @param threads The number of uploader threads, at most the pool size per collection of the connection.
+     */
+    public BulkLoader(ExistDatabaseConnection dbConnection, int batchSize, int threads) {
+        if (batchSize <= 0 || threads <= 0) throw new IllegalArgumentException("Batch size and threads must be positive");
+        this.dbConnection = dbConnection;
+        this.batchSize = batchSize;
+        this.threads = Math.min(threads, dbConnection.getMaxHandlesPerCollection());
+    }
+
+    /**
+     * Uploads the items of an {@link XMLCollection}, using its name as the root element.
+     *
+     * @param collectionName The name of the target collection, which is created if it does not exist.
+     * @param collection The items to upload.
+     * @param listener Receives the upload progress, may be {@code null}.
+     * @param <T> The type of the items.
+     * @return The number of items stored.
+     * @throws Exception If any batch cannot be stored.
+     */
+    public <T> long load(String collectionName, XMLCollection<T> collection, ProgressListener listener)
+            throws Exception {
+        return load(collectionName, collection.getName(), collection.getCollectionList().stream(), listener);
+    }
+
+    /**
+     * Uploads a stream of items. The stream is consumed lazily, as batches are handed to the uploader threads, and
+     * closed when the upload ends.
+     *
+     * @param collectionName The name of the target collection, which is created if it does not exist.
+     * @param rootName The name of the root element of every resource, also used to name the resources.
+     * @param items The items to upload.
+     * @param listener Receives the upload progress, may be {@code null}.
+     * @param <T> The type of the items.
+     * @return The number of items stored.
+     * @throws Exception If any batch cannot be stored; the upload stops at the first failure.
+     */
+    public <T> long load(String collectionName, String rootName, Stream<T> items, ProgressListener listener)
+            throws Exception {
+        try (items) {
+            return upload(collectionName, rootName, items, listener);
+        }
+    }
+
+    /**
+     * Uploads a stream of items with the uploader threads.
+     *
+     * @param collectionName The name of the target collection, which is created if it does not exist.
+     * @param rootName The name of the root element of every resource, also used to name the resources.
+     * @param items The items to upload.
+     * @param listener Receives the upload progress, may be {@code null}.
+     * @param <T> The type of the items.
+     * @return The number of items stored.
+     * @throws Exception If any batch cannot be stored.
+     */
+    private <T> long upload(String collectionName, String rootName, Stream<T> items, ProgressListener listener)
+            throws Exception {
+        int batchNumber;
+        try (Collection collection = dbConnection.getOrCreateCollection(collectionName)) {
+            batchNumber = lastBatchNumber(collection, rootName);
+        }
+
+        ExecutorService uploaders = Executors.newFixedThreadPool(threads);
+        // Bounds the batches waiting in memory to two per uploader thread.
+        Semaphore pending = new Semaphore(threads * 2);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicLong itemsStored = new AtomicLong();
+        AtomicLong batchesStored = new AtomicLong();
+
+        try {
+            Iterator<T> iterator = items.iterator();
+            while (iterator.hasNext() && failure.get() == null) {
+                List<T> batch = new ArrayList<>(batchSize);
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    batch.add(iterator.next());
+                }
+
+                String resourceName = rootName + "-" + (++batchNumber) + ".xml";
+                pending.acquire();
+                uploaders.execute(() -> {
+                    try {
+                        if (failure.get() != null) return;
+                        storeBatch(collectionName, resourceName, rootName, batch);
+
+                        long stored = itemsStored.addAndGet(batch.size());
+                        long batches = batchesStored.incrementAndGet();
+                        if (listener != null) listener.onProgress(stored, batches);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+        } finally {
+            uploaders.shutdown();
+            uploaders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        if (failure.get() != null) {
+            throw new Exception("Bulk upload to " + collectionName + " failed after "
+                    + itemsStored.get() + " items", failure.get());
+        }
+        return itemsStored.get();
+    }
+
+    /**
+     * Finds the highest batch number of the resources of a root name in a collection.
+     *
+     * @param collection The target collection.
+     * @param rootName The root name of the resources.
+     * @return The highest number of a {@code <rootName>-<number>.xml} resource, or {@code 0} if there is none.
+     * @throws Exception If the resources cannot be listed.
+     */
+    private static int lastBatchNumber(Collection collection, String rootName) throws Exception {
+        int last = 0;
+        for (String name : collection.listResources()) {
+            if (!name.startsWith(rootName)) continue;
+            Matcher matcher = BATCH_NUMBER.matcher(name.substring(rootName.length()));
+            if (matcher.matches()) {
+                try {
+                    last = Math.max(last, Integer.parseInt(matcher.group(1)));
+                } catch (NumberFormatException e) {
+                    // A number too large for a batch is not one of ours.
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Serializes a batch and stores it as a new XML resource.
+     *
+     * @param collectionName The name of the target collection.
+     * @param resourceName The name of the new resource.
+     * @param rootName The name of the root element.
+     * @param batch The items of the batch.
+     * @param <T> The type of the items.
+     * @throws Exception If the batch cannot be serialized or stored, or the resource already exists.
+     */
+    private <T> void storeBatch(String collectionName, String resourceName, String rootName, List<T> batch)
+            throws Exception {
+        String content = XMLFileCreator.createXmlString(batch, rootName);
+
+        boolean exists;
+        try (PooledCollection handle = dbConnection.borrowCollection(collectionName)) {
+            try {
+                Collection collection = handle.getCollection();
+                exists = collection.getResource(resourceName) != null;
+                if (!exists) {
+                    XMLResource resource =
+                            (XMLResource) collection.createResource(resourceName, XMLResource.RESOURCE_TYPE);
+                    resource.setContent(content);
+                    collection.storeResource(resource);
+                }
+            } catch (Exception e) {
+                handle.invalidate();
+                throw e;
+            }
+        }
+        if (exists) throw new Exception("The resource " + resourceName + " already exists in " + collectionName);
+    }
+}
@@ -0,0 +1,250 @@
+package library.service;
+
+import org.xmldb.api.base.Collection;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded, thread-safe pool of open {@link Collection} handles, grouped by collection name.
+ * <p>
+ * Opening a collection authenticates and resolves the collection on the server, so the pool keeps the handles open
+ * and hands them out again for the following queries. Every collection has its own limit of handles; borrowers wait
+ * for a free handle when the limit is reached.
+ * </p>
+ *
+ * <p>
+ * Idle handles are validated before being reused and closed by a background task when they have been idle for
+ * too long. The statistics of the pool can be read with {@link #getMetrics()}.
+ * </p>
+ */
+public class CollectionPool implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(CollectionPool.class.getName());
+
+    /**
+     * Opens a new collection for the pool.
+     */
+    @FunctionalInterface
+    public interface CollectionFactory {
+        /**
+         * Opens the collection with the specified name.
+         *
+         * @param collectionName The name of the collection.
+         * @return The open collection.
+         * @throws Exception If the collection cannot be opened.
+         */
+        Collection open(String collectionName) throws Exception;
+    }
+
+    private final CollectionFactory factory;
+    private final int maxPerCollection;
+    private final long maxIdleNanos;
+    private final long validationIntervalNanos;
+    private final long borrowTimeoutMillis;
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Creates a new pool.
+     *
+     * @param factory The factory used to open new collections.
+     * @param maxPerCollection The maximum number of handles per collection.
+     * @param maxIdleTime The time after which an idle handle is closed.
+     * @param validationInterval The idle time after which a handle is checked against the server before reuse.
+     * @param borrowTimeout The maximum time to wait for a handle when the pool is exhausted.
+     */
+    public CollectionPool(CollectionFactory factory, int maxPerCollection, Duration maxIdleTime,
+                          Duration validationInterval, Duration borrowTimeout) {
+        if (maxPerCollection <= 0) throw new IllegalArgumentException("The pool size must be positive");
+        this.factory = factory;
+        this.maxPerCollection = maxPerCollection;
+        this.maxIdleNanos = maxIdleTime.toNanos();
+        this.validationIntervalNanos = validationInterval.toNanos();
+        this.borrowTimeoutMillis = borrowTimeout.toMillis();
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "collection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, maxIdleTime.toMillis() / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a handle of the specified collection, reusing an idle one when possible.
+     *
+     * @param collectionName The name of the collection.
+     * @return A borrowed handle, which must be closed to return it to the pool.
+     * @throws Exception If the pool is exhausted for longer than the borrow timeout or the collection cannot be opened.
+     */
+    public PooledCollection borrow(String collectionName) throws Exception {
+        if (closed) throw new IllegalStateException("The collection pool is closed");
+
+        Slot slot = slots.computeIfAbsent(collectionName, name -> new Slot(maxPerCollection));
+        if (!slot.permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            timeouts.incrementAndGet();
+            throw new Exception("Timed out waiting for a handle of the collection: " + collectionName);
+        }
+
+        try {
+            PooledCollection handle;
+            // Most recently used handles are at the head of the deque.
+            while ((handle = slot.idle.pollFirst()) != null) {
+                if (validate(handle)) {
+                    reused.incrementAndGet();
+                    break;
+                }
+                discard(handle);
+                invalidated.incrementAndGet();
+            }
+
+            if (handle == null) {
+                handle = new PooledCollection(this, collectionName, factory.open(collectionName));
+                created.incrementAndGet();
+            }
+            handle.markBorrowed();
+            active.incrementAndGet();
+            return handle;
+        } catch (Exception e) {
+            slot.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed handle to the pool. Called by {@link PooledCollection#close()}.
+     *
+     * @param handle The handle to return.
+     */
+    void release(PooledCollection handle) {
+        active.decrementAndGet();
+        Slot slot = slots.get(handle.getCollectionName());
+
+        if (closed || !handle.isValid()) {
+            if (!handle.isValid()) invalidated.incrementAndGet();
+            discard(handle);
+        } else {
+            handle.touch();
+            slot.idle.offerFirst(handle);
+            // The pool may have been closed, and its idle handles drained, while the handle was being queued.
+            if (closed && slot.idle.remove(handle)) discard(handle);
+        }
+        slot.permits.release();
+    }
+
+    /**
+     * Retrieves the maximum number of handles of a collection that can be borrowed at the same time.
+     *
+     * @return The pool size per collection.
+     */
+    public int getMaxPerCollection() {
+        return maxPerCollection;
+    }
+
+    /**
+     * Retrieves a snapshot of the statistics of the pool.
+     *
+     * @return The current {@link PoolMetrics}.
+     */
+    public PoolMetrics getMetrics() {
+        int idle = 0;
+        for (Slot slot : slots.values()) {
+            idle += slot.idle.size();
+        }
+        return new PoolMetrics(created.get(), reused.get(), evicted.get(), invalidated.get(), timeouts.get(),
+                active.get(), idle);
+    }
+
+    /**
+     * Closes the pool and every idle handle. Borrowed handles are closed when they are returned.
+     * The pool is marked closed before the idle handles are drained, so a handle returned meanwhile is either
+     * drained here or closed by {@link #release(PooledCollection)}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        for (Slot slot : slots.values()) {
+            PooledCollection handle;
+            while ((handle = slot.idle.pollFirst()) != null) {
+                discard(handle);
+            }
+        }
+    }
+
+    /**
+     * Checks if an idle handle can be reused. Handles that have been idle for longer than the validation interval
+     * are checked with a round trip to the server.
+     *
+     * @param handle The handle to check.
+     * @return {@code true} if the handle is healthy.
+     */
+    private boolean validate(PooledCollection handle) {
+        try {
+            Collection collection = handle.getCollectionUnchecked();
+            if (!handle.isValid() || !collection.isOpen()) return false;
+
+            if (System.nanoTime() - handle.getLastValidated() > validationIntervalNanos) {
+                collection.getResourceCount();
+                handle.markValidated();
+            }
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Discarding broken collection handle", e);
+            return false;
+        }
+    }
+
+    /**
+     * Closes the idle handles that have not been used for longer than the maximum idle time.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (Slot slot : slots.values()) {
+            for (PooledCollection handle : slot.idle) {
+                // remove() fails if a borrower took the handle in the meantime.
+                if (now - handle.getLastUsed() > maxIdleNanos && slot.idle.remove(handle)) {
+                    discard(handle);
+                    evicted.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void discard(PooledCollection handle) {
+        handle.closeCollection();
+    }
+
+    /**
+     * Idle handles and borrow permits of a single collection.
+     */
+    private static class Slot {
+        final Semaphore permits;
+        final ConcurrentLinkedDeque<PooledCollection> idle = new ConcurrentLinkedDeque<>();
+
+        Slot(int size) {
+            this.permits = new Semaphore(size, true);
+        }
+    }
+}
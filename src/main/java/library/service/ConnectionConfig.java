@@ -0,0 +1,148 @@
+package library.service;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the connection to eXist-db used by {@link ExistDatabaseConnection}.
+ * <p>
+ * The database can be reached through the XML-RPC server ({@link Mode#REMOTE}) or started inside the same JVM
+ * ({@link Mode#EMBEDDED}). The embedded mode skips the network stack and serialization of XML-RPC, and allows
+ * running tests and benchmarks without an external server.
+ * </p>
+ *
+ * <p>
+ * The default settings can be changed with the system properties {@code exist.mode} ({@code remote} or
+ * {@code embedded}), {@code exist.uri}, {@code exist.username}, {@code exist.password}, {@code exist.dataDir}
+ * and {@code exist.config}.
+ * </p>
+ */
+public class ConnectionConfig {
+
+    /**
+     * How the database is reached.
+     */
+    public enum Mode {
+        /** Through the XML-RPC API of a running eXist-db server. */
+        REMOTE,
+        /** With a database instance started inside this JVM. */
+        EMBEDDED
+    }
+
+    private static final String DEFAULT_URI = "xmldb:exist://localhost:8080/exist/xmlrpc";
+    private static final String EMBEDDED_URI = "xmldb:exist://";
+
+    // NOTE: This is for testing purposes only, having credentials in plain files is a bad practice.
+    // Instead you can use: Environment variables or external configuration files
+    private static final String DEFAULT_USERNAME = "admin";
+    private static final String DEFAULT_PASSWORD = "";
+    private static final String DEFAULT_DATA_DIR = "exist-data";
+
+    private final Mode mode;
+    private final String uri;
+    private final String username;
+    private final String password;
+    private final Path dataDir;
+    private final Path configFile;
+
+    private ConnectionConfig(Mode mode, String uri, String username, String password, Path dataDir, Path configFile) {
+        this.mode = mode;
+        this.uri = uri;
+        this.username = username;
+        this.password = password;
+        this.dataDir = dataDir;
+        this.configFile = configFile;
+    }
+
+    /**
+     * Creates the settings of a connection to an eXist-db server.
+     *
+     * @param uri The XML:DB URI of the server, e.g. xmldb:exist://localhost:8080/exist/xmlrpc.
+     * @param username The user name.
+     * @param password The password.
+     * @return The remote connection settings.
+     */
+    public static ConnectionConfig remote(String uri, String username, String password) {
+        return new ConnectionConfig(Mode.REMOTE, uri, username, password, null, null);
+    }
+
+    /**
+     * Creates the settings of an embedded database.
+     *
+     * @param dataDir The directory where the database files are stored, created if it does not exist.
+     * @param configFile The eXist-db configuration file, or {@code null} to use the bundled minimal configuration.
+     * @return The embedded database settings.
+     */
+    public static ConnectionConfig embedded(Path dataDir, Path configFile) {
+        return new ConnectionConfig(Mode.EMBEDDED, EMBEDDED_URI, DEFAULT_USERNAME, DEFAULT_PASSWORD,
+                dataDir.toAbsolutePath(), configFile != null ? configFile.toAbsolutePath() : null);
+    }
+
+    /**
+     * Creates the settings from the system properties, falling back to the local XML-RPC server.
+     *
+     * @return The default connection settings.
+     */
+    public static ConnectionConfig fromSystemProperties() {
+        String username = System.getProperty("exist.username", DEFAULT_USERNAME);
+        String password = System.getProperty("exist.password", DEFAULT_PASSWORD);
+
+        if ("embedded".equalsIgnoreCase(System.getProperty("exist.mode"))) {
+            String config = System.getProperty("exist.config");
+            ConnectionConfig embedded = embedded(Path.of(System.getProperty("exist.dataDir", DEFAULT_DATA_DIR)),
+                    config != null ? Path.of(config) : null);
+            return new ConnectionConfig(Mode.EMBEDDED, EMBEDDED_URI, username, password,
+                    embedded.dataDir, embedded.configFile);
+        }
+        return remote(System.getProperty("exist.uri", DEFAULT_URI), username, password);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Retrieves the URI prepended to the collection names, e.g. /db/Libreria.
+     *
+     * @return The XML:DB URI of the database.
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Retrieves the data directory of the embedded database.
+     *
+     * @return The data directory, or {@code null} in remote mode.
+     */
+    public Path getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * Retrieves the configuration file of the embedded database.
+     *
+     * @return The configuration file, or {@code null} to use the bundled one.
+     */
+    public Path getConfigFile() {
+        return configFile;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionConfig{" +
+                "mode=" + mode +
+                ", uri='" + uri + '\'' +
+                ", username='" + username + '\'' +
+                ", dataDir=" + dataDir +
+                ", configFile=" + configFile +
+                '}';
+    }
+}
@@ -1,36 +1,64 @@
 package library.service;
 
+import org.exist.xmldb.DatabaseInstanceManager;
 import org.xmldb.api.DatabaseManager;
 import org.xmldb.api.base.Collection;
 import org.xmldb.api.base.Database;
 import org.xmldb.api.base.XMLDBException;
+import org.xmldb.api.modules.CollectionManagementService;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Singleton class for handling the connection to the eXist-db database.
  * Provides methods to interact with multiple collections within the database.
+ * <p>
+ * The connection uses the XML-RPC server by default. It can also start an embedded database inside the JVM,
+ * see {@link #configure(ConnectionConfig)}.
+ * </p>
  */
 public class ExistDatabaseConnection {
 
-    private static final String URI = "xmldb:exist://localhost:8080/exist/xmlrpc";
+    private static final String EMBEDDED_CONFIG_RESOURCE = "/embedded/conf.xml";
 
-    // NOTE: This is for testing purposes only, having credentials in plain files is a bad practice.
-    // Instead you can use: Environment variables or external configuration files
-    private static final String USERNAME = "admin";
-    private static final String PASSWORD = "";
+    // Limits of the pool of open collection handles.
+    private static final int MAX_HANDLES_PER_COLLECTION = 8;
+    private static final Duration MAX_IDLE_TIME = Duration.ofMinutes(5);
+    private static final Duration VALIDATION_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration BORROW_TIMEOUT = Duration.ofSeconds(30);
 
 
     // Static variable to hold the single instance of the connection
     private static ExistDatabaseConnection instance;
+    // Settings used when the instance is created
+    private static ConnectionConfig config = ConnectionConfig.fromSystemProperties();
 
     private Database database;
+    private final ConnectionConfig settings;
+    private final CollectionPool collectionPool;
 
     // Private constructor to prevent instantiation from outside the class
-    private ExistDatabaseConnection() throws Exception {
+    private ExistDatabaseConnection(ConnectionConfig settings) throws Exception {
+        this.settings = settings;
         String driver = "org.exist.xmldb.DatabaseImpl";
         Class<?> cl = Class.forName(driver);
         database = (Database) cl.getDeclaredConstructor().newInstance();
         database.setProperty("create-database", "true");
+        if (settings.getMode() == ConnectionConfig.Mode.EMBEDDED) {
+            configureEmbedded(settings);
+        }
         DatabaseManager.registerDatabase(database);
+
+        collectionPool = new CollectionPool(this::getCollection, MAX_HANDLES_PER_COLLECTION,
+                MAX_IDLE_TIME, VALIDATION_INTERVAL, BORROW_TIMEOUT);
+
+        if (settings.getMode() == ConnectionConfig.Mode.EMBEDDED) {
+            // The embedded database starts when the first collection is requested.
+            getCollection("/db").close();
+        }
     }
 
     /**
@@ -42,11 +70,34 @@ public class ExistDatabaseConnection {
      */
     public static synchronized ExistDatabaseConnection getInstance() throws Exception {
         if (instance == null) {
-            instance = new ExistDatabaseConnection();
+            instance = new ExistDatabaseConnection(config);
         }
         return instance;
     }
 
+    /**
+     * Sets the connection settings used to create the singleton instance, e.g. to use an embedded database.
+     * It must be called before {@link #getInstance()}, or after {@link #close()}.
+     *
+     * @param connectionConfig the connection settings.
+     * @throws IllegalStateException if the instance has already been created.
+     */
+    public static synchronized void configure(ConnectionConfig connectionConfig) {
+        if (instance != null) {
+            throw new IllegalStateException("The database connection is already open");
+        }
+        config = connectionConfig;
+    }
+
+    /**
+     * Retrieves the settings of this connection.
+     *
+     * @return the connection settings.
+     */
+    public ConnectionConfig getConfig() {
+        return settings;
+    }
+
     /**
      * Retrieves a collection from the database based on the provided collection name.
      *
@@ -55,7 +106,8 @@ public class ExistDatabaseConnection {
      * @throws Exception if there is an error retrieving the collection.
      */
     public Collection getCollection(String collectionName) throws Exception {
-        Collection collection = DatabaseManager.getCollection(URI + collectionName, USERNAME, PASSWORD);
+        Collection collection = DatabaseManager.getCollection(settings.getUri() + collectionName,
+                settings.getUsername(), settings.getPassword());
         if (collection == null) {
             throw new Exception("Could not get the collection: " + collectionName);
         }
@@ -63,13 +115,122 @@ public class ExistDatabaseConnection {
     }
 
     /**
-     * Closes the database connection.
+     * Retrieves a collection from the database, creating it and any missing parent collection.
+     *
+     * @param collectionName the absolute name of the collection, e.g. /db/Libreria/Novelas.
+     * @return the collection object.
+     * @throws Exception if there is an error retrieving or creating the collection.
+     */
+    public Collection getOrCreateCollection(String collectionName) throws Exception {
+        if (collectionName.length() > 1 && collectionName.endsWith("/")) {
+            return getOrCreateCollection(collectionName.substring(0, collectionName.length() - 1));
+        }
+
+        Collection collection = DatabaseManager.getCollection(settings.getUri() + collectionName,
+                settings.getUsername(), settings.getPassword());
+        if (collection != null) return collection;
+
+        int separator = collectionName.lastIndexOf('/');
+        if (separator <= 0) throw new Exception("Could not get the collection: " + collectionName);
+
+        try (Collection parent = getOrCreateCollection(collectionName.substring(0, separator))) {
+            CollectionManagementService service =
+                    (CollectionManagementService) parent.getService("CollectionManagementService", "1.0");
+            return service.createCollection(collectionName.substring(separator + 1));
+        }
+    }
+
+    /**
+     * Borrows an open handle of a collection from the connection pool.
+     * The handle must be closed after use to return it to the pool, which keeps the collection open for the
+     * following queries.
+     *
+     * @param collectionName the name of the collection to retrieve.
+     * @return a pooled handle of the collection.
+     * @throws Exception if the pool is exhausted or there is an error retrieving the collection.
+     */
+    public PooledCollection borrowCollection(String collectionName) throws Exception {
+        return collectionPool.borrow(collectionName);
+    }
+
+    /**
+     * Retrieves the maximum number of handles of one collection that can be borrowed at the same time.
+     *
+     * @return the pool size per collection.
+     */
+    public int getMaxHandlesPerCollection() {
+        return MAX_HANDLES_PER_COLLECTION;
+    }
+
+    /**
+     * Retrieves the statistics of the pool of collection handles.
+     *
+     * @return a snapshot of the pool metrics.
+     */
+    public PoolMetrics getPoolMetrics() {
+        return collectionPool.getMetrics();
+    }
+
+    /**
+     * Closes the database connection. An embedded database is shut down.
+     * After closing, {@link #getInstance()} creates a new connection.
      *
      * @throws XMLDBException if there is an error closing the connection.
      */
     public void close() throws XMLDBException {
         // Currently, eXist-db's Java API does not provide a direct method to close the connection
         // However, it is good practice to release resources when done
-        DatabaseManager.deregisterDatabase(database);
+        collectionPool.close();
+        try {
+            if (settings.getMode() == ConnectionConfig.Mode.EMBEDDED) {
+                shutdownEmbedded();
+            }
+        } finally {
+            DatabaseManager.deregisterDatabase(database);
+            synchronized (ExistDatabaseConnection.class) {
+                if (instance == this) instance = null;
+            }
+        }
+    }
+
+    /**
+     * Sets the data directory and configuration file of the embedded database.
+     * If no configuration file is specified, the bundled minimal configuration is copied to the data directory.
+     *
+     * @param settings the embedded connection settings.
+     * @throws Exception if the data directory or the configuration cannot be prepared.
+     */
+    private void configureEmbedded(ConnectionConfig settings) throws Exception {
+        Path dataDir = settings.getDataDir();
+        Files.createDirectories(dataDir);
+
+        Path configFile = settings.getConfigFile();
+        if (configFile == null) {
+            configFile = dataDir.resolve("conf.xml");
+            if (Files.notExists(configFile)) {
+                try (InputStream bundled = ExistDatabaseConnection.class.getResourceAsStream(EMBEDDED_CONFIG_RESOURCE)) {
+                    if (bundled == null) throw new Exception("Missing embedded configuration " + EMBEDDED_CONFIG_RESOURCE);
+                    Files.copy(bundled, configFile);
+                }
+            }
+        }
+
+        database.setProperty("configuration", configFile.toString());
+        database.setProperty("data-dir", dataDir.toString());
+        database.setProperty("journal-dir", dataDir.toString());
+    }
+
+    /**
+     * Shuts down the embedded database, flushing its data to disk.
+     *
+     * @throws XMLDBException if the database cannot be shut down.
+     */
+    private void shutdownEmbedded() throws XMLDBException {
+        try (Collection root = DatabaseManager.getCollection(settings.getUri() + "/db",
+                settings.getUsername(), settings.getPassword())) {
+            DatabaseInstanceManager manager =
+                    (DatabaseInstanceManager) root.getService("DatabaseInstanceManager", "1.0");
+            manager.shutdown();
+        }
     }
 }
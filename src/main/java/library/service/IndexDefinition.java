@@ -0,0 +1,61 @@
+package library.service;
+
+import library.model.Indexed;
+
+import java.util.Objects;
+
+/**
+ * Index of one element, generated by {@link IndexManager} from a field of a model class.
+ */
+public class IndexDefinition {
+    private final String elementName;
+    private final Indexed.Kind kind;
+    private final String type;
+
+    /**
+     * Creates a new definition.
+     *
+     * @param elementName The name of the indexed element, which is the name of the field.
+     * @param kind The kind of index.
+     * @param type The XML Schema type of the values of a range index, e.g. {@code xs:integer}.
+     */
+    public IndexDefinition(String elementName, Indexed.Kind kind, String type) {
+        this.elementName = elementName;
+        this.kind = kind;
+        this.type = type;
+    }
+
+    public String getElementName() {
+        return elementName;
+    }
+
+    public Indexed.Kind getKind() {
+        return kind;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IndexDefinition)) return false;
+        IndexDefinition that = (IndexDefinition) o;
+        return elementName.equals(that.elementName) && kind == that.kind && Objects.equals(type, that.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(elementName, kind, type);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexDefinition{" +
+                "elementName='" + elementName + '\'' +
+                ", kind=" + kind +
+                ", type='" + type + '\'' +
+                '}';
+    }
+}
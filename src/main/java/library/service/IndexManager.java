@@ -0,0 +1,300 @@
+package library.service;
+
+import library.model.DatabaseModel;
+import library.model.Indexed;
+import org.exist.util.Occurrences;
+import org.exist.xmldb.IndexQueryService;
+import org.xmldb.api.base.Collection;
+import org.xmldb.api.base.Resource;
+import org.xmldb.api.modules.XMLResource;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Manages the index configuration of the collections, so predicates on model fields use index lookups instead of
+ * scanning every document.
+ * <p>
+ * The indexes are derived from the {@link DatabaseModel} classes stored in a collection: fields annotated with
+ * {@link Indexed} get the requested indexes, and classes without annotations get a range index on every mapped
+ * field. {@code int} fields are indexed as {@code xs:integer} and {@code String} fields as {@code xs:string}.
+ * The definitions are written to the {@code collection.xconf} of the collection under {@value #CONFIG_COLLECTION},
+ * and the collection is reindexed so the existing documents are indexed too.
+ * </p>
+ *
+ * <p>
+ * Range, NGram and full-text indexes are defined for the range, NGram and Lucene index modules of eXist-db, which
+ * are enabled in the server distribution and registered in the bundled embedded configuration. A configuration
+ * passed with {@code exist.config} must register them too, otherwise the database ignores their definitions; for a
+ * configuration without the range module, {@link #IndexManager(ExistDatabaseConnection, boolean)} defines legacy
+ * range indexes of the core instead. Full-text indexes use the standard Lucene analyzer.
+ * </p>
+ */
+public class IndexManager {
+
+    /** Collection where eXist-db looks for the configuration of the other collections. */
+    public static final String CONFIG_COLLECTION = "/db/system/config";
+    private static final String CONFIG_RESOURCE = "collection.xconf";
+    private static final String LUCENE_ANALYZER = "org.apache.lucene.analysis.standard.StandardAnalyzer";
+
+    private static final Logger logger = Logger.getLogger(IndexManager.class.getName());
+
+    private final ExistDatabaseConnection dbConnection;
+    private final boolean rangeModule;
+
+    /**
+     * Creates an index manager that uses the range index module.
+     *
+     * @param dbConnection The connection to the eXist-db database.
+     */
+    public IndexManager(ExistDatabaseConnection dbConnection) {
+        this(dbConnection, true);
+    }
+
+    /**
+     * Creates an index manager.
+     *
+     * @param dbConnection The connection to the eXist-db database.
+     * @param rangeModule If {@code true}, range indexes are defined for the range index module; otherwise the legacy
+     *                    range index of the core is used.
+     */
+    public IndexManager(ExistDatabaseConnection dbConnection, boolean rangeModule) {
+        this.dbConnection = dbConnection;
+        this.rangeModule = rangeModule;
+    }
+
+    /**
+     * Derives the index definitions of a model class.
+     *
+     * @param modelClass The model class.
+     * @return The indexes of the annotated fields, or a range index per mapped field if no field is annotated.
+     */
+    public static List<IndexDefinition> deriveIndexes(Class<? extends DatabaseModel> modelClass) {
+        List<IndexDefinition> annotated = new ArrayList<>();
+        List<IndexDefinition> derived = new ArrayList<>();
+
+        for (Field field : modelClass.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+            String type = schemaType(field.getType());
+            if (type == null) continue;
+
+            derived.add(new IndexDefinition(field.getName(), Indexed.Kind.RANGE, type));
+            Indexed indexed = field.getAnnotation(Indexed.class);
+            if (indexed == null) continue;
+            for (Indexed.Kind kind : indexed.value()) {
+                if (kind == Indexed.Kind.RANGE) {
+                    annotated.add(new IndexDefinition(field.getName(), kind, type));
+                } else if (field.getType().equals(String.class)) {
+                    annotated.add(new IndexDefinition(field.getName(), kind, null));
+                } else {
+                    logger.warning(kind + " indexes are only created for text fields: " + field);
+                }
+            }
+        }
+        return annotated.isEmpty() ? derived : annotated;
+    }
+
+    /**
+     * Creates the {@code collection.xconf} document with the specified indexes.
+     *
+     * @param indexes The index definitions.
+     * @return The collection configuration.
+     */
+    public String createConfiguration(List<IndexDefinition> indexes) {
+        StringBuilder ranges = new StringBuilder();
+        StringBuilder ngrams = new StringBuilder();
+        StringBuilder texts = new StringBuilder();
+        String rangeIndent = rangeModule ? "            " : "        ";
+
+        for (IndexDefinition index : indexes) {
+            if (index.getKind() == Indexed.Kind.RANGE) {
+                ranges.append(rangeIndent).append("<create qname=\"").append(index.getElementName())
+                        .append("\" type=\"").append(index.getType()).append("\"/>\n");
+            } else if (index.getKind() == Indexed.Kind.FULL_TEXT) {
+                texts.append("            <text qname=\"").append(index.getElementName()).append("\"/>\n");
+            } else {
+                ngrams.append("        <ngram qname=\"").append(index.getElementName()).append("\"/>\n");
+            }
+        }
+
+        StringBuilder xconf = new StringBuilder()
+                .append("<collection xmlns=\"http://exist-db.org/collection-config/1.0\">\n")
+                .append("    <index xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n");
+        if (rangeModule && ranges.length() > 0) {
+            xconf.append("        <range>\n").append(ranges).append("        </range>\n");
+        } else {
+            xconf.append(ranges);
+        }
+        xconf.append(ngrams);
+        if (texts.length() > 0) {
+            xconf.append("        <lucene>\n")
+                    .append("            <analyzer class=\"").append(LUCENE_ANALYZER).append("\"/>\n")
+                    .append(texts)
+                    .append("        </lucene>\n");
+        }
+        return xconf
+                .append("    </index>\n")
+                .append("</collection>\n")
+                .toString();
+    }
+
+    /**
+     * Configures the indexes of a collection that stores one model class, and reindexes it.
+     *
+     * @param collectionName The name of the collection.
+     * @param modelClass The class of the models stored in the collection.
+     * @return The configured indexes.
+     * @throws Exception If the configuration cannot be stored or the collection cannot be reindexed.
+     */
+    public List<IndexDefinition> configureIndexes(String collectionName, Class<? extends DatabaseModel> modelClass)
+            throws Exception {
+        return configureIndexes(collectionName, List.of(modelClass));
+    }
+
+    /**
+     * Configures the indexes of a collection that stores several model classes, and reindexes it.
+     * The indexes of all the classes are merged; if two classes index the same element with different types,
+     * the first one is used.
+     *
+     * @param collectionName The name of the collection.
+     * @param modelClasses The classes of the models stored in the collection.
+     * @return The configured indexes.
+     * @throws Exception If the configuration cannot be stored or the collection cannot be reindexed.
+     */
+    public List<IndexDefinition> configureIndexes(String collectionName,
+                                                  List<Class<? extends DatabaseModel>> modelClasses)
+            throws Exception {
+        Set<IndexDefinition> indexes = new LinkedHashSet<>();
+        Map<String, IndexDefinition> ranges = new LinkedHashMap<>();
+        for (Class<? extends DatabaseModel> modelClass : modelClasses) {
+            for (IndexDefinition index : deriveIndexes(modelClass)) {
+                if (index.getKind() == Indexed.Kind.RANGE) {
+                    IndexDefinition previous = ranges.putIfAbsent(index.getElementName(), index);
+                    if (previous != null && !previous.equals(index)) {
+                        logger.warning("Conflicting range index types for " + index.getElementName()
+                                + ", keeping " + previous.getType());
+                        continue;
+                    }
+                }
+                indexes.add(index);
+            }
+        }
+
+        List<IndexDefinition> configured = new ArrayList<>(indexes);
+        storeConfiguration(collectionName, createConfiguration(configured));
+        reindex(collectionName);
+        return configured;
+    }
+
+    /**
+     * Removes the index configuration of a collection and reindexes it, so it falls back to the default indexes.
+     *
+     * @param collectionName The name of the collection.
+     * @throws Exception If the configuration cannot be removed or the collection cannot be reindexed.
+     */
+    public void removeIndexes(String collectionName) throws Exception {
+        try (Collection config = dbConnection.getCollection(configCollectionName(collectionName))) {
+            Resource resource = config.getResource(CONFIG_RESOURCE);
+            if (resource != null) config.removeResource(resource);
+        } catch (Exception e) {
+            logger.log(Level.FINE, "No index configuration to remove for " + collectionName, e);
+        }
+        reindex(collectionName);
+    }
+
+    /**
+     * Rebuilds the indexes of a collection and its subcollections.
+     *
+     * @param collectionName The name of the collection.
+     * @throws Exception If the collection cannot be reindexed.
+     */
+    public void reindex(String collectionName) throws Exception {
+        try (Collection collection = dbConnection.getCollection(collectionName)) {
+            IndexQueryService service = (IndexQueryService) collection.getService("IndexQueryService", "1.0");
+            service.reindexCollection();
+        }
+    }
+
+    /**
+     * Reports the index configuration of a collection and the elements indexed in it.
+     *
+     * @param collectionName The name of the collection.
+     * @return A snapshot of the index status.
+     * @throws Exception If the collection cannot be read.
+     */
+    public IndexStatus getStatus(String collectionName) throws Exception {
+        String configuration = readConfiguration(collectionName);
+
+        try (Collection collection = dbConnection.getCollection(collectionName)) {
+            IndexQueryService service = (IndexQueryService) collection.getService("IndexQueryService", "1.0");
+            Map<String, Integer> indexedElements = new LinkedHashMap<>();
+            try {
+                for (Occurrences occurrences : service.getIndexedElements(false)) {
+                    indexedElements.put(occurrences.getTerm().toString(), occurrences.getOccurrences());
+                }
+            } catch (RuntimeException e) {
+                // The database configuration does not enable the structural index, e.g. the bundled embedded one.
+                logger.log(Level.FINE, "The indexed elements of " + collectionName + " are not available", e);
+            }
+            return new IndexStatus(collectionName, configuration != null, configuration,
+                    collection.getResourceCount(), indexedElements);
+        }
+    }
+
+    /**
+     * Stores the {@code collection.xconf} of a collection, creating its configuration collection if necessary.
+     *
+     * @param collectionName The name of the configured collection.
+     * @param configuration The collection configuration.
+     * @throws Exception If the configuration cannot be stored.
+     */
+    private void storeConfiguration(String collectionName, String configuration) throws Exception {
+        try (Collection config = dbConnection.getOrCreateCollection(configCollectionName(collectionName))) {
+            XMLResource resource = (XMLResource) config.createResource(CONFIG_RESOURCE, XMLResource.RESOURCE_TYPE);
+            resource.setContent(configuration);
+            config.storeResource(resource);
+        }
+    }
+
+    /**
+     * Reads the {@code collection.xconf} of a collection.
+     *
+     * @param collectionName The name of the configured collection.
+     * @return The configuration, or {@code null} if the collection has none.
+     */
+    private String readConfiguration(String collectionName) {
+        try (Collection config = dbConnection.getCollection(configCollectionName(collectionName))) {
+            Resource resource = config.getResource(CONFIG_RESOURCE);
+            return resource != null ? resource.getContent().toString() : null;
+        } catch (Exception e) {
+            // The configuration collection does not exist.
+            return null;
+        }
+    }
+
+    private String configCollectionName(String collectionName) {
+        String name = collectionName.endsWith("/")
+                ? collectionName.substring(0, collectionName.length() - 1) : collectionName;
+        return CONFIG_COLLECTION + name;
+    }
+
+    /**
+     * Retrieves the XML Schema type used to index a field type.
+     *
+     * @param fieldType The Java type of the field.
+     * @return The schema type, or {@code null} if fields of the type are not mapped.
+     */
+    private static String schemaType(Class<?> fieldType) {
+        if (fieldType.equals(int.class)) return "xs:integer";
+        if (fieldType.equals(String.class)) return "xs:string";
+        return null;
+    }
+}
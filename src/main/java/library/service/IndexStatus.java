@@ -0,0 +1,63 @@
+package library.service;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the index configuration of a collection, reported by {@link IndexManager}.
+ */
+public class IndexStatus {
+    private final String collectionName;
+    private final boolean configured;
+    private final String configuration;
+    private final int documents;
+    private final Map<String, Integer> indexedElements;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param collectionName The name of the collection.
+     * @param configured Whether the collection has its own {@code collection.xconf}.
+     * @param configuration The content of the {@code collection.xconf}, or {@code null} if there is none.
+     * @param documents Number of documents in the collection.
+     * @param indexedElements Number of occurrences of each element in the structural index of the collection.
+     */
+    IndexStatus(String collectionName, boolean configured, String configuration, int documents,
+                Map<String, Integer> indexedElements) {
+        this.collectionName = collectionName;
+        this.configured = configured;
+        this.configuration = configuration;
+        this.documents = documents;
+        this.indexedElements = Collections.unmodifiableMap(indexedElements);
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    public boolean isConfigured() {
+        return configured;
+    }
+
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    public int getDocuments() {
+        return documents;
+    }
+
+    public Map<String, Integer> getIndexedElements() {
+        return indexedElements;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexStatus{" +
+                "collectionName='" + collectionName + '\'' +
+                ", configured=" + configured +
+                ", documents=" + documents +
+                ", indexedElements=" + indexedElements +
+                '}';
+    }
+}
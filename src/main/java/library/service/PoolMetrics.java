@@ -0,0 +1,76 @@
+package library.service;
+
+/**
+ * Immutable snapshot of the statistics of a {@link CollectionPool}.
+ */
+public class PoolMetrics {
+    private final long created;
+    private final long reused;
+    private final long evicted;
+    private final long invalidated;
+    private final long timeouts;
+    private final int active;
+    private final int idle;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param created Number of collection handles opened.
+     * @param reused Number of borrows served with an idle handle.
+     * @param evicted Number of idle handles closed because they expired.
+     * @param invalidated Number of handles closed because they failed validation or were invalidated.
+     * @param timeouts Number of borrows that timed out because the pool was exhausted.
+     * @param active Number of handles currently borrowed.
+     * @param idle Number of handles currently idle in the pool.
+     */
+    PoolMetrics(long created, long reused, long evicted, long invalidated, long timeouts, int active, int idle) {
+        this.created = created;
+        this.reused = reused;
+        this.evicted = evicted;
+        this.invalidated = invalidated;
+        this.timeouts = timeouts;
+        this.active = active;
+        this.idle = idle;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getReused() {
+        return reused;
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public long getInvalidated() {
+        return invalidated;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{" +
+                "created=" + created +
+                ", reused=" + reused +
+                ", evicted=" + evicted +
+                ", invalidated=" + invalidated +
+                ", timeouts=" + timeouts +
+                ", active=" + active +
+                ", idle=" + idle +
+                '}';
+    }
+}
@@ -0,0 +1,207 @@
+package library.service;
+
+import org.xmldb.api.base.Collection;
+import org.xmldb.api.base.CompiledExpression;
+import org.xmldb.api.base.XMLDBException;
+import org.xmldb.api.modules.XPathQueryService;
+import org.xmldb.api.modules.XQueryService;
+import org.xmldb.api.modules.XUpdateQueryService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link Collection} handle borrowed from a {@link CollectionPool}.
+ * <p>
+ * The handle keeps the collection open between queries, together with its query services and the queries compiled
+ * on it with {@link #compile(String)}. Closing the handle returns it to the pool instead of closing the collection, so it should be used inside a
+ * try-with-resources block. Handles are not thread-safe and must not be used after being closed.
+ * </p>
+ */
+public class PooledCollection implements AutoCloseable {
+
+    // Maximum number of compiled queries kept by a handle.
+    private static final int MAX_COMPILED_QUERIES = 64;
+
+    private final CollectionPool pool;
+    private final String collectionName;
+    private final Collection collection;
+    private XPathQueryService queryService;
+    private XQueryService xQueryService;
+    private XUpdateQueryService xUpdateService;
+
+    // Access order, so the least recently used query is discarded first.
+    private final Map<String, CompiledExpression> compiledQueries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+            return size() > MAX_COMPILED_QUERIES;
+        }
+    };
+
+    // Read by the evictor and by the threads that return or validate the handle, not only by its borrower.
+    private volatile long lastUsed;
+    private volatile long lastValidated;
+    private volatile boolean valid = true;
+    private volatile boolean borrowed;
+
+    /**
+     * Creates a new handle for an open collection.
+     *
+     * @param pool The pool the handle belongs to.
+     * @param collectionName The name of the collection.
+     * @param collection The open collection.
+     */
+    PooledCollection(CollectionPool pool, String collectionName, Collection collection) {
+        this.pool = pool;
+        this.collectionName = collectionName;
+        this.collection = collection;
+        this.lastUsed = System.nanoTime();
+        this.lastValidated = lastUsed;
+    }
+
+    /**
+     * Retrieves the pooled collection.
+     *
+     * @return The open collection.
+     */
+    public Collection getCollection() {
+        checkBorrowed();
+        return collection;
+    }
+
+    /**
+     * Retrieves the query service of the collection, which is created once per handle.
+     *
+     * @return The {@link XPathQueryService} of the collection.
+     * @throws XMLDBException If the service cannot be obtained.
+     */
+    public XPathQueryService getQueryService() throws XMLDBException {
+        checkBorrowed();
+        if (queryService == null) {
+            queryService = (XPathQueryService) collection.getService("XPathQueryService", "1.0");
+        }
+        return queryService;
+    }
+
+    /**
+     * Retrieves the XQuery service of the collection, which is created once per handle.
+     * It is used to execute the expressions returned by {@link #compile(String)}.
+     *
+     * @return The {@link XQueryService} of the collection.
+     * @throws XMLDBException If the service cannot be obtained.
+     */
+    public XQueryService getXQueryService() throws XMLDBException {
+        checkBorrowed();
+        if (xQueryService == null) {
+            xQueryService = (XQueryService) collection.getService("XQueryService", "1.0");
+        }
+        return xQueryService;
+    }
+
+    /**
+     * Retrieves the XUpdate service of the collection, which is created once per handle.
+     *
+     * @return The {@link XUpdateQueryService} of the collection.
+     * @throws XMLDBException If the service cannot be obtained.
+     */
+    public XUpdateQueryService getXUpdateQueryService() throws XMLDBException {
+        checkBorrowed();
+        if (xUpdateService == null) {
+            xUpdateService = (XUpdateQueryService) collection.getService("XUpdateQueryService", "1.0");
+        }
+        return xUpdateService;
+    }
+
+    /**
+     * Compiles a query with the XQuery service of the collection, or returns the expression compiled before for the
+     * same query text. Since a handle belongs to one collection and is used by one thread at a time, the cached
+     * expressions are kept per collection and query text and are never executed concurrently.
+     * <p>
+     * The expression should be {@link CompiledExpression#reset() reset} after every execution.
+     * </p>
+     *
+     * @param query The XQuery to compile.
+     * @return The compiled expression.
+     * @throws XMLDBException If the query cannot be compiled.
+     */
+    public CompiledExpression compile(String query) throws XMLDBException {
+        checkBorrowed();
+        CompiledExpression expression = compiledQueries.get(query);
+        if (expression == null) {
+            expression = getXQueryService().compile(query);
+            compiledQueries.put(query, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Retrieves the name of the pooled collection.
+     *
+     * @return The collection name.
+     */
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    /**
+     * Marks the handle as broken, so the pool closes it instead of reusing it.
+     * Callers should invalidate a handle when an operation fails because of the connection.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Returns the handle to the pool.
+     */
+    @Override
+    public void close() {
+        if (borrowed) {
+            borrowed = false;
+            pool.release(this);
+        }
+    }
+
+    Collection getCollectionUnchecked() {
+        return collection;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    void markBorrowed() {
+        borrowed = true;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    long getLastValidated() {
+        return lastValidated;
+    }
+
+    void markValidated() {
+        lastValidated = System.nanoTime();
+    }
+
+    /**
+     * Closes the underlying collection.
+     */
+    void closeCollection() {
+        try {
+            collection.close();
+        } catch (XMLDBException e) {
+            // The handle is discarded anyway.
+        }
+    }
+
+    private void checkBorrowed() {
+        if (!borrowed) throw new IllegalStateException("The collection handle has been returned to the pool");
+    }
+}
@@ -1,36 +1,70 @@
 package util;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.File;
-import java.lang.reflect.Field;
-
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
+import library.model.DatabaseModel;
+import library.model.ModelCodec;
+import library.model.ModelCodecs;
 
-import org.w3c.dom.*;
-import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.*;
-import javax.xml.transform.stream.*;
-import java.io.File;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility class for creating XML files from Java objects using reflection.
+ * <p>
+ * The XML is written incrementally while the objects are iterated, so memory use does not depend on the number of
+ * objects. The output is byte-for-byte the same as the one produced by serializing a DOM document with the identity
+ * {@code Transformer} of {@code TransformerFactory.newInstance()}, which this class used before and which is Xalan
+ * with the eXist-db libraries on the classpath. The only exception is characters outside the Basic Multilingual
+ * Plane: Xalan wrote a character reference for each half of their surrogate pair, which is not well-formed XML,
+ * while this class writes one reference to the code point.
+ * </p>
+ *
+ * <p>
+ * Objects of a model class with a generated {@link ModelCodec} are written through the codec, which calls their
+ * getters directly; other objects are inspected with reflection.
+ * </p>
  *
  * @author Rafael Francisco Jiménez Rayo
  */
 public class XMLFileCreator {
 
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Generated codec of each class, or an empty Optional for classes written with reflection.
+    private static final ClassValue<Optional<ModelCodec<?>>> CODECS = new ClassValue<>() {
+        @Override
+        protected Optional<ModelCodec<?>> computeValue(Class<?> type) {
+            return Optional.ofNullable(ModelCodecs.forClass(type));
+        }
+    };
+
+    // Fields of each class, made accessible only once.
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            Field[] fields = type.getDeclaredFields();
+            for (Field field : fields) {
+                field.setAccessible(true); // Access private fields
+            }
+            return fields;
+        }
+    };
+
     /**
      * Creates an XML file from a list of Java objects by inspecting their fields using reflection.
      *
@@ -41,102 +75,271 @@ public class XMLFileCreator {
      * @throws Exception If an error occurs during XML file creation.
      */
     public static <T> void createXmlFile(List<T> objects, String outputPath, String parentTagName) throws Exception {
-        Document document = createDocument();
-        Element rootElement = createRootElement(parentTagName, document);
+        try (OutputStream out = Files.newOutputStream(Path.of(outputPath))) {
+            writeXml(objects.iterator(), out, parentTagName);
+        }
+    }
+
+    /**
+     * Creates an XML document from a list of Java objects and returns it as a {@link String}.
+     * The content is the same as the one written by {@link #createXmlFile(List, String, String)}.
+     *
+     * @param objects The list of objects to be serialized.
+     * @param parentTagName The name of the parent tag that will wrap all the objects.
+     * @param <T> The type of the objects in the list.
+     * @return The XML document.
+     * @throws Exception If an error occurs during XML creation.
+     */
+    public static <T> String createXmlString(List<T> objects, String parentTagName) throws Exception {
+        StringWriter writer = new StringWriter();
+        writeDocument(objects.iterator(), writer, parentTagName);
+        return writer.toString();
+    }
 
-        // Iterate through the list of objects and create XML elements for each one.
-        for (T object : objects) {
-            populateObjectFields(object, document, rootElement);
+    /**
+     * Writes a stream of objects as an XML file, optionally compressed with gzip.
+     *
+     * @param objects The objects to be serialized; the stream is consumed lazily.
+     * @param outputPath The path where the XML file will be saved.
+     * @param parentTagName The name of the parent tag that will wrap all the objects.
+     * @param gzip If {@code true}, the file is compressed with gzip.
+     * @param <T> The type of the objects in the stream.
+     * @throws Exception If an error occurs during XML file creation.
+     */
+    public static <T> void writeXml(Stream<T> objects, Path outputPath, String parentTagName, boolean gzip)
+            throws Exception {
+        try (OutputStream file = Files.newOutputStream(outputPath);
+             OutputStream out = gzip ? new GZIPOutputStream(file, BUFFER_SIZE) : file) {
+            writeXml(objects.iterator(), out, parentTagName);
         }
+    }
 
-        transformToXml(document, outputPath);
+    /**
+     * Writes the objects of an iterator as an XML document to a channel. The channel is not closed.
+     *
+     * @param objects The objects to be serialized.
+     * @param channel The channel where the XML is written.
+     * @param parentTagName The name of the parent tag that will wrap all the objects.
+     * @param <T> The type of the objects.
+     * @throws Exception If an error occurs during XML creation.
+     */
+    public static <T> void writeXml(Iterator<T> objects, WritableByteChannel channel, String parentTagName)
+            throws Exception {
+        writeXml(objects, Channels.newOutputStream(channel), parentTagName);
     }
 
     /**
-     * Creates a new empty Document object using the DOM parser.
+     * Writes the objects of an iterator as an XML document to an output stream, using buffered UTF-8 output.
+     * The stream is flushed but not closed.
      *
-     * @return A new instance of Document.
-     * @throws ParserConfigurationException If there is an error creating the document builder.
+     * @param objects The objects to be serialized.
+     * @param out The stream where the XML is written.
+     * @param parentTagName The name of the parent tag that will wrap all the objects.
+     * @param <T> The type of the objects.
+     * @throws Exception If an error occurs during XML creation.
      */
-    private static Document createDocument() throws ParserConfigurationException {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.newDocument();
+    public static <T> void writeXml(Iterator<T> objects, OutputStream out, String parentTagName) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writeDocument(objects, writer, parentTagName);
     }
 
     /**
-     * Creates the root element of the XML file based on the specified parent tag name.
+     * Writes the XML declaration, the root element and one element per object.
      *
-     * @param parentTagName The name of the parent tag.
-     * @param document The Document object to create the root element in.
-     * @return The root element of the XML file.
+     * @param objects The objects to be serialized.
+     * @param writer The destination of the XML, which is flushed at the end.
+     * @param parentTagName The name of the root element.
+     * @param <T> The type of the objects.
+     * @throws IOException If the XML cannot be written.
+     * @throws IllegalAccessException If an error occurs while accessing field values.
      */
-    private static Element createRootElement(String parentTagName, Document document) {
-        Element rootElement = document.createElement(parentTagName);
-        document.appendChild(rootElement);
-        return rootElement;
+    private static <T> void writeDocument(Iterator<T> objects, Writer writer, String parentTagName)
+            throws IOException, IllegalAccessException {
+        writer.write(XML_DECLARATION);
+        if (!objects.hasNext()) {
+            writeEmptyElement(writer, parentTagName);
+        } else {
+            writer.write('<');
+            writer.write(parentTagName);
+            writer.write('>');
+            writeElements(objects, writer);
+            writeEndElement(writer, parentTagName);
+        }
+        writer.flush();
     }
 
     /**
-     * Populates the XML document with elements corresponding to the object's fields.
-     * The method uses reflection to get the field name and value.
+     * Writes one element per object, without an XML declaration or a root element, e.g. to insert the elements
+     * into an existing document. The writer is not flushed.
+     *
+     * @param objects The objects to be serialized.
+     * @param writer The destination of the XML.
+     * @param <T> The type of the objects.
+     * @throws IOException If the XML cannot be written.
+     * @throws IllegalAccessException If an error occurs while accessing field values.
+     */
+    public static <T> void writeElements(Iterator<T> objects, Writer writer) throws IOException, IllegalAccessException {
+        // Iterate through the objects and write an element for each one.
+        ElementWriter elementWriter = new ElementWriter(writer);
+        while (objects.hasNext()) {
+            Object object = objects.next();
+            Optional<ModelCodec<?>> codec = CODECS.get(object.getClass());
+            if (codec.isPresent()) {
+                elementWriter.writeObject(object, codec.get());
+            } else {
+                writeObject(object, writer);
+            }
+        }
+    }
+
+    /**
+     * Writes an element with the object's fields as children.
+     * The method uses reflection to get the field name and value; fields with {@code null} values are skipped.
      *
      * @param object The object whose fields will be serialized.
-     * @param document The Document object where elements will be added.
-     * @param rootElement The root element to append field elements to.
+     * @param writer The destination of the XML.
+     * @throws IOException If the XML cannot be written.
      * @throws IllegalAccessException If an error occurs while accessing field values.
      */
-    private static void populateObjectFields(Object object, Document document, Element rootElement) throws IllegalAccessException {
+    private static void writeObject(Object object, Writer writer) throws IOException, IllegalAccessException {
         String objectTagName = object.getClass().getSimpleName().toLowerCase();
-        Element objectElement = document.createElement(objectTagName);
-        rootElement.appendChild(objectElement);
+        boolean hasChildren = false;
 
         // Iterates through the fields of the class.
-        Field[] fields = object.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            field.setAccessible(true); // Access private fields
-
-            // Name and value of the current field.
-            String fieldName = field.getName();
+        for (Field field : FIELDS.get(object.getClass())) {
             Object fieldValue = field.get(object);
+            if (fieldValue == null) continue;
 
-            if (fieldValue != null) {
-                createFieldElement(document, objectElement, fieldName, fieldValue);
+            if (!hasChildren) {
+                writer.write('<');
+                writer.write(objectTagName);
+                writer.write('>');
+                hasChildren = true;
             }
+            writeFieldElement(writer, field.getName(), fieldValue.toString());
+        }
 
-            // Ensures the accessibility sets to false
-            field.setAccessible(false);
+        if (hasChildren) {
+            writeEndElement(writer, objectTagName);
+        } else {
+            writeEmptyElement(writer, objectTagName);
         }
     }
 
     /**
-     * Creates a field element for the XML document.
+     * Writes a field element with its escaped text value.
      *
-     * @param document The Document object to create the element in.
-     * @param objectElement The object element to append the field element to.
+     * @param writer The destination of the XML.
      * @param fieldName The name of the field.
      * @param fieldValue The value of the field.
+     * @throws IOException If the XML cannot be written.
      */
-    private static void createFieldElement(Document document, Element objectElement, String fieldName, Object fieldValue) {
-        Element fieldElement = document.createElement(fieldName);
-        fieldElement.appendChild(document.createTextNode(fieldValue.toString()));
-        objectElement.appendChild(fieldElement);
+    private static void writeFieldElement(Writer writer, String fieldName, String fieldValue) throws IOException {
+        if (fieldValue.isEmpty()) {
+            writeEmptyElement(writer, fieldName);
+            return;
+        }
+        writer.write('<');
+        writer.write(fieldName);
+        writer.write('>');
+        writeEscaped(writer, fieldValue);
+        writeEndElement(writer, fieldName);
     }
 
     /**
-     * Transforms the Document object into an XML file and saves it to the specified path.
-     *
-     * @param document The Document object to be transformed into an XML file.
-     * @param outputPath The path where the XML file will be saved.
-     * @throws TransformerException If an error occurs during the transformation process.
+     * Writes the element of an object with the fields received from its codec, like
+     * {@link #writeObject(Object, Writer)}: fields with {@code null} values are skipped. The same instance is reused
+     * for every object of a document.
      */
-    private static void transformToXml(Document document, String outputPath) throws TransformerException {
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        DOMSource domSource = new DOMSource(document);
-        StreamResult streamResult = new StreamResult(new File(outputPath));
-        transformer.transform(domSource, streamResult);
+    private static final class ElementWriter implements ModelCodec.FieldWriter {
+        private final Writer writer;
+        private String objectTagName;
+        private boolean hasChildren;
+
+        ElementWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @SuppressWarnings("unchecked")
+        void writeObject(Object object, ModelCodec<?> codec) throws IOException {
+            objectTagName = object.getClass().getSimpleName().toLowerCase();
+            hasChildren = false;
+            ((ModelCodec<DatabaseModel>) codec).write((DatabaseModel) object, this);
+
+            if (hasChildren) {
+                writeEndElement(writer, objectTagName);
+            } else {
+                writeEmptyElement(writer, objectTagName);
+            }
+        }
+
+        @Override
+        public void field(String name, String value) throws IOException {
+            if (value == null) return;
+            startObject();
+            writeFieldElement(writer, name, value);
+        }
+
+        @Override
+        public void field(String name, int value) throws IOException {
+            startObject();
+            writeFieldElement(writer, name, Integer.toString(value));
+        }
+
+        private void startObject() throws IOException {
+            if (hasChildren) return;
+            writer.write('<');
+            writer.write(objectTagName);
+            writer.write('>');
+            hasChildren = true;
+        }
+    }
+
+    private static void writeEmptyElement(Writer writer, String name) throws IOException {
+        writer.write('<');
+        writer.write(name);
+        writer.write("/>");
     }
-}
 
+    private static void writeEndElement(Writer writer, String name) throws IOException {
+        writer.write("</");
+        writer.write(name);
+        writer.write('>');
+    }
 
+    /**
+     * Writes text content, escaping it the same way as the identity {@code Transformer}: markup characters become
+     * entities, while control characters, C1 characters and supplementary characters become character references.
+     *
+     * @param writer The destination of the XML.
+     * @param text The text to escape.
+     * @throws IOException If the text cannot be written.
+     */
+    private static void writeEscaped(Writer writer, String text) throws IOException {
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            String replacement;
+            if (c == '&') {
+                replacement = "&amp;";
+            } else if (c == '<') {
+                replacement = "&lt;";
+            } else if (c == '>') {
+                replacement = "&gt;";
+            } else if ((c < 0x20 && c != '\t' && c != '\n') || (c >= 0x7F && c <= 0x9F)) {
+                replacement = "&#" + (int) c + ";";
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                replacement = "&#" + text.codePointAt(i) + ";";
+            } else {
+                continue;
+            }
+
+            writer.write(text, start, i - start);
+            writer.write(replacement);
+            if (Character.isHighSurrogate(c)) i++;
+            start = i + 1;
+        }
+        writer.write(text, start, length - start);
+    }
+}
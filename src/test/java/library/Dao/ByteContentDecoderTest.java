@@ -0,0 +1,107 @@
+package library.Dao;
+
+import library.model.Book;
+import org.junit.Test;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Decodes the same content with {@link ByteContentDecoder} and with a SAX parser feeding a
+ * {@link ModelContentHandler}, and expects the same values.
+ */
+public class ByteContentDecoderTest {
+
+    private final ModelMapper<Book> mapper = ModelMapperRegistry.getMapper(Book.class);
+
+    @Test
+    public void entitiesAreDecoded() throws Exception {
+        byte[] content = "<book><title>&lt;b&gt; &amp; c</title></book>".getBytes(StandardCharsets.UTF_8);
+        assertEquals("<b> & c", new ByteContentDecoder<>(mapper).decode(content, content.length).getTitle());
+        assertSameBook("<book><title>&lt;b&gt; &amp; &quot;c&quot; &apos;d&apos;</title></book>");
+        assertSameBook("<book title=\"&lt;a&gt; &amp;amp; &quot;\"/>");
+    }
+
+    @Test
+    public void characterReferencesAreDecoded() throws Exception {
+        assertSameBook("<book><title>&#233;&#xE9;&#xe9; &#x1F600;&#128512; &#10;&#13;&#9;</title>"
+                + "<author>&#65;&#x42;</author><publishYear>&#49;&#57;&#x38;&#52;</publishYear></book>");
+        assertSameBook("<book author=\"&#10;&#13;&#9;&#x20AC;\"/>");
+    }
+
+    @Test
+    public void cdataSectionsAreCopied() throws Exception {
+        assertSameBook("<book><title><![CDATA[<raw> & &amp; ]]]]><![CDATA[>]]></title></book>");
+        assertSameBook("<book><title>a <![CDATA[b\r\nc]]> d</title><author><![CDATA[]]></author></book>");
+    }
+
+    @Test
+    public void lineEndsAreNormalized() throws Exception {
+        assertSameBook("<book>\r\n<title>uno\r\ndos\rtres\n\rcuatro</title>\r\n</book>");
+        assertSameBook("<book title=\"a\r\nb\rc\nd\te\" author='x\r\n'/>");
+    }
+
+    @Test
+    public void elementsWinOverAttributes() throws Exception {
+        assertSameBook("<book title=\"atributo\" author=\"A &amp; B\" publishYear=\"1999\">"
+                + "<title>elemento</title></book>");
+        assertSameBook("<book publishYear=\"1999\"><publishYear>2001</publishYear></book>");
+        assertSameBook("<b:book xmlns:b=\"urn:libros\" xmlns=\"urn:otro\" b:title=\"prefijo\"><b:author>x</b:author>"
+                + "</b:book>");
+        assertSameBook("<book><title>primero</title><title>segundo</title></book>");
+    }
+
+    @Test
+    public void nestedTextIsConcatenated() throws Exception {
+        assertSameBook("<book><title>Guerra <i>y <b>la</b></i> paz</title><author>a<!-- nota -->b<?pi x?>c</author>"
+                + "</book>");
+        assertSameBook("<book><datos><title>anidado</title></datos><title/><author></author></book>");
+        assertSameBook("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!DOCTYPE book>\n<!-- antes -->"
+                + "<book>\n  <title>Ñandú 😀 – “cita”</title>\n  <author> espacios </author>\n</book>");
+    }
+
+    @Test
+    public void intsAreParsedLikeStrings() throws Exception {
+        List<String> years = List.of("1984", " 1984\n", "+12", "-5", "-0", "007", "123456789", "1234567890",
+                "2147483647", "-2147483648", "2147483648", "-2147483649", "99999999999", "12a", "1 2", "", " ",
+                "0x10", "1e3", "١٢", "&#49;2", "<![CDATA[42]]>");
+        for (String year : years) {
+            assertSameBook("<book><publishYear>" + year + "</publishYear></book>");
+        }
+        // CDATA sections cannot appear in attribute values.
+        for (String year : years.subList(0, years.size() - 1)) {
+            assertSameBook("<book publishYear=\"" + year + "\"/>");
+        }
+    }
+
+    private void assertSameBook(String xml) throws Exception {
+        byte[] content = xml.getBytes(StandardCharsets.UTF_8);
+
+        ModelContentHandler<Book> handler = new ModelContentHandler<>(mapper);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.newSAXParser().parse(new ByteArrayInputStream(content), handler);
+        Book expected = mapper.create(handler.getValues());
+
+        // Padding after the content checks that only the given length is read.
+        byte[] padded = new byte[content.length + 8];
+        System.arraycopy(content, 0, padded, 0, content.length);
+        padded[content.length] = '<';
+        Book actual = new ByteContentDecoder<>(mapper).decode(padded, content.length);
+
+        assertEquals(xml, values(expected), values(actual));
+    }
+
+    private List<Object> values(Book book) {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < mapper.getFieldCount(); i++) {
+            values.add(mapper.getValue(book, i));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,107 @@
+package library.Dao;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnStoreTest {
+
+    // Order of the values by their code points, which is the order of their UTF-8 bytes.
+    private static final Comparator<String> CODE_POINT_ORDER =
+            Comparator.comparing(value -> value.codePoints().toArray(), Arrays::compare);
+
+    private final ModelMapper<Book> mapper = ModelMapperRegistry.getMapper(Book.class);
+
+    @Test
+    public void textColumnsAreSortedByCodePoint() {
+        // U+1F600 sorts before U+FB01 as UTF-16 chars, but after it by code point.
+        List<String> titles = List.of("zeta", "Ábaco", "Alpha", "😀 emoji", "ﬁn", "alpha", "");
+        ColumnStore<Book> store = store(titles);
+
+        List<String> expected = new ArrayList<>(titles);
+        expected.sort(CODE_POINT_ORDER);
+        assertEquals(expected, titles(store.rows().sortBy("title", false)));
+        expected.sort(CODE_POINT_ORDER.reversed());
+        assertEquals(expected, titles(store.rows().sortBy("title", true)));
+        assertEquals(titles.stream().sorted(CODE_POINT_ORDER).collect(Collectors.toList()),
+                new ArrayList<>(store.rows().countByString("title").keySet()));
+    }
+
+    @Test
+    public void nullValuesSortFirst() {
+        ColumnStore<Book> store = store(Arrays.asList("b", null, "a"));
+
+        assertEquals(Arrays.asList(null, "a", "b"), titles(store.rows().sortBy("title", false)));
+        assertEquals(Arrays.asList("b", "a", null), titles(store.rows().sortBy("title", true)));
+    }
+
+    @Test
+    public void manyDistinctValuesAreSorted() {
+        Random random = new Random(42);
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int length = random.nextInt(6); length >= 0; length--) {
+                title.appendCodePoint(random.nextBoolean() ? 'a' + random.nextInt(26) : 0xC0 + random.nextInt(0x2000));
+            }
+            titles.add(title.toString());
+        }
+        ColumnStore<Book> store = store(titles);
+
+        List<String> expected = new ArrayList<>(titles);
+        expected.sort(CODE_POINT_ORDER);
+        assertEquals(expected, titles(store.rows().sortBy("title", false)));
+    }
+
+    @Test
+    public void closingFreesTheBuffers() {
+        // Enough values to replace every initial buffer, which must be freed without losing values.
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            titles.add("Título " + i);
+        }
+        ColumnStore<Book> store = store(titles);
+        assertEquals("Título 19999", store.get(19999).getTitle());
+        assertEquals(20000, store.getDistinctCount("title"));
+        assertTrue(store.getOffHeapBytes() > 0);
+
+        ColumnStore<Book>.Selection selection = store.rows();
+        store.close();
+        store.close();
+        assertEquals(0, store.getOffHeapBytes());
+        assertEquals(0, store.size());
+        assertThrows(IllegalStateException.class, () -> store.get(0));
+        assertThrows(IllegalStateException.class, store::rows);
+        assertThrows(IllegalStateException.class, () -> selection.whereEquals("title", "Título 1"));
+        assertThrows(IllegalStateException.class, () -> selection.sortBy("publishYear", false));
+    }
+
+    private ColumnStore<Book> store(List<String> titles) {
+        ColumnStore<Book> store = new ColumnStore<>(mapper);
+        for (String title : titles) {
+            String[] values = new String[mapper.getFieldCount()];
+            values[mapper.indexOf("title")] = title;
+            values[mapper.indexOf("publishYear")] = "2000";
+            store.add(values);
+        }
+        return store;
+    }
+
+    private static List<String> titles(ColumnStore<Book>.Selection selection) {
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < selection.size(); i++) {
+            titles.add(selection.get(i).getTitle());
+        }
+        return titles;
+    }
+}
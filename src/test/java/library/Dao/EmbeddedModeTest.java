@@ -0,0 +1,214 @@
+package library.Dao;
+
+import library.model.Book;
+import library.service.BulkLoader;
+import library.service.ConnectionConfig;
+import library.service.ExistDatabaseConnection;
+import library.service.IndexManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xmldb.api.base.Collection;
+import org.xmldb.api.modules.XMLResource;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the DAO against an embedded database started with the bundled configuration.
+ */
+public class EmbeddedModeTest {
+
+    private static final String BOOKS = "/db/test/Novelas";
+
+    private static ExistDatabaseConnection connection;
+    private static LibraryDaoIMP dao;
+
+    @BeforeClass
+    public static void startDatabase() throws Exception {
+        ExistDatabaseConnection.configure(ConnectionConfig.embedded(Files.createTempDirectory("exist-embedded"), null));
+        connection = ExistDatabaseConnection.getInstance();
+        new BulkLoader(connection, 5, 1).load(BOOKS, "biblioteca",
+                IntStream.range(0, 10).mapToObj(i -> new Book((i % 5 == 0 ? "Guerra y paz " : "Título ") + i,
+                        "Autor " + i % 3, 1900 + i)), null);
+        new IndexManager(connection).configureIndexes(BOOKS, Book.class);
+        dao = new LibraryDaoIMP(connection);
+    }
+
+    @AfterClass
+    public static void stopDatabase() throws Exception {
+        if (connection != null) connection.close();
+    }
+
+    @Test
+    public void dependentQueriesDoNotWaitForTheirOwnSlot() throws Exception {
+        // The first query only starts once the chain is attached, so the next query is submitted from the thread
+        // that completes the first one.
+        CountDownLatch attached = new CountDownLatch(1);
+        Executor executor = task -> new Thread(() -> {
+            try {
+                attached.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.run();
+        }).start();
+        AsyncLibraryDaoIMP async = new AsyncLibraryDaoIMP(connection, executor, 1);
+
+        CompletableFuture<List<Book>> chain = async.getBooksByAuthor(BOOKS, "Autor 1")
+                .thenCompose(books -> async.getBooksByAuthor(BOOKS, books.get(0).getAuthor()));
+        attached.countDown();
+
+        assertEquals(3, chain.get(30, TimeUnit.SECONDS).size());
+        assertEquals(1, async.getAvailableSlots());
+    }
+
+    @Test
+    public void unclosedStreamsReturnTheirCollection() throws Exception {
+        int active = connection.getPoolMetrics().getActive();
+        assertEquals(10, countWithoutClosing());
+        assertEquals(active + 1, connection.getPoolMetrics().getActive());
+
+        for (int i = 0; i < 100 && connection.getPoolMetrics().getActive() > active; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(active, connection.getPoolMetrics().getActive());
+    }
+
+    @Test
+    public void writesBindTheirValuesAndCheckTheResource() throws Exception {
+        String collection = "/db/test/Escrituras";
+        new BulkLoader(connection, 2, 1).load(collection, "escrituras",
+                IntStream.range(0, 4).mapToObj(i -> new Book("Libro " + i, "Autor", 1899 + i)), null);
+        try (Collection col = connection.getCollection(collection)) {
+            XMLResource empty = (XMLResource) col.createResource("vacio.xml", XMLResource.RESOURCE_TYPE);
+            empty.setContent("<biblioteca/>");
+            col.storeResource(empty);
+        }
+
+        assertEquals(0, dao.deleteWhere(collection, Book.class, "title", Comparison.EQ, "1] | //*[1"));
+        assertEquals(4, dao.countBooks(collection));
+        assertEquals(1, dao.deleteWhere(collection, Book.class, "publishYear", Comparison.LT, 1900));
+        assertEquals(2, dao.deleteWhere(collection, Book.class, "title", Comparison.NE, "Libro 1"));
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.deleteWhere(collection, Book.class, "title] | //*[1", Comparison.EQ, "x"));
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.deleteWhere(collection, Book.class, "publishYear", Comparison.EQ, Double.NaN));
+
+        dao.insertBooks(collection, "vacio.xml", List.of(new Book("Nuevo", "Autor", 2024)));
+        dao.insertBooks(collection, "vacio.xml", List.of());
+        assertEquals(2, dao.countBooks(collection));
+        assertThrows(QueryException.class,
+                () -> dao.insertBooks(collection, "no-existe.xml", List.of(new Book("Nuevo", "Autor", 2024))));
+    }
+
+    @Test
+    public void loadsAddResourcesAndCloseTheirInput() throws Exception {
+        String collection = "/db/test/Cargas";
+        BulkLoader loader = new BulkLoader(connection, 2, 20);
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Book> first = IntStream.range(0, 4).mapToObj(i -> new Book("Primera " + i, "Autor", 2000));
+        assertEquals(4, loader.load(collection, "cargas", first.onClose(() -> closed.set(true)), null));
+        assertTrue(closed.get());
+        assertEquals(2, loader.load(collection, "cargas",
+                IntStream.range(0, 2).mapToObj(i -> new Book("Segunda " + i, "Autor", 2000)), null));
+
+        assertEquals(6, dao.countBooks(collection));
+        try (Collection col = connection.getCollection(collection)) {
+            assertEquals(Set.of("cargas-1.xml", "cargas-2.xml", "cargas-3.xml"), Set.of(col.listResources()));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void queriesOverTheLimitAreQueuedWithoutBlocking() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Executor executor = task -> new Thread(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            task.run();
+        }).start();
+        AsyncLibraryDaoIMP async = new AsyncLibraryDaoIMP(connection, executor, 1);
+
+        CompletableFuture<List<Book>> first = async.getBooksByAuthor(BOOKS, "Autor 0");
+        CompletableFuture<List<Book>> second = async.getBooksByAuthor(BOOKS, "Autor 1");
+        CompletableFuture<List<Book>> third = async.getBooksByAuthor(BOOKS, "Autor 2");
+        assertEquals(0, async.getAvailableSlots());
+        assertEquals(2, async.getQueuedQueries());
+        release.countDown();
+
+        assertEquals(4, first.get().size());
+        assertEquals(3, second.get().size());
+        assertEquals(3, third.get().size());
+        assertEquals(1, async.getAvailableSlots());
+        assertEquals(0, async.getQueuedQueries());
+    }
+
+    @Test
+    public void substringSearchesUseTheNGramIndex() throws Exception {
+        QueryManager queryManager = new QueryManager(connection);
+        // The keys of the NGram index of the titles starting with "gue", which only exist if the index was built.
+        List<String[]> keys = queryManager.fetchTuples(BOOKS,
+                "util:index-keys(//book/title, 'gue', function($key, $count) { serialize([$key], "
+                        + "map { 'method': 'json' }) }, 10, 'ngram-index')", null, 1);
+        assertEquals("gue", keys.get(0)[0]);
+
+        List<String[]> matches = queryManager.fetchTuples(BOOKS,
+                "serialize([string(count(//book[ngram:contains(title, 'UERRA y')]))], map { 'method': 'json' })",
+                null, 1);
+        assertEquals("2", matches.get(0)[0]);
+    }
+
+    @Test
+    public void writesMatchValuesWithAmpersandsAndApostrophes() throws Exception {
+        String collection = "/db/test/Entidades";
+        new BulkLoader(connection, 5, 1).load(collection, "entidades", Stream.of(
+                new Book("Pride & Prejudice", "Austen", 1813), new Book("\"x\"", "Autor", 2000),
+                new Book("&quot;x", "Autor", 2000), new Book("L'Étranger", "Camus", 1942)), null);
+
+        assertEquals(1, dao.updateBook(collection, "Pride & Prejudice",
+                new Book("Pride & Prejudice", "Jane Austen", 1813)));
+        assertEquals(1, dao.deleteWhere(collection, Book.class, "title", Comparison.EQ, "&quot;x"));
+        assertEquals(1, dao.deleteWhere(collection, Book.class, "title", Comparison.EQ, "L'Étranger"));
+        dao.insertBooks(collection, "entidades-1.xml", List.of(new Book("Tom & Jerry's", "Autor", 1940)));
+        assertEquals(1, dao.updateBook(collection, "Tom & Jerry's", new Book("Tom & Jerry's", "Hanna", 1940)));
+
+        List<Book> books = dao.getAllBooks(collection);
+        assertEquals(List.of("Pride & Prejudice", "\"x\"", "Tom & Jerry's"),
+                books.stream().map(Book::getTitle).toList());
+        assertEquals("Jane Austen", books.get(0).getAuthor());
+        assertEquals("Hanna", books.get(2).getAuthor());
+    }
+
+    @Test
+    public void searchesUseTheLuceneIndex() {
+        Page<SearchHit<Book>> page = dao.searchBooks(BOOKS, "guerra", 1, null);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("Guerra y paz 0", page.getItems().get(0).item().getTitle());
+        Page<SearchHit<Book>> next = dao.searchBooks(BOOKS, "guerra", 1, page.getNextCursor());
+        assertEquals("Guerra y paz 5", next.getItems().get(0).item().getTitle());
+        assertNull(next.getNextCursor());
+    }
+
+    // Drops the stream without closing it, so only the garbage collector can release its collection.
+    private static long countWithoutClosing() {
+        return dao.streamAllBooks(BOOKS).count();
+    }
+}
@@ -0,0 +1,58 @@
+package library.Dao;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class QueryBatchTest {
+
+    private static final String BOOKS = "collection('/db/test/Novelas')";
+
+    @Test
+    public void keywordsAreStepsInsidePaths() {
+        assertBound("$b/div/p", "$b/div/p");
+        assertBound("#//chapter/case/x", "//chapter/case/x");
+        assertBound("#//in/to/by/is[default]/mod", "//in/to/by/is[default]/mod");
+        assertBound("#//book/child::div/@case", "//book/child::div/@case");
+        assertBound("for $div in #//div return $div/and/or", "for $div in //div return $div/and/or");
+    }
+
+    @Test
+    public void keywordsAfterOperandsAreOperators() {
+        assertBound("#//price div #//count", "//price div //count");
+        assertBound("#//div div 2", "//div div 2");
+        assertBound("for $b in #//book where $b/publishYear gt 1900 order by $b/title descending return $b/title",
+                "for $b in //book where $b/publishYear gt 1900 order by $b/title descending return $b/title");
+        assertBound("if (#/a) then #/b else #//c", "if (/a) then /b else //c");
+        assertBound("typeswitch ($x) case element() return #/a default return #/b",
+                "typeswitch ($x) case element() return /a default return /b");
+        assertBound("let $x := #/a return count($x) * 2", "let $x := /a return count($x) * 2");
+        assertBound("#//*/x", "//*/x");
+    }
+
+    @Test
+    public void literalsCommentsAndClosingTagsAreKept() {
+        assertBound("('//no', \"/no\") (: //no (: /no :) :) <a>{#//b}</a>",
+                "('//no', \"/no\") (: //no (: /no :) :) <a>{//b}</a>");
+        assertBound("#//book[@title = 'it''s /no']", "//book[@title = 'it''s /no']");
+        assertEquals("collection('/db/it''s')//book", QueryBatch.bindToCollection("//book", "/db/it's"));
+    }
+
+    @Test
+    public void repeatedRequestsAreRejected() {
+        QueryRequest<Book> books = new QueryRequest<>("/db/test/Novelas", "//book", Book.class);
+        List<QueryRequest<?>> requests = List.of(books, new QueryRequest<>("/db/test/Novelas", "//book", Book.class));
+        assertThrows(IllegalArgumentException.class, () -> QueryBatch.combine(requests));
+        assertThrows(IllegalArgumentException.class, () -> new QueryManager(null).queryAll(requests, Duration.ZERO));
+    }
+
+    // The expected query marks every bound path with '#'.
+    private static void assertBound(String expected, String query) {
+        assertEquals(expected.replace("#", BOOKS), QueryBatch.bindToCollection(query, "/db/test/Novelas"));
+    }
+}
@@ -0,0 +1,82 @@
+package library.Dao;
+
+import library.model.Book;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class QueryCacheTest {
+
+    private static final String BOOKS = "/db/test/Novelas";
+
+    private final QueryCache cache = new QueryCache(100, 1 << 20, Duration.ofMinutes(1));
+
+    @Test
+    public void resultsLoadedBeforeAnInvalidationAreNotCached() {
+        CacheKey key = new CacheKey(BOOKS, "//book", Book.class);
+        long generation = cache.generation(BOOKS);
+        cache.invalidate(BOOKS);
+        cache.put(key, List.of(), 10, generation);
+        assertNull(cache.get(key));
+
+        cache.put(key, List.of(), 10, cache.generation(BOOKS));
+        assertEquals(List.of(), cache.get(key));
+    }
+
+    @Test
+    public void invalidatingAllAdvancesEveryGeneration() {
+        long generation = cache.generation(BOOKS);
+        cache.invalidateAll();
+        assertEquals(generation + 1, cache.generation(BOOKS));
+    }
+
+    @Test
+    public void trailingSlashesNameTheSameCollection() {
+        CacheKey key = new CacheKey(BOOKS + "/", "//book", Book.class);
+        assertEquals(new CacheKey(BOOKS, "//book", Book.class), key);
+        cache.put(key, List.of(), 10);
+
+        cache.invalidate(BOOKS);
+        assertNull(cache.get(key));
+        assertEquals(cache.generation(BOOKS), cache.generation(BOOKS + "/"));
+        assertEquals("/", new CacheKey("/", "//book", Book.class).collectionName());
+    }
+
+    @Test
+    public void queriesOverlappingAWriteAreReloaded() {
+        AtomicInteger loads = new AtomicInteger();
+        CachingLibraryDao[] dao = new CachingLibraryDao[1];
+        // The first load is overtaken by a write that invalidates the collection before the result is returned.
+        LibraryDao delegate = (LibraryDao) Proxy.newProxyInstance(LibraryDao.class.getClassLoader(),
+                new Class<?>[] {LibraryDao.class}, (proxy, method, args) -> {
+                    if (loads.incrementAndGet() == 1) dao[0].invalidate(BOOKS + "/");
+                    return List.of(new Book("Título " + loads.get(), "Autor", 1900));
+                });
+        dao[0] = new CachingLibraryDao(delegate, cache);
+
+        assertEquals("Título 1", dao[0].getAllBooks(BOOKS).get(0).getTitle());
+        assertEquals("Título 2", dao[0].getAllBooks(BOOKS).get(0).getTitle());
+        assertEquals("Título 2", dao[0].getAllBooks(BOOKS).get(0).getTitle());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void cachedPagesCannotBeModified() {
+        LibraryDao delegate = (LibraryDao) Proxy.newProxyInstance(LibraryDao.class.getClassLoader(),
+                new Class<?>[] {LibraryDao.class},
+                (proxy, method, args) -> new Page<>(new ArrayList<>(List.of(new Book("Título", "Autor", 1900))), null));
+        CachingLibraryDao dao = new CachingLibraryDao(delegate, cache);
+
+        Page<Book> page = dao.getAllBooks(BOOKS, 10, null);
+        assertThrows(UnsupportedOperationException.class, () -> page.getItems().clear());
+        assertEquals(1, dao.getAllBooks(BOOKS, 10, null).getItems().size());
+    }
+}
@@ -0,0 +1,103 @@
+package library.Dao;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.exist.xmldb.DatabaseImpl;
+import org.exist.xmldb.DatabaseInstanceManager;
+import org.exist.xmlrpc.RpcServlet;
+import org.xmldb.api.base.Collection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * eXist-db server started inside the test JVM, so the tests can use the XML-RPC transport of a remote connection.
+ * <p>
+ * The database runs with the bundled embedded configuration in a temporary directory, and its XML-RPC servlet is
+ * served by Jetty on a free port. The database is not registered in the {@code DatabaseManager}, so the connection
+ * under test registers its own driver, which talks to the server over HTTP.
+ * </p>
+ */
+final class RemoteExistServer implements AutoCloseable {
+
+    private static final String DATABASE_URI = "exist:///db";
+
+    private final Path dataDir;
+    private final DatabaseImpl database;
+    private final Server server;
+
+    private RemoteExistServer(Path dataDir, DatabaseImpl database, Server server) {
+        this.dataDir = dataDir;
+        this.database = database;
+        this.server = server;
+    }
+
+    /**
+     * Starts the database and the XML-RPC server.
+     *
+     * @return The running server.
+     * @throws Exception If the database or the server cannot be started.
+     */
+    static RemoteExistServer start() throws Exception {
+        Path dataDir = Files.createTempDirectory("exist-remote");
+        Path configFile = dataDir.resolve("conf.xml");
+        try (InputStream bundled = RemoteExistServer.class.getResourceAsStream("/embedded/conf.xml")) {
+            Files.copy(bundled, configFile);
+        }
+
+        DatabaseImpl database = new DatabaseImpl();
+        database.setProperty("create-database", "true");
+        database.setProperty("configuration", configFile.toString());
+        database.setProperty("data-dir", dataDir.toString());
+        database.setProperty("journal-dir", dataDir.toString());
+        database.getCollection(DATABASE_URI, "admin", "").close();
+
+        ServletHolder rpc = new ServletHolder(new RpcServlet());
+        rpc.setInitParameter("enabledForExtensions", "true");
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/exist");
+        context.addServlet(rpc, "/xmlrpc");
+        Server server = new Server(0);
+        server.setHandler(context);
+        server.start();
+        return new RemoteExistServer(dataDir, database, server);
+    }
+
+    /**
+     * Retrieves the XML:DB URI of the server, to be used in a remote {@code ConnectionConfig}.
+     *
+     * @return The URI of the XML-RPC endpoint.
+     */
+    String getUri() {
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        return "xmldb:exist://localhost:" + port + "/exist/xmlrpc";
+    }
+
+    /**
+     * Stops the server, shuts the database down and deletes its files.
+     *
+     * @throws Exception If the server or the database cannot be stopped.
+     */
+    @Override
+    public void close() throws Exception {
+        server.stop();
+        try (Collection root = database.getCollection(DATABASE_URI, "admin", "")) {
+            ((DatabaseInstanceManager) root.getService("DatabaseInstanceManager", "1.0")).shutdown();
+        }
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package library.Dao;
+
+import library.model.Book;
+import library.service.BulkLoader;
+import library.service.ConnectionConfig;
+import library.service.ExistDatabaseConnection;
+import library.service.IndexManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xmldb.api.base.Collection;
+import org.xmldb.api.modules.BinaryResource;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the DAO against a server over XML-RPC, the default transport, where the results of projections, columns,
+ * partitioned queries, aggregations, searches and change feeds are atomic strings instead of the DOM nodes of an
+ * embedded database.
+ */
+public class RemoteModeTest {
+
+    private static final String BOOKS = "/db/test/Novelas";
+
+    private static RemoteExistServer server;
+    private static ExistDatabaseConnection connection;
+    private static LibraryDaoIMP dao;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = RemoteExistServer.start();
+        ExistDatabaseConnection.configure(ConnectionConfig.remote(server.getUri(), "admin", ""));
+        connection = ExistDatabaseConnection.getInstance();
+        new BulkLoader(connection, 5, 1).load(BOOKS, "biblioteca",
+                IntStream.range(0, 10).mapToObj(i -> new Book((i % 5 == 0 ? "Guerra y paz " : "Título ") + i,
+                        "Autor " + i % 3, 1900 + i)), null);
+        new IndexManager(connection).configureIndexes(BOOKS, Book.class);
+        dao = new LibraryDaoIMP(connection);
+    }
+
+    @AfterClass
+    public static void stopServer() throws Exception {
+        if (connection != null) connection.close();
+        if (server != null) server.close();
+    }
+
+    @Test
+    public void projectedListsAreDecoded() {
+        List<Book> books = dao.getAllBooks(BOOKS);
+
+        assertEquals(10, books.size());
+        assertEquals(new Book("Título 4", "Autor 1", 1904).toString(),
+                books.stream().filter(book -> book.getPublishYear() == 1904).findFirst().orElseThrow().toString());
+        assertEquals(4, dao.getBooksByAuthor(BOOKS, "Autor 0").size());
+    }
+
+    @Test
+    public void aggregationsAreDecoded() {
+        assertEquals(10, dao.countBooks(BOOKS));
+        assertEquals(List.of(new AuthorCount("Autor 0", 4), new AuthorCount("Autor 1", 3),
+                new AuthorCount("Autor 2", 3)), dao.countBooksByAuthor(BOOKS));
+        assertEquals(List.of(new YearCount(1900, 5), new YearCount(1905, 5)), dao.getBookYearHistogram(BOOKS, 5));
+        assertEquals(new YearRange(10, 1900, 1909), dao.getBookYearRange(BOOKS));
+    }
+
+    @Test
+    public void columnsAreDecoded() {
+        try (ColumnStore<Book> store = dao.getBookColumns(BOOKS)) {
+            assertEquals(10, store.size());
+            assertEquals(3, store.getDistinctCount("author"));
+            ColumnStore<Book>.Selection selection = store.rows().sortBy("publishYear", true);
+            assertEquals(new Book("Título 9", "Autor 0", 1909).toString(), selection.get(0).toString());
+            assertEquals(List.of("Guerra y paz 0", "Guerra y paz 5"), store.rows()
+                    .whereString("title", title -> title.startsWith("Guerra"))
+                    .sortBy("title", false).asList().stream().map(Book::getTitle).toList());
+        }
+    }
+
+    @Test
+    public void partitionedQueriesSkipBinaryResources() throws Exception {
+        String collection = "/db/test/Particiones";
+        new BulkLoader(connection, 2, 1).load(collection, "particiones",
+                IntStream.range(0, 6).mapToObj(i -> new Book("Libro " + i, "Autor", 2000 + i)), null);
+        storeBinary(collection);
+
+        List<Book> books = new QueryManager(connection).fetchPartitioned(collection, "//book", null, Book.class,
+                Partitioning.of(4, true));
+        assertEquals(IntStream.range(0, 6).mapToObj(i -> "Libro " + i).toList(),
+                books.stream().map(Book::getTitle).toList());
+    }
+
+    @Test
+    public void searchesUseTheLuceneIndex() {
+        Page<SearchHit<Book>> page = dao.searchBooks(BOOKS, "guerra", 1, null);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("Guerra y paz 0", page.getItems().get(0).item().getTitle());
+        Page<SearchHit<Book>> next = dao.searchBooks(BOOKS, "guerra", 1, page.getNextCursor());
+        assertEquals("Guerra y paz 5", next.getItems().get(0).item().getTitle());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    public void changeFeedsListTheModifiedResources() throws Exception {
+        String collection = "/db/test/Cambios";
+        new BulkLoader(connection, 2, 1).load(collection, "cambios",
+                IntStream.range(0, 4).mapToObj(i -> new Book("Libro " + i, "Autor", 2000 + i)), null);
+        storeBinary(collection);
+
+        ChangeSet<Book> first = dao.getBookChanges(collection, SyncToken.empty());
+        assertEquals(Set.of("cambios-1.xml", "cambios-2.xml"), first.getAdded().keySet());
+        assertEquals(2, first.getToken().getLastModified().size());
+
+        dao.updateBook(collection, "Libro 3", new Book("Libro 3", "Otro autor", 2003));
+        ChangeSet<Book> second = dao.getBookChanges(collection, first.getToken());
+        assertEquals(Set.of("cambios-2.xml"), second.getModified().keySet());
+        assertEquals("Otro autor", second.getModified().get("cambios-2.xml").get(1).getAuthor());
+        assertTrue(dao.getBookChanges(collection, second.getToken()).isEmpty());
+    }
+
+    // Stores a binary resource, which the queries that open every document must skip.
+    private static void storeBinary(String collection) throws Exception {
+        try (Collection col = connection.getCollection(collection)) {
+            BinaryResource cover = (BinaryResource) col.createResource("portada.png", BinaryResource.RESOURCE_TYPE);
+            cover.setContent(new byte[] {(byte) 0x89, 'P', 'N', 'G'});
+            col.storeResource(cover);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package util;
+
+import library.model.Book;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the streaming writer of {@link XMLFileCreator} with the DOM and {@code Transformer} serialization it
+ * replaced, which is reproduced here with the same {@code TransformerFactory.newInstance()}.
+ */
+public class XMLFileCreatorTest {
+
+    // Markup, CR, other C0 controls, DEL and C1 characters, and characters that are written as they are.
+    private static final String[] EDGE_CASES = {
+            "<b>Guerra & paz</b> \"1\" 'a' ]]>",
+            "línea 1\r\nlínea 2\rfin",
+            "\u0001\u0008\u000B\u000C\u001F\tTab\nLF",
+            "\u007F\u0080\u0085\u009F ",
+            "Ñandú – “cita” € �",
+            "",
+            " "
+    };
+    private static final String SUPPLEMENTARY = "Emoji 😀 y 𝄞";
+
+    /**
+     * Object without a generated codec, which is written with reflection.
+     */
+    static class Note {
+        private String text;
+        private Integer pages;
+
+        Note(String text, Integer pages) {
+            this.text = text;
+            this.pages = pages;
+        }
+    }
+
+    @Test
+    public void booksAreWrittenLikeTheTransformer() throws Exception {
+        for (String value : EDGE_CASES) {
+            assertSameXml(List.of(new Book(value, value, 1900)), "biblioteca");
+        }
+        assertSameXml(Arrays.asList(new Book(null, "Autor", -5), new Book("Título", null, 0), new Book()),
+                "biblioteca");
+    }
+
+    @Test
+    public void reflectedObjectsAreWrittenLikeTheTransformer() throws Exception {
+        for (String value : EDGE_CASES) {
+            assertSameXml(List.of(new Note(value, 3)), "notas");
+        }
+        assertSameXml(List.of(new Note(null, null), new Note(null, 1), new Note("texto", null)), "notas");
+    }
+
+    @Test
+    public void emptyListsAreWrittenLikeTheTransformer() throws Exception {
+        assertSameXml(List.of(), "biblioteca");
+    }
+
+    @Test
+    public void supplementaryCharactersAreWrittenAsCodePoints() throws Exception {
+        // The Transformer wrote a reference to each surrogate, e.g. &#55357;&#56832;, which parsers reject.
+        List<Book> books = List.of(new Book(SUPPLEMENTARY, "Autor", 1900));
+        String xml = XMLFileCreator.createXmlString(books, "biblioteca");
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><biblioteca><book><title>Emoji &#128512; y &#119070;"
+                + "</title><author>Autor</author><publishYear>1900</publishYear></book></biblioteca>", xml);
+
+        Document parsed = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(SUPPLEMENTARY, parsed.getElementsByTagName("title").item(0).getTextContent());
+    }
+
+    private static void assertSameXml(List<?> objects, String rootName) throws Exception {
+        byte[] expected = transform(objects, rootName);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XMLFileCreator.writeXml(objects.iterator(), out, rootName);
+        assertArrayEquals(new String(expected, StandardCharsets.UTF_8), expected, out.toByteArray());
+
+        StringWriter writer = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document(objects, rootName)),
+                new StreamResult(writer));
+        assertEquals(writer.toString(), XMLFileCreator.createXmlString(objects, rootName));
+    }
+
+    private static byte[] transform(List<?> objects, String rootName) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer()
+                .transform(new DOMSource(document(objects, rootName)), new StreamResult(out));
+        return out.toByteArray();
+    }
+
+    // Builds the document like XMLFileCreator did before it wrote the XML directly.
+    private static Document document(List<?> objects, String rootName) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = document.createElement(rootName);
+        document.appendChild(root);
+        for (Object object : objects) {
+            Element objectElement = document.createElement(object.getClass().getSimpleName().toLowerCase());
+            root.appendChild(objectElement);
+            for (Field field : object.getClass().getDeclaredFields()) {
+                field.setAccessible(true);
+                Object value = field.get(object);
+                if (value != null) {
+                    Element fieldElement = document.createElement(field.getName());
+                    fieldElement.appendChild(document.createTextNode(value.toString()));
+                    objectElement.appendChild(fieldElement);
+                }
+            }
+        }
+        return document;
+    }
+}